@@ -0,0 +1,77 @@
+package com.db.awmd.challenge.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The balance arithmetic of one transfer (overdraft check, debit, credit) done the way the repository used
+ * to do it with {@link BigDecimal} against the scaled {@code long} path of {@link Money}. Run {@link #main}
+ * to get the allocation rate per operation from the GC profiler next to the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BalanceArithmeticBenchmark {
+
+  BigDecimal senderBalance = new BigDecimal("1000000000.00");
+
+  BigDecimal receiverBalance = new BigDecimal("1000000000.00");
+
+  BigDecimal fund = new BigDecimal("12.34");
+
+  long senderUnits = Money.toUnits(senderBalance);
+
+  long receiverUnits = Money.toUnits(receiverBalance);
+
+  long fundUnits = Money.toUnits(fund);
+
+  @Benchmark
+  public BigDecimal bigDecimalTransfer() {
+    if (senderBalance.subtract(fund).compareTo(BigDecimal.ZERO) < 1) {
+      throw new IllegalStateException("overdraft");
+    }
+    senderBalance = senderBalance.subtract(fund);
+    receiverBalance = receiverBalance.add(fund);
+    // swap direction so the balances never drift towards an overdraft
+    BigDecimal swap = senderBalance;
+    senderBalance = receiverBalance;
+    receiverBalance = swap;
+    return senderBalance;
+  }
+
+  @Benchmark
+  public long minorUnitTransfer() {
+    long remaining = Money.subtract(senderUnits, fundUnits);
+    if (remaining <= 0) {
+      throw new IllegalStateException("overdraft");
+    }
+    long credited = Money.add(receiverUnits, fundUnits);
+    senderUnits = credited;
+    receiverUnits = remaining;
+    return senderUnits;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+            .include(BalanceArithmeticBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+  }
+}
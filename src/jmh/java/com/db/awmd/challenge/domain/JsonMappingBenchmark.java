@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson reading and writing the request and response bodies of the account and transfer endpoints,
+ * with the same readers and writers reused as Spring MVC does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonMappingBenchmark {
+
+  ObjectReader accountReader;
+
+  ObjectWriter accountWriter;
+
+  ObjectReader transferReader;
+
+  ObjectWriter transferWriter;
+
+  Account account;
+
+  FundTransfer transfer;
+
+  byte[] accountJson;
+
+  byte[] transferJson;
+
+  @Setup(Level.Trial)
+  public void createMapper() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    accountReader = mapper.readerFor(Account.class);
+    accountWriter = mapper.writerFor(Account.class);
+    transferReader = mapper.readerFor(FundTransfer.class);
+    transferWriter = mapper.writerFor(FundTransfer.class);
+
+    account = new Account("Id-123456", new BigDecimal("1234.56"));
+    transfer = new FundTransfer("Id-123456", "Id-654321", new BigDecimal("99.95"));
+    accountJson = accountWriter.writeValueAsBytes(account);
+    transferJson = "{\"sender\":\"Id-123456\",\"receiver\":\"Id-654321\",\"fund\":99.95}".getBytes("UTF-8");
+  }
+
+  @Benchmark
+  public Account readAccount() throws IOException {
+    return accountReader.readValue(accountJson);
+  }
+
+  @Benchmark
+  public byte[] writeAccount() throws IOException {
+    return accountWriter.writeValueAsBytes(account);
+  }
+
+  @Benchmark
+  public FundTransfer readTransfer() throws IOException {
+    return transferReader.readValue(transferJson);
+  }
+
+  @Benchmark
+  public byte[] writeTransfer() throws IOException {
+    return transferWriter.writeValueAsBytes(transfer);
+  }
+}
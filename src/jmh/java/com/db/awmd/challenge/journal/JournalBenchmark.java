@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acknowledged transfers per second with 32 request threads: without a journal, with an fsync per transfer
+ * ({@code perRequest}: batch size 1) and with group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class JournalBenchmark {
+
+  private static final int ACCOUNTS = 10_000;
+
+  @Param({"none", "perRequest", "groupCommit"})
+  String mode;
+
+  File file;
+
+  TransferJournal journal;
+
+  AccountsRepositoryInMemory repository;
+
+  @Setup(Level.Trial)
+  public void open() throws Exception {
+    file = File.createTempFile("journal-benchmark", ".journal");
+    file.delete();
+    journal = "none".equals(mode)
+            ? TransferJournal.disabled()
+            : new TransferJournal(true, file.getPath(), 0, "perRequest".equals(mode) ? 1 : 512);
+    journal.start();
+    repository = new AccountsRepositoryInMemory(1024, journal);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000L)));
+    }
+    journal.awaitDurable();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws Exception {
+    journal.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public void acknowledgedTransfer() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int sender = random.nextInt(ACCOUNTS);
+    int receiver = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+    repository.transferFund(new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE));
+    journal.awaitDurable();
+  }
+}
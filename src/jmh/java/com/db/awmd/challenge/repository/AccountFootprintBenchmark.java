@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.journal.TransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap per account and lookups and transfers per second of {@link AccountsRepositoryInMemory} holding
+ * 10,000,000 accounts, with requests spread uniformly so that most of them miss the CPU caches. The set up
+ * prints the heap the accounts take, ids included, as measured after a full collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AccountFootprintBenchmark {
+
+  private static final int REQUESTS = 1 << 16;
+
+  @Param({"10000000"})
+  int accountCount;
+
+  AccountsRepositoryInMemory repository;
+
+  String[] accountIds;
+
+  FundTransfer[] transfers;
+
+  int next;
+
+  @Setup(Level.Trial)
+  public void createAccounts() {
+    long before = usedHeap();
+    repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+    for (int i = 0; i < accountCount; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+    }
+    long used = usedHeap() - before;
+    System.out.printf("%n%d accounts take %d MiB, %d bytes each%n", accountCount, used >> 20, used / accountCount);
+
+    SplittableRandom random = new SplittableRandom(42);
+    accountIds = new String[REQUESTS];
+    transfers = new FundTransfer[REQUESTS];
+    for (int i = 0; i < REQUESTS; i++) {
+      int sender = random.nextInt(accountCount);
+      int receiver = (sender + 1 + random.nextInt(accountCount - 1)) % accountCount;
+      accountIds[i] = "Id-" + sender;
+      transfers[i] = new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE);
+    }
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @Benchmark
+  public Account getAccount() {
+    return repository.getAccount(accountIds[next++ & (REQUESTS - 1)]);
+  }
+
+  @Benchmark
+  public TransferOutcome transfer() {
+    return repository.tryTransferFund(transfers[next++ & (REQUESTS - 1)]);
+  }
+}
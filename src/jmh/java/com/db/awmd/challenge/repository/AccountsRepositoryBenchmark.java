@@ -0,0 +1,166 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.journal.TransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link AccountsRepositoryInMemory} and {@link AccountsRepositoryPartitioned} when many
+ * threads create accounts, read them, or move money between uniformly chosen accounts or accounts where
+ * most requests touch a handful of hot ones. {@code in-memory-hot} configures those as hot accounts, whose
+ * credits skip the account lock.
+ * Run {@link #main} to sweep 1 to 64 threads; each thread count gets its own JSON result file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsRepositoryBenchmark {
+
+  private static final int REQUESTS_PER_THREAD = 1 << 14;
+
+  private static final int HOT_ACCOUNTS = 16;
+
+  private static final BigDecimal OPENING_BALANCE = new BigDecimal(1_000_000_000_000L);
+
+  @Param({"100000"})
+  int accountCount;
+
+  @Param({"uniform", "skewed"})
+  String distribution;
+
+  @Param({"in-memory", "in-memory-hot", "partitioned"})
+  String implementation;
+
+  AccountsRepository repository;
+
+  /**
+   * Starts every iteration from the same accounts, so {@link #createAccount} does not grow the map
+   * without bound.
+   */
+  @Setup(Level.Iteration)
+  public void createAccounts() {
+    if ("partitioned".equals(implementation)) {
+      repository = new AccountsRepositoryPartitioned(0, 65536);
+    } else if ("in-memory-hot".equals(implementation)) {
+      String[] hotAccountIds = new String[HOT_ACCOUNTS];
+      for (int i = 0; i < HOT_ACCOUNTS; i++) {
+        hotAccountIds[i] = "Id-" + i;
+      }
+      repository = new AccountsRepositoryInMemory(1024, hotAccountIds, 16, 0, TransferJournal.disabled());
+    } else {
+      repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+    }
+    for (int i = 0; i < accountCount; i++) {
+      repository.createAccount(new Account("Id-" + i, OPENING_BALANCE));
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeRepository() throws InterruptedException {
+    if (repository instanceof AccountsRepositoryPartitioned) {
+      ((AccountsRepositoryPartitioned) repository).close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Requests {
+
+    String[] accountIds;
+
+    FundTransfer[] transfers;
+
+    String newAccountPrefix;
+
+    int next;
+
+    long created;
+
+    @Setup(Level.Trial)
+    public void pickAccounts(AccountsRepositoryBenchmark benchmark) {
+      SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+      accountIds = new String[REQUESTS_PER_THREAD];
+      transfers = new FundTransfer[REQUESTS_PER_THREAD];
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        int sender = pick(random, benchmark);
+        int receiver = pick(random, benchmark);
+        while (receiver == sender) {
+          receiver = pick(random, benchmark);
+        }
+        accountIds[i] = "Id-" + sender;
+        transfers[i] = new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE);
+      }
+      newAccountPrefix = "New-" + Thread.currentThread().getId() + "-";
+    }
+
+    private static int pick(SplittableRandom random, AccountsRepositoryBenchmark benchmark) {
+      // skewed: nine out of ten picks land on one of the hot accounts
+      if ("skewed".equals(benchmark.distribution) && random.nextInt(10) != 0) {
+        return random.nextInt(HOT_ACCOUNTS);
+      }
+      return random.nextInt(benchmark.accountCount);
+    }
+
+    String nextAccountId() {
+      return accountIds[next++ & (REQUESTS_PER_THREAD - 1)];
+    }
+
+    FundTransfer nextTransfer() {
+      return transfers[next++ & (REQUESTS_PER_THREAD - 1)];
+    }
+
+    Account newAccount() {
+      // new ids are never skewed; the account count still decides how crowded the map is
+      return new Account(newAccountPrefix + created++, OPENING_BALANCE);
+    }
+  }
+
+  @Benchmark
+  public void createAccount(Requests requests) {
+    repository.createAccount(requests.newAccount());
+  }
+
+  @Benchmark
+  public Account getAccount(Requests requests) {
+    return repository.getAccount(requests.nextAccountId());
+  }
+
+  @Benchmark
+  public boolean transfer(Requests requests) {
+    return repository.transferFund(requests.nextTransfer());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads = 1; threads <= 64; threads <<= 1) {
+      new Runner(new OptionsBuilder()
+              .include(AccountsRepositoryBenchmark.class.getSimpleName())
+              .threads(threads)
+              .resultFormat(ResultFormatType.JSON)
+              .result("accounts-repository-" + threads + "-threads.json")
+              .build()).run();
+    }
+  }
+}
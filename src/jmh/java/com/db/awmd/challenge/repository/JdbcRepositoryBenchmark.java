@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.journal.TransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * What durability costs: transfers and lookups per second of {@link AccountsRepositoryInMemory} against
+ * {@link AccountsRepositoryJdbc} on an H2 file, with H2's default write delay ({@code jdbc}) and writing
+ * every commit before acknowledging it ({@code jdbc-write-delay-0}). 32 threads keep the writers' queue
+ * filled, so commits cover many transfers each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class JdbcRepositoryBenchmark {
+
+  private static final int REQUESTS_PER_THREAD = 1 << 14;
+
+  @Param({"100000"})
+  int accountCount;
+
+  @Param({"in-memory", "jdbc", "jdbc-write-delay-0"})
+  String implementation;
+
+  Path directory;
+
+  AccountsRepository repository;
+
+  @Setup(Level.Trial)
+  public void createAccounts() throws Exception {
+    if ("in-memory".equals(implementation)) {
+      repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+    } else {
+      directory = Files.createTempDirectory("accounts-jdbc");
+      String url = "jdbc:h2:" + directory.resolve("accounts")
+              + ("jdbc-write-delay-0".equals(implementation) ? ";WRITE_DELAY=0" : "");
+      repository = new AccountsRepositoryJdbc(url, 32, 2, 256, 65536, 100_000);
+    }
+    for (int i = 0; i < accountCount; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeRepository() throws InterruptedException, IOException {
+    if (repository instanceof AccountsRepositoryJdbc) {
+      ((AccountsRepositoryJdbc) repository).close();
+      try (Stream<Path> files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Requests {
+
+    String[] accountIds;
+
+    FundTransfer[] transfers;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void pickAccounts(JdbcRepositoryBenchmark benchmark) {
+      SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+      accountIds = new String[REQUESTS_PER_THREAD];
+      transfers = new FundTransfer[REQUESTS_PER_THREAD];
+      for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+        int sender = random.nextInt(benchmark.accountCount);
+        int receiver = (sender + 1 + random.nextInt(benchmark.accountCount - 1)) % benchmark.accountCount;
+        accountIds[i] = "Id-" + sender;
+        transfers[i] = new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE);
+      }
+    }
+  }
+
+  @Benchmark
+  public Account getAccount(Requests requests) {
+    return repository.getAccount(requests.accountIds[requests.next++ & (REQUESTS_PER_THREAD - 1)]);
+  }
+
+  @Benchmark
+  public TransferOutcome transfer(Requests requests) {
+    return repository.tryTransferFund(requests.transfers[requests.next++ & (REQUESTS_PER_THREAD - 1)]);
+  }
+}
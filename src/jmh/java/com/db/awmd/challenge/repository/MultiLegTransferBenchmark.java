@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.journal.TransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One sender paying many receivers, such as a payroll run, in {@link AccountsRepositoryInMemory}: as a
+ * multi-leg transfer, debited once, or as a batch of single transfers, one debit and one journal record each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiLegTransferBenchmark {
+
+  private static final int ACCOUNTS = 100_000;
+
+  @Param({"1000", "10000"})
+  int legs;
+
+  AccountsRepositoryInMemory repository;
+
+  MultiLegTransfer multiLegTransfer;
+
+  List<FundTransfer> batch;
+
+  @Setup
+  public void createAccounts() {
+    repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+    }
+    SplittableRandom random = new SplittableRandom(42);
+    List<MultiLegTransfer.Leg> receivers = new ArrayList<>(legs);
+    batch = new ArrayList<>(legs);
+    for (int i = 0; i < legs; i++) {
+      String receiver = "Id-" + (1 + random.nextInt(ACCOUNTS - 1));
+      receivers.add(new MultiLegTransfer.Leg(receiver, BigDecimal.ONE));
+      batch.add(new FundTransfer("Id-0", receiver, BigDecimal.ONE));
+    }
+    multiLegTransfer = new MultiLegTransfer("Id-0", receivers);
+  }
+
+  @Benchmark
+  public TransferOutcome multiLeg() {
+    return repository.tryTransferMultiLeg(multiLegTransfer);
+  }
+
+  @Benchmark
+  public List<TransferStatus> batchOfSingleTransfers() {
+    return repository.transferFunds(batch);
+  }
+}
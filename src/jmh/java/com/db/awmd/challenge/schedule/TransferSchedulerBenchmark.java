@@ -0,0 +1,109 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.FundService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and cancelling a transfer while {@link TransferScheduler} holds millions of pending ones, all
+ * due on a minute within the next day, and never started so that none is released meanwhile. The set up
+ * prints the heap a pending transfer takes, as measured after a full collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TransferSchedulerBenchmark {
+
+  private static final int ACCOUNTS = 100_000;
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  @Param({"5000000"})
+  int pending;
+
+  NotificationDispatcher dispatcher;
+
+  TransferScheduler scheduler;
+
+  String[] accountIds;
+
+  long start;
+
+  int next;
+
+  @Setup(Level.Trial)
+  public void schedule() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+    accountIds = new String[ACCOUNTS];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountIds[i] = "Id-" + i;
+      repository.createAccount(new Account(accountIds[i], new BigDecimal(1_000_000_000_000L)));
+    }
+    AccountsService accountsService = new AccountsService(repository, TransferJournal.disabled(),
+            new TransferMetrics(), new TransactionHistory(256, ""));
+    dispatcher = new NotificationDispatcher(1 << 16, 1, 256, "drop-oldest", "unused", accountsService,
+            (account, transferDescription) -> { });
+    FundService fundService = new FundService(accountsService, dispatcher);
+
+    start = System.currentTimeMillis() / MINUTE * MINUTE + MINUTE;
+    long before = usedHeap();
+    scheduler = new TransferScheduler(fundService, "", false, 100, 1024, 0);
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < pending; i++) {
+      int sender = random.nextInt(ACCOUNTS);
+      int receiver = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+      // fresh strings, as a request would bring them
+      scheduler.schedule(new String(accountIds[sender]), new String(accountIds[receiver]), 100,
+              start + random.nextInt(24 * 60) * MINUTE, 0);
+    }
+    long used = usedHeap() - before;
+    System.out.printf("%n%d pending transfers take %d MiB, %d bytes each%n", pending, used >> 20,
+            used / pending);
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @TearDown(Level.Trial)
+  public void closeDispatcher() throws InterruptedException {
+    dispatcher.close();
+  }
+
+  @Benchmark
+  public boolean scheduleAndCancel() {
+    int i = next++;
+    long id = scheduler.schedule(accountIds[i % ACCOUNTS], accountIds[(i + 1) % ACCOUNTS], 100,
+            start + (i % (24 * 60)) * MINUTE, 0);
+    return scheduler.cancel(id);
+  }
+}
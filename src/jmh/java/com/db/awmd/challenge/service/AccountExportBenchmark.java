@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts per second written by {@link AccountExportService} to a stream that discards them, so the
+ * figure is the formatting and iteration cost alone. Run with {@code -prof gc} to see the allocation per
+ * account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountExportBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+
+    @Param({"ndjson", "csv"})
+    String format;
+
+    @Param({"false", "true"})
+    boolean consistent;
+
+    AccountExportService exportService;
+
+    final OutputStream discard = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal(i).movePointLeft(2)));
+        }
+        exportService = new AccountExportService(new AccountsService(repository, TransferJournal.disabled(),
+                new TransferMetrics(), TransactionHistory.disabled()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCOUNTS)
+    public void export() throws IOException {
+        exportService.export(AccountExportService.Format.of(format), consistent, discard);
+    }
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts per second imported by {@link AccountImportService} from an NDJSON stream into an empty
+ * in-memory repository, reported per account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountImportBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+
+    @Param({"0"})
+    int threads;
+
+    byte[] ndjson;
+
+    AccountsRepositoryInMemory repository;
+
+    AccountImportService importService;
+
+    @Setup(Level.Trial)
+    public void writeStream() {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            lines.append("{\"accountId\":\"Id-").append(i).append("\",\"balance\":").append(i).append(".25}\n");
+        }
+        ndjson = lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void createService() {
+        repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+        AccountsService accountsService = new AccountsService(repository, TransferJournal.disabled(),
+                new TransferMetrics(), TransactionHistory.disabled());
+        importService = new AccountImportService(accountsService, new ObjectMapper(), threads, 1024);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeService() throws InterruptedException {
+        importService.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCOUNTS)
+    public ImportSummary importAccounts() throws IOException, InterruptedException {
+        return importService.importAccounts(new ByteArrayInputStream(ndjson));
+    }
+}
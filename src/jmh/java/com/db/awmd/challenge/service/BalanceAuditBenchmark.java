@@ -0,0 +1,114 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AuditReport;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers per second on 1,000,000 accounts, with no audit running or with {@link BalanceAuditService}
+ * auditing back to back on its own threads the whole time. The tear down prints how long an audit took.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceAuditBenchmark {
+
+    private static final int ACCOUNTS = 1_000_000;
+
+    private static final int TRANSFERS = 1 << 14;
+
+    @Param({"false", "true"})
+    boolean auditing;
+
+    AccountsRepositoryInMemory repository;
+
+    BalanceAuditService auditService;
+
+    FundTransfer[] transfers;
+
+    int next;
+
+    final AtomicBoolean running = new AtomicBoolean();
+
+    final AtomicLong audits = new AtomicLong();
+
+    final AtomicLong auditMillis = new AtomicLong();
+
+    Thread auditor;
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+        }
+        auditService = new BalanceAuditService(new AccountsService(repository, TransferJournal.disabled(),
+                new TransferMetrics(), TransactionHistory.disabled()), 0, 0);
+
+        SplittableRandom random = new SplittableRandom(42);
+        transfers = new FundTransfer[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            int sender = random.nextInt(ACCOUNTS);
+            int receiver = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            transfers[i] = new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE);
+        }
+
+        if (auditing) {
+            running.set(true);
+            auditor = new Thread(() -> {
+                while (running.get()) {
+                    AuditReport report = auditService.audit();
+                    if (!report.isPassed()) {
+                        throw new IllegalStateException("Audit failed: " + report);
+                    }
+                    audits.incrementAndGet();
+                    auditMillis.addAndGet(report.getDurationMillis());
+                }
+            }, "auditor");
+            auditor.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopAudits() throws InterruptedException {
+        running.set(false);
+        if (auditor != null) {
+            auditor.join();
+            System.out.println(audits.get() + " audits, " + auditMillis.get() / Math.max(1, audits.get())
+                    + " ms each on " + auditService.getLastReport().getParallelism() + " threads");
+        }
+        auditService.stop();
+    }
+
+    @Benchmark
+    public TransferOutcome transfer() {
+        return repository.tryTransferFund(transfers[next++ & (TRANSFERS - 1)]);
+    }
+}
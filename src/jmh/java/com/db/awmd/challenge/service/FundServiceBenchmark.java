@@ -0,0 +1,95 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link FundService#fundTransfer} on top of the repository: handing the transfer to the
+ * {@link NotificationDispatcher}, whose thread delivers to the {@link EmailNotificationService} (its log
+ * output is discarded, see logback.xml of this source set) or to a no-op service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FundServiceBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+
+    private static final int TRANSFERS = 1 << 14;
+
+    @Param({"none", "email"})
+    String notifications;
+
+    /**
+     * drop-oldest measures what the request thread pays; block is held to the pace of delivery once the
+     * queue fills up.
+     */
+    @Param({"drop-oldest", "block"})
+    String overflow;
+
+    NotificationDispatcher dispatcher;
+
+    FundService fundService;
+
+    FundTransfer[] transfers;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void createService() {
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+        }
+        NotificationService notificationService = "email".equals(notifications)
+                ? new EmailNotificationService()
+                : (account, transferDescription) -> { };
+        AccountsService accountsService = new AccountsService(repository, TransferJournal.disabled(),
+                new TransferMetrics(), new TransactionHistory(256, ""));
+        dispatcher = new NotificationDispatcher(1 << 16, 1, 256, overflow, "unused",
+                accountsService, notificationService);
+        fundService = new FundService(accountsService, dispatcher);
+
+        SplittableRandom random = new SplittableRandom(42);
+        transfers = new FundTransfer[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            int sender = random.nextInt(ACCOUNTS);
+            int receiver = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            transfers[i] = new FundTransfer("Id-" + sender, "Id-" + receiver, BigDecimal.ONE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDispatcher() throws InterruptedException {
+        dispatcher.close();
+    }
+
+    @Benchmark
+    public boolean fundTransfer() {
+        return fundService.fundTransfer(transfers[next++ & (TRANSFERS - 1)]);
+    }
+}
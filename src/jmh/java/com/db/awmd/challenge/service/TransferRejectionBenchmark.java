@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejected transfers per second through {@link FundService}: reported as a {@link TransferOutcome}, the way
+ * the transfer endpoint takes them, or thrown and caught, the way it used to. Run with {@code -prof gc}; the
+ * outcome path allocates nothing, so what a rejected request allocates is its HTTP request and response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferRejectionBenchmark {
+
+    @Param({"overdraft", "not-found"})
+    String rejection;
+
+    NotificationDispatcher dispatcher;
+
+    FundService fundService;
+
+    FundTransfer transfer;
+
+    @Setup(Level.Trial)
+    public void createService() {
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, TransferJournal.disabled());
+        repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+        repository.createAccount(new Account("Id-2", BigDecimal.ONE));
+        AccountsService accountsService = new AccountsService(repository, TransferJournal.disabled(),
+                new TransferMetrics(), TransactionHistory.disabled());
+        dispatcher = new NotificationDispatcher(1 << 10, 1, 256, "drop-oldest", "unused",
+                accountsService, (account, transferDescription) -> { });
+        fundService = new FundService(accountsService, dispatcher);
+        transfer = "overdraft".equals(rejection)
+                ? new FundTransfer("Id-1", "Id-2", new BigDecimal(1000))
+                : new FundTransfer("Id-1", "Id-404", BigDecimal.ONE);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDispatcher() throws InterruptedException {
+        dispatcher.close();
+    }
+
+    @Benchmark
+    public CompletableFuture<TransferOutcome> outcome() {
+        return fundService.fundTransferAsync(transfer);
+    }
+
+    @Benchmark
+    public TransferStatus exception() {
+        try {
+            fundService.fundTransfer(transfer);
+            return TransferStatus.OK;
+        } catch (RuntimeException e) {
+            return TransferStatus.of(e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.db.awmd.challenge.snapshot;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.journal.JournalRecovery;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time against the number of accounts: replaying a journal of one creation and one transfer per
+ * account, or loading a snapshot of the same state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SnapshotLoadBenchmark {
+
+  @Param({"100000", "1000000"})
+  int accounts;
+
+  @Param({"journal", "snapshot"})
+  String source;
+
+  File directory;
+
+  File file;
+
+  TransferJournal journal;
+
+  SnapshotService snapshots;
+
+  @Setup(Level.Trial)
+  public void write() throws Exception {
+    directory = Files.createTempDirectory("snapshot-benchmark").toFile();
+    file = new File(directory, "transfers.journal");
+    TransferJournal writer = new TransferJournal(true, file.getPath(), 0, 4096);
+    writer.start();
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, writer);
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000)));
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < accounts; i++) {
+      int receiver = (i + 1 + random.nextInt(accounts - 1)) % accounts;
+      repository.transferFund(new FundTransfer("Id-" + i, "Id-" + receiver, BigDecimal.TEN));
+    }
+    writer.awaitDurable();
+    new SnapshotService(true, directory.getPath(), 300, 0, writer).takeSnapshot(repository);
+    writer.close();
+  }
+
+  @Setup(Level.Invocation)
+  public void open() {
+    journal = new TransferJournal(true, file.getPath(), 0, 4096);
+    snapshots = new SnapshotService("snapshot".equals(source), directory.getPath(), 300, 0, journal);
+  }
+
+  @TearDown(Level.Invocation)
+  public void close() throws Exception {
+    snapshots.stop();
+    journal.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void delete() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File each : files) {
+        each.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public AccountsRepositoryInMemory recover() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(1024, journal);
+    new JournalRecovery(repository, journal, snapshots).recover();
+    return repository;
+  }
+}
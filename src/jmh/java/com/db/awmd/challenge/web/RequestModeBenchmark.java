@@ -0,0 +1,126 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second over HTTP from 64 clients against a server with 8 container threads and a journal
+ * that syncs every 20 ms (a slow disk), once with the container threads waiting for the journal
+ * ({@code async=false}) and once with the asynchronous endpoints. Clients and server share the machine, so
+ * the figures are only comparable with each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class RequestModeBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+
+    private static final int FLUSH_INTERVAL_MS = 20;
+
+    @Param({"false", "true"})
+    boolean async;
+
+    EmbeddedWebApplicationContext context;
+
+    Path journal;
+
+    URL transferUrl;
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        final SplittableRandom random = new SplittableRandom();
+
+        byte[] nextTransfer() {
+            int sender = random.nextInt(ACCOUNTS);
+            int receiver = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            return ("{\"senderAccountId\":\"Id-" + sender + "\",\"receiverAccountId\":\"Id-" + receiver
+                    + "\",\"fund\":1}").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        // keep a connection per client alive between requests
+        System.setProperty("http.maxConnections", "128");
+        journal = Files.createTempFile("request-mode", ".journal");
+        Files.delete(journal);
+        // arguments, since properties of the builder would lose against application.yml
+        context = (EmbeddedWebApplicationContext) new SpringApplicationBuilder(DevChallengeApplication.class)
+                .run("--server.port=0",
+                        "--server.tomcat.max-threads=8",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.com.db.awmd=WARN",
+                        "--journal.enabled=true",
+                        "--journal.path=" + journal,
+                        "--journal.flush-interval-ms=" + FLUSH_INTERVAL_MS,
+                        "--requests.async=" + async,
+                        "--requests.threads=2");
+        AccountsService accountsService = context.getBean(AccountsService.class);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000_000L)));
+        }
+        transferUrl = new URL("http://localhost:" + context.getEmbeddedServletContainer().getPort()
+                + "/v1/fund/transfer");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        context.close();
+        Files.deleteIfExists(journal);
+    }
+
+    @Benchmark
+    public int transfer(Client client) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) transferUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(client.nextTransfer());
+        }
+        int status = connection.getResponseCode();
+        try (InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (response != null) {
+                while (response.read() >= 0) {
+                    // drained, so the connection can be reused
+                }
+            }
+        }
+        return status;
+    }
+}
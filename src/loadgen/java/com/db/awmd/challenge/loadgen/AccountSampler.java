@@ -0,0 +1,52 @@
+package com.db.awmd.challenge.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Picks accounts by number, from 0 to {@code accounts - 1}.
+ */
+abstract class AccountSampler {
+
+    abstract int sample(SplittableRandom random);
+
+    static AccountSampler of(LoadProfile profile) {
+        return profile.getSkew() == LoadProfile.Skew.ZIPF
+                ? zipf(profile.getAccounts(), profile.getZipfExponent())
+                : uniform(profile.getAccounts());
+    }
+
+    static AccountSampler uniform(int accounts) {
+        return new AccountSampler() {
+            @Override
+            int sample(SplittableRandom random) {
+                return random.nextInt(accounts);
+            }
+        };
+    }
+
+    /**
+     * Account {@code k} with probability proportional to {@code 1 / (k + 1)^exponent}, by binary search in
+     * the cumulative distribution; eight bytes per account, built once.
+     */
+    static AccountSampler zipf(int accounts, double exponent) {
+        double[] cumulative = new double[accounts];
+        double sum = 0;
+        for (int k = 0; k < accounts; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < accounts; k++) {
+            cumulative[k] /= sum;
+        }
+        cumulative[accounts - 1] = 1;
+        return new AccountSampler() {
+            @Override
+            int sample(SplittableRandom random) {
+                int found = Arrays.binarySearch(cumulative, random.nextDouble());
+                // not found gives -(insertion point) - 1: the first account whose cumulative share exceeds it
+                return found >= 0 ? found + 1 : -found - 1;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts over {@link HttpURLConnection}, which keeps connections alive between requests as long as every
+ * response is read to the end; {@link LoadGenerator} sizes the JDK's pool of idle connections to the
+ * concurrency so that every sending thread keeps one.
+ */
+final class HttpPoster {
+
+    private final String baseUrl;
+
+    HttpPoster(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * @return the status of the response, whose body is discarded
+     */
+    int post(String path, byte[] body) throws IOException {
+        HttpURLConnection connection = open(path, "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int status = connection.getResponseCode();
+        read(connection, status, null);
+        return status;
+    }
+
+    /**
+     * Streams a body of unknown length with chunked encoding and returns the response body.
+     */
+    String postStream(String path, String contentType, BodyWriter body) throws IOException {
+        HttpURLConnection connection = open(path, contentType);
+        connection.setChunkedStreamingMode(64 * 1024);
+        try (OutputStream out = connection.getOutputStream()) {
+            body.writeTo(out);
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        read(connection, status, response);
+        if (status != 200) {
+            throw new IOException("POST " + path + " answered " + status + ": " + response.toString("UTF-8"));
+        }
+        return response.toString("UTF-8");
+    }
+
+    private HttpURLConnection open(String path, String contentType) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        return connection;
+    }
+
+    private static void read(HttpURLConnection connection, int status, OutputStream into) throws IOException {
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                if (into != null) {
+                    into.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    interface BodyWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
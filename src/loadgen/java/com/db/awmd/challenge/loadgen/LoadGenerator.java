@@ -0,0 +1,127 @@
+package com.db.awmd.challenge.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@code POST /v1/fund/transfer} of a running server over HTTP and reports throughput and latency
+ * percentiles, see {@link LoadProfile} for the options and {@link OpenLoopRun} for how requests are timed.
+ *
+ * The accounts are created first through {@code POST /v1/accounts/bulk}, so the server should start empty;
+ * then a warm-up runs and is discarded, and the measured run follows with the next requests of the same
+ * sequence. Run it with {@code ./gradlew loadgen -PloadgenArgs="--rate=5000 --skew=zipf"}.
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile;
+        try {
+            profile = LoadProfile.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadProfile.usage());
+            System.exit(2);
+            return;
+        }
+        // the JDK keeps this many idle connections per server, 5 by default; below the concurrency the rest
+        // would reconnect for every request
+        System.setProperty("http.maxConnections", Integer.toString(profile.getConcurrency()));
+        HttpPoster poster = new HttpPoster(profile.getBaseUrl());
+        TransferWorkload workload = new TransferWorkload(profile);
+
+        if (profile.isSeedAccounts()) {
+            seedAccounts(profile, poster, workload);
+        }
+        OpenLoopRun run = new OpenLoopRun(profile, poster, workload);
+        long warmupRequests = (long) profile.getWarmupSeconds() * profile.getRate();
+        if (warmupRequests > 0) {
+            System.out.printf("Warming up for %d s at %d/s%n", profile.getWarmupSeconds(), profile.getRate());
+            run.run(0, profile.getWarmupSeconds());
+        }
+        System.out.printf("Measuring for %d s at %d/s, %s accounts, %d in flight at most%n",
+                profile.getDurationSeconds(), profile.getRate(), profile.getSkew().name().toLowerCase(),
+                profile.getConcurrency());
+        OpenLoopRun.Result result = run.run(warmupRequests, profile.getDurationSeconds());
+
+        Map<String, Object> report = report(profile, result);
+        print(report, System.out);
+        if (!profile.getReport().isEmpty()) {
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(new File(profile.getReport()), report);
+        }
+        if (!profile.getHgrm().isEmpty()) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(profile.getHgrm()), false, "UTF-8")) {
+                // in milliseconds, the unit HdrHistogram's plotter expects
+                result.getLatency().outputPercentileDistribution(out, (double) TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private static void seedAccounts(LoadProfile profile, HttpPoster poster, TransferWorkload workload)
+            throws IOException {
+        System.out.printf("Creating %d accounts%n", profile.getAccounts());
+        String summary = poster.postStream("/v1/accounts/bulk", "application/x-ndjson", (OutputStream out) -> {
+            for (int account = 0; account < profile.getAccounts(); account++) {
+                out.write(("{\"accountId\":\"" + workload.accountId(account) + "\",\"balance\":"
+                        + profile.getBalance() + "}\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        System.out.println(summary);
+    }
+
+    private static Map<String, Object> report(LoadProfile profile, OpenLoopRun.Result result) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", profile.getLabel());
+        report.put("profile", profile);
+        report.put("requests", result.getRequests());
+        report.put("elapsedSeconds", result.getElapsedNanos() / 1e9);
+        report.put("throughputPerSecond", result.getRequests() * 1e9 / result.getElapsedNanos());
+        Map<String, Long> statuses = new LinkedHashMap<>();
+        for (int status = 0; status < result.getStatuses().length; status++) {
+            if (result.getStatuses()[status] > 0) {
+                statuses.put(Integer.toString(status), result.getStatuses()[status]);
+            }
+        }
+        report.put("statuses", statuses);
+        report.put("errors", result.getErrors());
+        report.put("lateStarts", result.getLateStarts());
+        report.put("latencyMillis", percentiles(result.getLatency()));
+        report.put("serviceTimeMillis", percentiles(result.getServiceTime()));
+        return report;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            millis.put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                    histogram.getValueAtPercentile(percentile) / 1e6);
+        }
+        millis.put("max", histogram.getMaxValue() / 1e6);
+        return millis;
+    }
+
+    private static void print(Map<String, Object> report, PrintStream out) {
+        out.printf("%nRequests:     %d in %.2f s, %.1f/s%n", report.get("requests"), report.get("elapsedSeconds"),
+                report.get("throughputPerSecond"));
+        out.printf("Statuses:     %s, %d without a response%n", report.get("statuses"), report.get("errors"));
+        out.printf("Sent late:    %d (more than 1 ms after due; raise --concurrency if many)%n",
+                report.get("lateStarts"));
+        out.printf("Latency ms:   %s%n", report.get("latencyMillis"));
+        out.printf("Service ms:   %s%n", report.get("serviceTimeMillis"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.db.awmd.challenge.loadgen;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What {@link LoadGenerator} runs, from {@code --name=value} arguments. The defaults are the reference run
+ * that releases and repository implementations are compared with, so change them only together with the
+ * results they are compared against.
+ */
+@Getter
+public final class LoadProfile {
+
+    public enum Skew {
+        /**
+         * Every account equally likely.
+         */
+        UNIFORM,
+        /**
+         * Account {@code k} (from 0) picked with probability proportional to {@code 1 / (k + 1)^zipf-exponent}.
+         */
+        ZIPF
+    }
+
+    private final String baseUrl;
+
+    private final int accounts;
+
+    private final long balance;
+
+    private final boolean seedAccounts;
+
+    private final String idPrefix;
+
+    private final int rate;
+
+    private final int warmupSeconds;
+
+    private final int durationSeconds;
+
+    private final int concurrency;
+
+    private final Skew skew;
+
+    private final double zipfExponent;
+
+    private final double overdraftRatio;
+
+    private final long seed;
+
+    private final String label;
+
+    private final String report;
+
+    private final String hgrm;
+
+    private LoadProfile(Map<String, String> options) {
+        this.baseUrl = take(options, "base-url", "http://localhost:18080");
+        this.accounts = Integer.parseInt(take(options, "accounts", "100000"));
+        this.balance = Long.parseLong(take(options, "balance", "1000000"));
+        this.seedAccounts = Boolean.parseBoolean(take(options, "seed-accounts", "true"));
+        this.idPrefix = take(options, "id-prefix", "lg-");
+        this.rate = Integer.parseInt(take(options, "rate", "2000"));
+        this.warmupSeconds = Integer.parseInt(take(options, "warmup-seconds", "10"));
+        this.durationSeconds = Integer.parseInt(take(options, "duration-seconds", "60"));
+        this.concurrency = Integer.parseInt(take(options, "concurrency", "64"));
+        this.skew = Skew.valueOf(take(options, "skew", "uniform").toUpperCase());
+        this.zipfExponent = Double.parseDouble(take(options, "zipf-exponent", "0.99"));
+        this.overdraftRatio = Double.parseDouble(take(options, "overdraft-ratio", "0.01"));
+        this.seed = Long.parseLong(take(options, "seed", "42"));
+        this.label = take(options, "label", "");
+        this.report = take(options, "report", "");
+        this.hgrm = take(options, "hgrm", "");
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+        if (accounts < 2 || rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || concurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "Needs at least 2 accounts and a positive rate, duration and concurrency");
+        }
+        if (overdraftRatio < 0 || overdraftRatio > 1) {
+            throw new IllegalArgumentException("overdraft-ratio must be between 0 and 1");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException for an argument that is not {@code --name=value} or an unknown name
+     */
+    public static LoadProfile parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return new LoadProfile(options);
+    }
+
+    private static String take(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public static String usage() {
+        return String.join(System.lineSeparator(),
+                "Options, as --name=value (defaults are the reference run):",
+                "  base-url          server to drive                         http://localhost:18080",
+                "  accounts          accounts transfers pick from            100000",
+                "  balance           balance each account is created with    1000000",
+                "  seed-accounts     create the accounts first (bulk import) true",
+                "  id-prefix         account ids are prefix + number         lg-",
+                "  rate              transfers started per second            2000",
+                "  warmup-seconds    run before measuring, then discarded    10",
+                "  duration-seconds  measured run                            60",
+                "  concurrency       requests in flight at most              64",
+                "  skew              uniform or zipf                         uniform",
+                "  zipf-exponent     skew of zipf, higher is hotter          0.99",
+                "  overdraft-ratio   share of transfers meant to overdraw    0.01",
+                "  seed              makes the sequence of transfers         42",
+                "  label             name of the run in the report",
+                "  report            JSON file to write the report to",
+                "  hgrm              file for the HdrHistogram percentile distribution of latency");
+    }
+}
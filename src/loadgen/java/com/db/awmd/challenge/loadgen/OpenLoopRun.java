@@ -0,0 +1,181 @@
+package com.db.awmd.challenge.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends transfers on a fixed schedule: request {@code i} of a run is due {@code i / rate} seconds after it
+ * starts, whether or not earlier ones have been answered, and {@code concurrency} threads take requests in
+ * order and send each once it is due.
+ *
+ * Latency is measured from when a request was due, not from when a thread got around to sending it. A
+ * closed loop that waits for each answer before sending the next stops sending while the server stalls and
+ * so never records the requests that stall would have delayed (coordinated omission); here every one of
+ * them is charged with its wait. Service time, from the actual send, is recorded separately. When all
+ * threads are busy, requests go out late; {@link Result#getLateStarts()} counts those more than a
+ * millisecond late, and a high count means the concurrency, not the server, limited the run.
+ */
+final class OpenLoopRun {
+
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoadProfile profile;
+
+    private final HttpPoster poster;
+
+    private final TransferWorkload workload;
+
+    OpenLoopRun(LoadProfile profile, HttpPoster poster, TransferWorkload workload) {
+        this.profile = profile;
+        this.poster = poster;
+        this.workload = workload;
+    }
+
+    /**
+     * Sends requests {@code first} to {@code first + seconds * rate - 1} and returns once all are answered.
+     */
+    Result run(long first, int seconds) throws InterruptedException {
+        long requests = (long) seconds * profile.getRate();
+        double nanosPerRequest = (double) TimeUnit.SECONDS.toNanos(1) / profile.getRate();
+        AtomicLong next = new AtomicLong();
+        List<Sender> senders = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < profile.getConcurrency(); i++) {
+            Sender sender = new Sender(next, requests, start, nanosPerRequest, first);
+            sender.setName("loadgen-" + i);
+            sender.start();
+            senders.add(sender);
+        }
+        Result result = new Result();
+        for (Sender sender : senders) {
+            sender.join();
+            result.add(sender);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private final class Sender extends Thread {
+
+        private final AtomicLong next;
+
+        private final long requests;
+
+        private final long start;
+
+        private final double nanosPerRequest;
+
+        private final long first;
+
+        private final Histogram latency = new Histogram(3);
+
+        private final Histogram serviceTime = new Histogram(3);
+
+        private final long[] statuses = new long[600];
+
+        private long errors;
+
+        private long lateStarts;
+
+        Sender(AtomicLong next, long requests, long start, double nanosPerRequest, long first) {
+            this.next = next;
+            this.requests = requests;
+            this.start = start;
+            this.nanosPerRequest = nanosPerRequest;
+            this.first = first;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            for (long request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+                long due = start + (long) (request * nanosPerRequest);
+                byte[] body = workload.body(first + request);
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+                if (now - due > LATE_NANOS) {
+                    lateStarts++;
+                }
+                try {
+                    int status = poster.post("/v1/fund/transfer", body);
+                    statuses[Math.min(status, statuses.length - 1)]++;
+                } catch (IOException e) {
+                    errors++;
+                }
+                long done = System.nanoTime();
+                latency.recordValue(done - due);
+                serviceTime.recordValue(done - now);
+            }
+        }
+    }
+
+    /**
+     * What a run sent and how long the answers took, in nanoseconds.
+     */
+    static final class Result {
+
+        private final Histogram latency = new Histogram(3);
+
+        private final Histogram serviceTime = new Histogram(3);
+
+        private final long[] statuses = new long[600];
+
+        private long errors;
+
+        private long lateStarts;
+
+        private long elapsedNanos;
+
+        private void add(Sender sender) {
+            latency.add(sender.latency);
+            serviceTime.add(sender.serviceTime);
+            for (int status = 0; status < statuses.length; status++) {
+                statuses[status] += sender.statuses[status];
+            }
+            errors += sender.errors;
+            lateStarts += sender.lateStarts;
+        }
+
+        Histogram getLatency() {
+            return latency;
+        }
+
+        Histogram getServiceTime() {
+            return serviceTime;
+        }
+
+        /**
+         * Responses per HTTP status; statuses of 599 and above are counted at 599.
+         */
+        long[] getStatuses() {
+            return statuses;
+        }
+
+        /**
+         * Requests that got no HTTP response at all.
+         */
+        long getErrors() {
+            return errors;
+        }
+
+        long getLateStarts() {
+            return lateStarts;
+        }
+
+        long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        long getRequests() {
+            return latency.getTotalCount();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * The transfer bodies of a run. Request {@code i} is drawn from its own random stream, seeded with the
+ * profile's seed and {@code i}, so a run sends the same transfers whatever the timing or the number of
+ * threads sending them.
+ *
+ * Regular transfers move between 0.01 and 0.99, too little for an account to run out within a run;
+ * the {@code overdraft-ratio} share ask for a thousand times the opening balance and should be refused.
+ */
+final class TransferWorkload {
+
+    private final LoadProfile profile;
+
+    private final AccountSampler sampler;
+
+    TransferWorkload(LoadProfile profile) {
+        this.profile = profile;
+        this.sampler = AccountSampler.of(profile);
+    }
+
+    byte[] body(long request) {
+        SplittableRandom random = new SplittableRandom(profile.getSeed() + request);
+        int sender = sampler.sample(random);
+        int receiver = sampler.sample(random);
+        while (receiver == sender) {
+            receiver = sampler.sample(random);
+        }
+        String fund = random.nextDouble() < profile.getOverdraftRatio()
+                ? Long.toString(1000 * profile.getBalance())
+                : "0." + String.format("%02d", 1 + random.nextInt(99));
+        return ("{\"sender\":\"" + accountId(sender) + "\",\"receiver\":\"" + accountId(receiver)
+                + "\",\"fund\":" + fund + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    String accountId(int account) {
+        return profile.getIdPrefix() + account;
+    }
+}
@@ -1,34 +1,61 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.math.BigDecimal;
 
 @Data
 public class Account {
 
+  /**
+   * Marks an account built from a request without a balance, so validation can still reject it.
+   */
+  public static final long NO_BALANCE = Long.MIN_VALUE;
+
+  /**
+   * Longest account id in characters; as UTF-8 it takes at most three times as many bytes, which keeps it
+   * within the unsigned short length the journal, snapshots and history frame ids with.
+   */
+  public static final int MAX_ID_LENGTH = 256;
+
   @NotNull
   @NotEmpty
+  @Size(max = MAX_ID_LENGTH)
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  /**
+   * Balance in minor currency units, see {@link Money}. This is what transfers read and write.
+   */
+  @JsonIgnore
+  private volatile long balanceUnits;
 
   public Account(String accountId) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.balanceUnits = 0L;
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
                  @JsonProperty("balance") BigDecimal balance) {
     this.accountId = accountId;
-    this.balance = balance;
+    setBalance(balance);
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  public BigDecimal getBalance() {
+    long units = this.balanceUnits;
+    return units == NO_BALANCE ? null : Money.toDecimal(units);
+  }
+
+  public void setBalance(BigDecimal balance) {
+    this.balanceUnits = balance == null ? NO_BALANCE : Money.toUnits(balance);
   }
 }
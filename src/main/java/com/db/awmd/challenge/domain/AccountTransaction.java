@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One debit or credit of an account, as listed by {@code GET /v1/accounts/{id}/transactions}.
+ */
+@Data
+public class AccountTransaction {
+
+  /**
+   * Position in the account's history, starting at 0; also the pagination cursor.
+   */
+  private final long sequence;
+
+  /**
+   * Wall clock time of the transfer, in milliseconds since the epoch.
+   */
+  private final long timestamp;
+
+  /**
+   * Negative for a debit, positive for a credit.
+   */
+  private final BigDecimal amount;
+
+  private final String counterpartyAccountId;
+}
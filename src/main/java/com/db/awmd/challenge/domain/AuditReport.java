@@ -0,0 +1,45 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Result of auditing every balance at one consistent point in time.
+ */
+@Data
+public class AuditReport {
+
+  /**
+   * Epoch of the consistent cut the balances were read at.
+   */
+  private final long cut;
+
+  private final long accounts;
+
+  private final BigDecimal totalBalance;
+
+  /**
+   * What the accounts were created with; transfers keep {@link #totalBalance} equal to it.
+   */
+  private final BigDecimal openingBalance;
+
+  private final long negativeAccounts;
+
+  /**
+   * The first negative ids, up to a fixed number.
+   */
+  private final List<String> negativeAccountIds;
+
+  private final long durationMillis;
+
+  /**
+   * Threads the balances were summed with.
+   */
+  private final int parallelism;
+
+  public boolean isPassed() {
+    return totalBalance.compareTo(openingBalance) == 0 && negativeAccounts == 0;
+  }
+}
@@ -1,8 +1,10 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
+import lombok.ToString;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.constraints.Min;
@@ -12,6 +14,8 @@ import java.math.BigDecimal;
 @Data
 public class FundTransfer {
 
+    private static final long NO_UNITS = Long.MIN_VALUE;
+
     @NotNull
     @NotEmpty
     private final String senderAccountId;
@@ -24,6 +28,13 @@ public class FundTransfer {
     @Min(value = 0, message = "fund must be positive.")
     private BigDecimal fund;
 
+    /**
+     * {@link #fund} in minor units, converted once when the fund is set, or {@link #NO_UNITS} when it has no
+     * exact count of them.
+     */
+    @ToString.Exclude
+    private transient long fundUnits;
+
     /**
      * this constructor just provided for default behaviour
      *
@@ -34,6 +45,7 @@ public class FundTransfer {
         this.senderAccountId = senderAccountId;
         this.receiverAccountId = receiverAccountId;
         this.fund = BigDecimal.ZERO;
+        this.fundUnits = 0;
     }
 
     @JsonCreator
@@ -43,5 +55,42 @@ public class FundTransfer {
         this.senderAccountId = senderAccountId;
         this.receiverAccountId = receiverAccountId;
         this.fund = fund;
+        this.fundUnits = unitsOf(fund);
+    }
+
+    public void setFund(BigDecimal fund) {
+        this.fund = fund;
+        this.fundUnits = unitsOf(fund);
+    }
+
+    /**
+     * The fund in minor currency units, see {@link Money#toUnits(BigDecimal)}.
+     *
+     * @throws ArithmeticException when {@link #hasFundUnits()} is false
+     */
+    @JsonIgnore
+    public long getFundUnits() {
+        if (fundUnits == NO_UNITS) {
+            throw new ArithmeticException("Fund " + fund + " is not a whole number of minor units");
+        }
+        return fundUnits;
+    }
+
+    /**
+     * Whether the fund is set and a whole number of minor units that fits in a long.
+     */
+    public boolean hasFundUnits() {
+        return fundUnits != NO_UNITS;
+    }
+
+    private static long unitsOf(BigDecimal fund) {
+        if (fund == null) {
+            return NO_UNITS;
+        }
+        try {
+            return Money.toUnits(fund);
+        } catch (ArithmeticException e) {
+            return NO_UNITS;
+        }
     }
 }
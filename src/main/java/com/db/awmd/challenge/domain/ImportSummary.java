@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk account import. Accounts are created as they are read, so an import that stopped on
+ * {@link #error} keeps the ones before it.
+ */
+@Data
+public class ImportSummary {
+
+  private final long imported;
+
+  /**
+   * Lines whose account id already existed, in the repository or earlier in the same import.
+   */
+  private final long duplicates;
+
+  /**
+   * Lines without an account id, with one too long or one the repository cannot store, or with a missing or
+   * negative balance.
+   */
+  private final long invalid;
+
+  /**
+   * The first duplicate ids, up to a fixed number.
+   */
+  private final List<String> duplicateAccountIds;
+
+  /**
+   * Why the import stopped before the end of the stream, or null.
+   */
+  private final String error;
+}
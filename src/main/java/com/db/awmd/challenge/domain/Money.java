@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Fixed-point money arithmetic. Balances and funds are held internally as a {@code long} count of minor
+ * currency units (cents for a scale of 2) and only turned into {@link BigDecimal} at the JSON boundary.
+ * The scale is read once from the {@code currency.scale} system property and defaults to 2.
+ */
+public final class Money {
+
+    public static final int SCALE = Integer.getInteger("currency.scale", 2);
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException when the amount has more decimal places than {@link #SCALE} or does not
+     *                             fit in a long once scaled
+     */
+    public static long toUnits(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Converts back without trailing zeros, so 500.00 in cents reads as 500 and 123.40 as 123.4.
+     */
+    public static BigDecimal toDecimal(long units) {
+        BigDecimal amount = BigDecimal.valueOf(units, SCALE).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    /**
+     * Same as {@link #toDecimal(long)}, for sums that may not fit a long.
+     */
+    public static BigDecimal toDecimal(BigInteger units) {
+        BigDecimal amount = new BigDecimal(units, SCALE).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    public static long add(long units, long other) {
+        return Math.addExact(units, other);
+    }
+
+    public static long subtract(long units, long other) {
+        return Math.subtractExact(units, other);
+    }
+}
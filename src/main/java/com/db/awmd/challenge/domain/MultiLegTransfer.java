@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One sender paying several receivers at once, such as a payroll run: either every leg is applied or none is,
+ * and the sender is debited the total of the legs in one go. A receiver may appear in more than one leg.
+ */
+@Data
+public class MultiLegTransfer {
+
+    @NotNull
+    @NotEmpty
+    private final String senderAccountId;
+
+    @NotNull
+    @NotEmpty
+    @Valid
+    private final List<Leg> legs;
+
+    /**
+     * Each leg as a transfer from the sender, converted to minor units once; what history, notifications and
+     * rejection messages work with.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final transient List<FundTransfer> fundTransfers;
+
+    @JsonCreator
+    public MultiLegTransfer(@JsonProperty("sender") String senderAccountId,
+                            @JsonProperty("legs") List<Leg> legs) {
+        this.senderAccountId = senderAccountId;
+        this.legs = legs;
+        if (legs == null) {
+            this.fundTransfers = Collections.emptyList();
+            return;
+        }
+        List<FundTransfer> transfers = new ArrayList<>(legs.size());
+        for (Leg leg : legs) {
+            transfers.add(new FundTransfer(senderAccountId, leg == null ? null : leg.getReceiverAccountId(),
+                    leg == null ? null : leg.getFund()));
+        }
+        this.fundTransfers = Collections.unmodifiableList(transfers);
+    }
+
+    /**
+     * The sum of the legs; only meaningful once every leg has passed the fund checks.
+     */
+    @JsonIgnore
+    public BigDecimal getTotalFund() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (FundTransfer fundTransfer : fundTransfers) {
+            total = total.add(fundTransfer.getFund());
+        }
+        return total;
+    }
+
+    /**
+     * The whole transfer as a single transfer of {@link #getTotalFund()}, to describe a rejection of the sender.
+     */
+    @JsonIgnore
+    public FundTransfer getTotalTransfer() {
+        return new FundTransfer(senderAccountId, null, getTotalFund());
+    }
+
+    @Data
+    public static class Leg {
+
+        @NotNull
+        @NotEmpty
+        private final String receiverAccountId;
+
+        @NotNull
+        @Min(value = 0, message = "fund must be positive.")
+        private final BigDecimal fund;
+
+        @JsonCreator
+        public Leg(@JsonProperty("receiver") String receiverAccountId,
+                   @JsonProperty("fund") BigDecimal fund) {
+            this.receiverAccountId = receiverAccountId;
+            this.fund = fund;
+        }
+    }
+}
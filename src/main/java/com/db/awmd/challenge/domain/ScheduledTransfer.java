@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * A transfer to be made at {@code executeAt}, an ISO-8601 instant such as {@code 2026-01-31T09:00:00Z}, and
+ * again every {@code intervalSeconds} after it when that is positive. {@code id} is given out when it is
+ * scheduled.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScheduledTransfer {
+
+    private final Long id;
+
+    @NotNull
+    @NotEmpty
+    private final String sender;
+
+    @NotNull
+    @NotEmpty
+    private final String receiver;
+
+    @NotNull
+    @Min(value = 0, message = "fund must be positive.")
+    private final BigDecimal fund;
+
+    @NotNull
+    @NotEmpty
+    private final String executeAt;
+
+    @Min(value = 0, message = "intervalSeconds must not be negative.")
+    private final int intervalSeconds;
+
+    @JsonCreator
+    public ScheduledTransfer(@JsonProperty("id") Long id,
+                             @JsonProperty("sender") String sender,
+                             @JsonProperty("receiver") String receiver,
+                             @JsonProperty("fund") BigDecimal fund,
+                             @JsonProperty("executeAt") String executeAt,
+                             @JsonProperty("intervalSeconds") int intervalSeconds) {
+        this.id = id;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.fund = fund;
+        this.executeAt = executeAt;
+        this.intervalSeconds = intervalSeconds;
+    }
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A page of an account's history, newest first.
+ */
+@Data
+public class TransactionPage {
+
+  private final List<AccountTransaction> transactions;
+
+  /**
+   * Cursor for the next, older page, or null when the page reaches the oldest entry still kept.
+   */
+  private final Long nextCursor;
+}
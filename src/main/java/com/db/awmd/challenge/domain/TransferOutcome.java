@@ -0,0 +1,93 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.InvalidTransactionException;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Outcome of a single fund transfer as the result-code transfer API reports it. A rejection is one of these
+ * constants instead of an exception, so it captures no stack trace, and its message is only built by
+ * {@link #describe} when a response needs one. Each outcome also has an already completed future, so an
+ * asynchronous caller can be answered without allocating one.
+ */
+public enum TransferOutcome {
+
+    OK(TransferStatus.OK),
+
+    SENDER_NOT_FOUND(TransferStatus.NOT_FOUND),
+
+    RECEIVER_NOT_FOUND(TransferStatus.NOT_FOUND),
+
+    NOT_POSITIVE(TransferStatus.INVALID),
+
+    TOO_PRECISE(TransferStatus.INVALID),
+
+    OVERDRAFT(TransferStatus.OVERDRAFT);
+
+    private final TransferStatus status;
+
+    private final CompletableFuture<TransferOutcome> completed;
+
+    TransferOutcome(TransferStatus status) {
+        this.status = status;
+        this.completed = CompletableFuture.completedFuture(this);
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return this == OK;
+    }
+
+    /**
+     * A future completed with this outcome, shared by every caller; it must not be completed again.
+     */
+    public CompletableFuture<TransferOutcome> completed() {
+        return completed;
+    }
+
+    /**
+     * The message a rejection of {@code fundTransfer} is reported with.
+     */
+    public String describe(FundTransfer fundTransfer) {
+        switch (this) {
+            case SENDER_NOT_FOUND:
+                return "Debiting Account with accountId " + fundTransfer.getSenderAccountId()
+                        + " does not available in system";
+            case RECEIVER_NOT_FOUND:
+                return "Crediting Account with accountId " + fundTransfer.getReceiverAccountId()
+                        + " does not available in system";
+            case NOT_POSITIVE:
+                return "Only positive fund transfer supported in system";
+            case TOO_PRECISE:
+                return "Fund " + fundTransfer.getFund() + " is more precise than the currency allows";
+            case OVERDRAFT:
+                return "The Debiting Fund " + fundTransfer.getFund() + " from AccountId "
+                        + fundTransfer.getSenderAccountId() + " is Not allowed, Due to less balance";
+            default:
+                return "Transfer done";
+        }
+    }
+
+    /**
+     * The exception the throwing transfer API reports this rejection of {@code fundTransfer} with.
+     *
+     * @throws IllegalStateException for {@link #OK}, which is no rejection
+     */
+    public RuntimeException toException(FundTransfer fundTransfer) {
+        switch (status) {
+            case NOT_FOUND:
+                return new AccountNotFoundException(describe(fundTransfer));
+            case INVALID:
+                return new InvalidTransactionException(describe(fundTransfer));
+            case OVERDRAFT:
+                return new OverDraftNotSuportedException(describe(fundTransfer));
+            default:
+                throw new IllegalStateException("Transfer " + fundTransfer + " was not rejected");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.InvalidTransactionException;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+
+/**
+ * Outcome of a single fund transfer, reported per item by the batch transfer API.
+ */
+public enum TransferStatus {
+
+    OK,
+
+    NOT_FOUND,
+
+    OVERDRAFT,
+
+    INVALID;
+
+    /**
+     * The status a transfer rejected with {@code rejection} is reported with, or {@code null} when it was
+     * not rejected but failed.
+     */
+    public static TransferStatus of(Throwable rejection) {
+        if (rejection instanceof OverDraftNotSuportedException) {
+            return OVERDRAFT;
+        }
+        if (rejection instanceof AccountNotFoundException) {
+            return NOT_FOUND;
+        }
+        if (rejection instanceof InvalidTransactionException) {
+            return INVALID;
+        }
+        return null;
+    }
+}
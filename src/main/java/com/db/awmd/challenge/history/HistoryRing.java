@@ -0,0 +1,207 @@
+package com.db.awmd.challenge.history;
+
+import com.db.awmd.challenge.domain.AccountTransaction;
+import com.db.awmd.challenge.domain.Money;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The latest entries of one account's history in two arrays, so its memory is bounded by the capacity
+ * however busy the account is: timestamp and amount of an entry side by side in {@link #entries}, which
+ * usually puts them on one cache line, and the counterparty in {@link #counterparties}. The arrays start
+ * small and double up to the capacity, which keeps quiet accounts cheap. Counterparties are the other
+ * account's own ring key, never a copy.
+ *
+ * When the ring is full its older half is evicted: written as one block to the {@link HistorySegment} if
+ * there is one, and dropped otherwise. Blocks hold consecutive sequences, so block {@code i} covers the
+ * {@code half} entries from {@code spilledFrom + i * half}:
+ *
+ * <pre>
+ * block: (timestamp, amount units, unsigned counterparty length, counterparty bytes)*
+ * </pre>
+ */
+@Slf4j
+final class HistoryRing {
+
+  private static final int INITIAL_SIZE = 8;
+
+  private final String accountId;
+
+  private final int capacity;
+
+  private final int half;
+
+  /**
+   * Timestamp at {@code 2 * slot}, amount units at {@code 2 * slot + 1}.
+   */
+  private long[] entries;
+
+  private String[] counterparties;
+
+  private int mask;
+
+  /**
+   * Sequence of the next entry.
+   */
+  private long next;
+
+  /**
+   * Oldest sequence still in the arrays.
+   */
+  private long first;
+
+  /**
+   * Oldest sequence in the segment; equals {@link #first} when nothing is there.
+   */
+  private long spilledFrom;
+
+  private long[] blockOffsets = new long[0];
+
+  private int[] blockLengths = new int[0];
+
+  private int blocks;
+
+  HistoryRing(String accountId, int capacity) {
+    this.accountId = accountId;
+    this.capacity = capacity;
+    this.half = capacity / 2;
+    int size = Math.min(INITIAL_SIZE, capacity);
+    this.entries = new long[2 * size];
+    this.counterparties = new String[size];
+    this.mask = size - 1;
+  }
+
+  String getAccountId() {
+    return accountId;
+  }
+
+  synchronized void record(long timestamp, long amountUnits, String counterparty, HistorySegment segment) {
+    if (next - first == counterparties.length) {
+      if (counterparties.length < capacity) {
+        grow();
+      } else {
+        evict(segment);
+      }
+    }
+    int slot = (int) next & mask;
+    entries[2 * slot] = timestamp;
+    entries[2 * slot + 1] = amountUnits;
+    counterparties[slot] = counterparty;
+    next++;
+  }
+
+  /**
+   * Up to {@code limit} entries before sequence {@code before}, newest first.
+   */
+  synchronized void readBefore(long before, int limit, List<AccountTransaction> into, HistorySegment segment) {
+    long sequence = Math.min(before, next) - 1;
+    for (; sequence >= first && into.size() < limit; sequence--) {
+      int slot = (int) sequence & mask;
+      into.add(new AccountTransaction(sequence, entries[2 * slot], Money.toDecimal(entries[2 * slot + 1]),
+              counterparties[slot]));
+    }
+    while (sequence >= spilledFrom && into.size() < limit) {
+      int block = (int) ((sequence - spilledFrom) / half);
+      long blockFirst = spilledFrom + (long) block * half;
+      List<AccountTransaction> spilled = readBlock(segment, block, blockFirst);
+      for (; sequence >= blockFirst && into.size() < limit; sequence--) {
+        into.add(spilled.get((int) (sequence - blockFirst)));
+      }
+    }
+  }
+
+  /**
+   * Oldest sequence that can still be read.
+   */
+  synchronized long oldest() {
+    return spilledFrom;
+  }
+
+  private void grow() {
+    int size = counterparties.length * 2;
+    long[] grownEntries = new long[2 * size];
+    String[] grownCounterparties = new String[size];
+    for (long sequence = first; sequence < next; sequence++) {
+      int from = (int) sequence & mask;
+      int to = (int) sequence & (size - 1);
+      grownEntries[2 * to] = entries[2 * from];
+      grownEntries[2 * to + 1] = entries[2 * from + 1];
+      grownCounterparties[to] = counterparties[from];
+    }
+    entries = grownEntries;
+    counterparties = grownCounterparties;
+    mask = size - 1;
+  }
+
+  private void evict(HistorySegment segment) {
+    if (segment != null) {
+      try {
+        ByteBuffer block = encode(first, half);
+        int length = block.remaining();
+        long offset = segment.write(block);
+        if (blocks == blockOffsets.length) {
+          blockOffsets = Arrays.copyOf(blockOffsets, Math.max(4, blocks * 2));
+          blockLengths = Arrays.copyOf(blockLengths, blockOffsets.length);
+        }
+        blockOffsets[blocks] = offset;
+        blockLengths[blocks++] = length;
+      } catch (IOException e) {
+        // earlier blocks would no longer be followed by the rest of the history
+        log.warn("Could not write history of account {} to the segment, dropping it", accountId, e);
+        blocks = 0;
+        spilledFrom = first + half;
+      }
+    } else {
+      spilledFrom = first + half;
+    }
+    for (long sequence = first; sequence < first + half; sequence++) {
+      counterparties[(int) sequence & mask] = null;
+    }
+    first += half;
+  }
+
+  private ByteBuffer encode(long from, int count) throws IOException {
+    byte[][] ids = new byte[count][];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      ids[i] = counterparties[(int) (from + i) & mask].getBytes(StandardCharsets.UTF_8);
+      // ids are bounded when accounts are created, see Account#MAX_ID_LENGTH; lengths are unsigned
+      if (ids[i].length > 0xFFFF) {
+        throw new IOException("Counterparty id of account " + accountId + " is longer than " + 0xFFFF + " bytes");
+      }
+      size += 8 + 8 + 2 + ids[i].length;
+    }
+    ByteBuffer block = ByteBuffer.allocate(size);
+    for (int i = 0; i < count; i++) {
+      int slot = (int) (from + i) & mask;
+      block.putLong(entries[2 * slot]).putLong(entries[2 * slot + 1]).putShort((short) ids[i].length).put(ids[i]);
+    }
+    block.flip();
+    return block;
+  }
+
+  private List<AccountTransaction> readBlock(HistorySegment segment, int block, long blockFirst) {
+    ByteBuffer bytes;
+    try {
+      bytes = segment.read(blockOffsets[block], blockLengths[block]);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    AccountTransaction[] spilled = new AccountTransaction[half];
+    for (int i = 0; i < half; i++) {
+      long timestamp = bytes.getLong();
+      long amountUnits = bytes.getLong();
+      byte[] id = new byte[bytes.getShort() & 0xffff];
+      bytes.get(id);
+      spilled[i] = new AccountTransaction(blockFirst + i, timestamp, Money.toDecimal(amountUnits),
+              new String(id, StandardCharsets.UTF_8));
+    }
+    return Arrays.asList(spilled);
+  }
+}
@@ -0,0 +1,60 @@
+package com.db.awmd.challenge.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File that history entries evicted from memory are written to, in blocks that each account's
+ * {@link HistoryRing} finds again by offset. Writers reserve their range up front, so blocks of different
+ * accounts are written concurrently. The file is emptied on startup: the offsets pointing into it live in
+ * memory only.
+ */
+final class HistorySegment implements Closeable {
+
+  private final Path path;
+
+  private final FileChannel channel;
+
+  private final AtomicLong end = new AtomicLong();
+
+  HistorySegment(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * @return the offset the block was written at
+   */
+  long write(ByteBuffer block) throws IOException {
+    long offset = end.getAndAdd(block.remaining());
+    long position = offset;
+    while (block.hasRemaining()) {
+      position += channel.write(block, position);
+    }
+    return offset;
+  }
+
+  ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(length);
+    while (block.hasRemaining()) {
+      if (channel.read(block, offset + block.position()) < 0) {
+        throw new IOException("History segment " + path + " ends before offset " + (offset + length));
+      }
+    }
+    block.flip();
+    return block;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    Files.deleteIfExists(path);
+  }
+}
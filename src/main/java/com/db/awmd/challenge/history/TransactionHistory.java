@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.history;
+
+import com.db.awmd.challenge.domain.AccountTransaction;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransactionPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debits and credits of every account, the latest {@code history.capacity} of each in a {@link HistoryRing}
+ * and older ones in an optional {@link HistorySegment}.
+ *
+ * Entries are recorded after the repository accepted the transfer, so two transfers of one account that
+ * complete at the same time may be listed in either order. The history is not journaled and starts empty on
+ * every startup.
+ */
+@Component
+public class TransactionHistory {
+
+  private final Map<String, HistoryRing> rings = new ConcurrentHashMap<>();
+
+  private final int capacity;
+
+  private final HistorySegment segment;
+
+  @Autowired
+  public TransactionHistory(@Value("${history.capacity:256}") int capacity,
+                            @Value("${history.segment-path:}") String segmentPath) {
+    if (capacity <= 0) {
+      this.capacity = 0;
+    } else {
+      int size = Integer.highestOneBit(Math.max(2, capacity));
+      this.capacity = size < capacity ? size << 1 : size;
+    }
+    try {
+      this.segment = this.capacity == 0 || segmentPath.isEmpty() ? null : new HistorySegment(Paths.get(segmentPath));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static TransactionHistory disabled() {
+    return new TransactionHistory(0, "");
+  }
+
+  public void record(FundTransfer fundTransfer) {
+    if (capacity == 0) {
+      return;
+    }
+    long timestamp = System.currentTimeMillis();
+    long units = fundTransfer.getFundUnits();
+    HistoryRing sender = ring(fundTransfer.getSenderAccountId());
+    HistoryRing receiver = ring(fundTransfer.getReceiverAccountId());
+    sender.record(timestamp, -units, receiver.getAccountId(), segment);
+    receiver.record(timestamp, units, sender.getAccountId(), segment);
+  }
+
+  /**
+   * Up to {@code limit} entries of the account, newest first, starting before sequence {@code cursor}, or
+   * with the newest when it is null.
+   */
+  public TransactionPage page(String accountId, Long cursor, int limit) {
+    HistoryRing ring = rings.get(accountId);
+    if (ring == null) {
+      return new TransactionPage(Collections.emptyList(), null);
+    }
+    List<AccountTransaction> transactions = new ArrayList<>(limit);
+    ring.readBefore(cursor == null ? Long.MAX_VALUE : cursor, limit, transactions, segment);
+    Long nextCursor = null;
+    if (!transactions.isEmpty()) {
+      long last = transactions.get(transactions.size() - 1).getSequence();
+      nextCursor = last > ring.oldest() ? last : null;
+    }
+    return new TransactionPage(transactions, nextCursor);
+  }
+
+  private HistoryRing ring(String accountId) {
+    HistoryRing ring = rings.get(accountId);
+    return ring != null ? ring : rings.computeIfAbsent(accountId, id -> new HistoryRing(id, capacity));
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (segment != null) {
+      segment.close();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.db.awmd.challenge.journal;
+
+import lombok.Getter;
+
+/**
+ * One accepted change to the accounts: an account creation, a transfer, or a multi-leg transfer from one
+ * sender to several receivers. Amounts are in minor units.
+ */
+@Getter
+public final class JournalRecord {
+
+  public enum Type {
+    CREATE_ACCOUNT,
+    TRANSFER,
+    MULTI_LEG
+  }
+
+  private final Type type;
+
+  /**
+   * The created account, or the sender of a transfer.
+   */
+  private final String accountId;
+
+  /**
+   * The receiver of a transfer, {@code null} for an account creation or a multi-leg transfer.
+   */
+  private final String receiverAccountId;
+
+  /**
+   * The opening balance, the fund moved, or the total a multi-leg transfer debited.
+   */
+  private final long units;
+
+  /**
+   * The receivers of a multi-leg transfer, each once, and what each was credited; {@code null} otherwise.
+   */
+  private final String[] receiverAccountIds;
+
+  private final long[] legUnits;
+
+  /**
+   * Epoch the change was applied in, to tell which records a snapshot already contains.
+   */
+  private final long epoch;
+
+  /**
+   * Assigned by the journal writer, in file order.
+   */
+  private long sequence;
+
+  volatile boolean durable;
+
+  private JournalRecord(Type type, String accountId, String receiverAccountId, long units, long epoch) {
+    this(type, accountId, receiverAccountId, units, null, null, epoch);
+  }
+
+  private JournalRecord(Type type, String accountId, String receiverAccountId, long units,
+                        String[] receiverAccountIds, long[] legUnits, long epoch) {
+    this.type = type;
+    this.accountId = accountId;
+    this.receiverAccountId = receiverAccountId;
+    this.units = units;
+    this.receiverAccountIds = receiverAccountIds;
+    this.legUnits = legUnits;
+    this.epoch = epoch;
+  }
+
+  public static JournalRecord createAccount(String accountId, long balanceUnits, long epoch) {
+    return new JournalRecord(Type.CREATE_ACCOUNT, accountId, null, balanceUnits, epoch);
+  }
+
+  public static JournalRecord transfer(String senderAccountId, String receiverAccountId, long fundUnits, long epoch) {
+    return new JournalRecord(Type.TRANSFER, senderAccountId, receiverAccountId, fundUnits, epoch);
+  }
+
+  /**
+   * A multi-leg transfer as one record, so a replay applies all of its legs or, when the record was torn, none.
+   */
+  public static JournalRecord multiLeg(String senderAccountId, String[] receiverAccountIds, long[] legUnits,
+                                       long totalUnits, long epoch) {
+    return new JournalRecord(Type.MULTI_LEG, senderAccountId, null, totalUnits, receiverAccountIds, legUnits, epoch);
+  }
+
+  void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+  @Override
+  public String toString() {
+    switch (type) {
+      case TRANSFER:
+        return "#" + sequence + " transfer " + units + " from " + accountId + " to " + receiverAccountId;
+      case MULTI_LEG:
+        return "#" + sequence + " transfer " + units + " from " + accountId + " to " + receiverAccountIds.length
+                + " receivers";
+      default:
+        return "#" + sequence + " create " + accountId + " with " + units;
+    }
+  }
+}
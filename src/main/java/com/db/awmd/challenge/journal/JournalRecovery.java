@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.snapshot.SnapshotInfo;
+import com.db.awmd.challenge.snapshot.SnapshotService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the in-memory accounts at startup, before the web server accepts requests: loads the newest
+ * snapshot, replays the journal written after it, and then opens the journal for new records and starts
+ * taking snapshots.
+ */
+@Slf4j
+@Component
+public class JournalRecovery {
+
+  private final AccountsRepository accountsRepository;
+
+  private final TransferJournal journal;
+
+  private final SnapshotService snapshots;
+
+  @Autowired
+  public JournalRecovery(AccountsRepository accountsRepository, TransferJournal journal,
+                         SnapshotService snapshots) {
+    this.accountsRepository = accountsRepository;
+    this.journal = journal;
+    this.snapshots = snapshots;
+  }
+
+  @PostConstruct
+  public void recover() throws IOException {
+    if (!journal.isEnabled()) {
+      return;
+    }
+    if (!(accountsRepository instanceof AccountsRepositoryInMemory)) {
+      log.warn("Journal is only written for the in-memory repository, ignoring it for {}",
+              accountsRepository.getClass().getSimpleName());
+      return;
+    }
+    AccountsRepositoryInMemory repository = (AccountsRepositoryInMemory) accountsRepository;
+    long started = System.nanoTime();
+    SnapshotInfo snapshot = snapshots.loadLatest(repository);
+    long cut = snapshot == null ? 0L : snapshot.getEpoch();
+    long[] lastEpoch = {cut};
+    long[] replayed = {0L};
+    journal.replay(snapshot == null ? 0L : snapshot.getJournalOffset(), record -> {
+      lastEpoch[0] = Math.max(lastEpoch[0], record.getEpoch());
+      // records written after the snapshot's offset can still belong to its cut
+      if (record.getEpoch() > cut) {
+        apply(record);
+        replayed[0]++;
+      }
+    });
+    repository.getEpochs().advancePast(lastEpoch[0]);
+    log.info("Recovered accounts from {} and {} journal records in {} ms",
+            snapshot == null ? "no snapshot" : snapshot.getPath(), replayed[0],
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    journal.start();
+    snapshots.start(repository);
+  }
+
+  private void apply(JournalRecord record) {
+    switch (record.getType()) {
+      case CREATE_ACCOUNT:
+        Account account = new Account(record.getAccountId());
+        account.setBalanceUnits(record.getUnits());
+        accountsRepository.createAccount(account);
+        break;
+      case TRANSFER:
+        accountsRepository.transferFund(new FundTransfer(
+                record.getAccountId(), record.getReceiverAccountId(), Money.toDecimal(record.getUnits())));
+        break;
+      case MULTI_LEG:
+        List<MultiLegTransfer.Leg> legs = new ArrayList<>(record.getReceiverAccountIds().length);
+        for (int i = 0; i < record.getReceiverAccountIds().length; i++) {
+          legs.add(new MultiLegTransfer.Leg(record.getReceiverAccountIds()[i],
+                  Money.toDecimal(record.getLegUnits()[i])));
+        }
+        MultiLegTransfer multiLegTransfer = new MultiLegTransfer(record.getAccountId(), legs);
+        TransferOutcome outcome = accountsRepository.tryTransferMultiLeg(multiLegTransfer);
+        if (!outcome.isOk()) {
+          throw outcome.toException(multiLegTransfer.getTotalTransfer());
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown journal record " + record);
+    }
+  }
+}
@@ -0,0 +1,521 @@
+package com.db.awmd.challenge.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of account creations and transfers, written ahead of the HTTP response so that a
+ * restart can rebuild the in-memory accounts by replaying it.
+ *
+ * The repository appends a record while it still holds the locks of the accounts involved, which only puts
+ * the record on a lock-free queue; records of one account therefore reach the file in the order they were
+ * applied. A single writer thread drains the queue and syncs the file once for everything it drained
+ * (group commit), so records queued while one sync is running share the next one. It writes at most
+ * {@code journal.batch-size} records per sync and can wait up to {@code journal.flush-interval-ms} for a
+ * batch to fill. Request threads block in {@link #awaitDurable()} until their own record is on disk, or
+ * take a future from {@link #whenDurable()} instead of waiting. A batch size of 1 gives an fsync per request.
+ *
+ * Each record is framed as {@code length, crc32, payload}; replay stops at the first torn or corrupt record
+ * and cuts the file there.
+ */
+@Slf4j
+@Component
+public class TransferJournal {
+
+  private static final byte CREATE_ACCOUNT = 1;
+
+  private static final byte TRANSFER = 2;
+
+  private static final byte MULTI_LEG = 3;
+
+  /**
+   * Room for a multi-leg transfer of many thousands of legs, which is one record however many legs it has.
+   */
+  private static final int MAX_RECORD_BYTES = 1 << 24;
+
+  private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+  /**
+   * Stands in for a record appended after the journal failed or was closed; it never becomes durable, so the
+   * transfer it belongs to is not acknowledged.
+   */
+  private static final JournalRecord REJECTED = JournalRecord.createAccount("", 0, 0);
+
+  private final boolean enabled;
+
+  private final Path path;
+
+  private final long flushIntervalNanos;
+
+  private final int batchSize;
+
+  private final Queue<JournalRecord> queue = new ConcurrentLinkedQueue<>();
+
+  private final ThreadLocal<JournalRecord> lastAppended = new ThreadLocal<>();
+
+  private final Object durableMonitor = new Object();
+
+  /**
+   * Futures of {@link #whenDurable()} whose record is not on disk yet, guarded by {@link #durableMonitor}.
+   */
+  private final List<DurableWaiter> waiters = new ArrayList<>();
+
+  private volatile boolean accepting;
+
+  private volatile boolean running;
+
+  /**
+   * Set once a started journal fails or is closed, after which appended records are rejected.
+   */
+  private volatile boolean stopped;
+
+  private volatile IOException failure;
+
+  /**
+   * File length covering every record written so far.
+   */
+  private volatile long writtenBytes;
+
+  private FileChannel channel;
+
+  private Thread writer;
+
+  private long nextSequence = 1;
+
+  @Autowired
+  public TransferJournal(@Value("${journal.enabled:false}") boolean enabled,
+                         @Value("${journal.path:transfers.journal}") String path,
+                         @Value("${journal.flush-interval-ms:0}") long flushIntervalMs,
+                         @Value("${journal.batch-size:512}") int batchSize) {
+    this.enabled = enabled;
+    this.path = Paths.get(path);
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * A journal that is never started, so appending and waiting cost nothing.
+   */
+  public static TransferJournal disabled() {
+    return new TransferJournal(false, "transfers.journal", 0, 1);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Length of the journal file up to the last record written. Every record queued after this is read
+   * lies beyond it.
+   */
+  public long writtenBytes() {
+    return writtenBytes;
+  }
+
+  /**
+   * Reads every intact record in file order. Must run before {@link #start()}; records appended while
+   * replaying are ignored, since the journal is not accepting yet.
+   */
+  public void replay(Consumer<JournalRecord> consumer) throws IOException {
+    replay(0L, consumer);
+  }
+
+  /**
+   * Reads the intact records from {@code fromOffset}, a value of {@link #writtenBytes()}, to the end.
+   */
+  public void replay(long fromOffset, Consumer<JournalRecord> consumer) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    long validLength = fromOffset;
+    long count = 0;
+    try (InputStream file = Files.newInputStream(path);
+         DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+      if (file.skip(fromOffset) != fromOffset) {
+        throw new IOException("Journal " + path + " is shorter than " + fromOffset + " bytes");
+      }
+      CRC32 crc = new CRC32();
+      while (true) {
+        JournalRecord record;
+        int length;
+        try {
+          length = in.readInt();
+          int checksum = in.readInt();
+          if (length <= 0 || length > MAX_RECORD_BYTES) {
+            log.warn("Journal {} has a corrupt record at offset {}, ignoring the rest", path, validLength);
+            break;
+          }
+          byte[] payload = new byte[length];
+          in.readFully(payload);
+          crc.reset();
+          crc.update(payload, 0, length);
+          if ((int) crc.getValue() != checksum) {
+            log.warn("Journal {} has a corrupt record at offset {}, ignoring the rest", path, validLength);
+            break;
+          }
+          record = decode(ByteBuffer.wrap(payload));
+        } catch (EOFException e) {
+          break;
+        }
+        validLength += 8 + length;
+        nextSequence = record.getSequence() + 1;
+        count++;
+        consumer.accept(record);
+      }
+    }
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      if (file.size() > validLength) {
+        log.warn("Truncating journal {} from {} to {} bytes", path, file.size(), validLength);
+        file.truncate(validLength);
+      }
+    }
+    log.info("Replayed {} journal records from {}", count, path);
+  }
+
+  /**
+   * Opens the journal for appending and starts the writer thread.
+   */
+  public synchronized void start() throws IOException {
+    if (!enabled || running) {
+      return;
+    }
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    writtenBytes = channel.size();
+    running = true;
+    writer = new Thread(this::writeLoop, "transfer-journal-writer");
+    writer.setDaemon(true);
+    writer.start();
+    accepting = true;
+  }
+
+  /**
+   * Queues a record; called by the repository while it holds the locks of the accounts the record touches.
+   * Once the journal has failed or been closed, the record is dropped and the calling thread's next
+   * {@link #awaitDurable()} or {@link #whenDurable()} fails.
+   */
+  public void append(JournalRecord record) {
+    if (!accepting) {
+      if (stopped) {
+        lastAppended.set(REJECTED);
+      }
+      return;
+    }
+    queue.offer(record);
+    lastAppended.set(record);
+  }
+
+  /**
+   * Blocks until the last record appended by the calling thread is on disk.
+   *
+   * @throws UncheckedIOException when the journal can no longer be written
+   */
+  public void awaitDurable() {
+    JournalRecord record = lastAppended.get();
+    if (record == null) {
+      return;
+    }
+    lastAppended.remove();
+    if (record == REJECTED) {
+      throw notWritable();
+    }
+    if (record.durable) {
+      return;
+    }
+    synchronized (durableMonitor) {
+      while (!record.durable && failure == null) {
+        try {
+          durableMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+      }
+    }
+    if (!record.durable) {
+      throw new UncheckedIOException("Transfer journal is not writable", failure);
+    }
+  }
+
+  /**
+   * Like {@link #awaitDurable()}, but returns at once with a future that completes when the last record
+   * appended by the calling thread is on disk, or exceptionally with an {@link UncheckedIOException} when
+   * the journal can no longer be written. Futures complete on the writer thread, so whatever they trigger
+   * should be short.
+   */
+  public CompletableFuture<Void> whenDurable() {
+    JournalRecord record = lastAppended.get();
+    if (record == null) {
+      return DURABLE;
+    }
+    lastAppended.remove();
+    if (record == REJECTED) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(notWritable());
+      return failed;
+    }
+    if (record.durable) {
+      return DURABLE;
+    }
+    synchronized (durableMonitor) {
+      if (!record.durable && failure == null) {
+        DurableWaiter waiter = new DurableWaiter(record);
+        waiters.add(waiter);
+        return waiter.future;
+      }
+    }
+    if (!record.durable) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new UncheckedIOException("Transfer journal is not writable", failure));
+      return failed;
+    }
+    return DURABLE;
+  }
+
+  private UncheckedIOException notWritable() {
+    IOException cause = failure;
+    return new UncheckedIOException("Transfer journal is not writable",
+            cause != null ? cause : new IOException("Transfer journal " + path + " is closed"));
+  }
+
+  /**
+   * Stops accepting records, writes the ones queued and waits for the writer. A record that slipped into the
+   * queue after the writer's last look fails its waiters, like one appended after closing.
+   */
+  @PreDestroy
+  public void close() throws InterruptedException, IOException {
+    if (running) {
+      stopped = true;
+    }
+    accepting = false;
+    running = false;
+    if (writer == null) {
+      return;
+    }
+    writer.join();
+    channel.close();
+    List<DurableWaiter> failed;
+    IOException cause;
+    synchronized (durableMonitor) {
+      if (failure == null) {
+        failure = new IOException("Transfer journal " + path + " is closed");
+      }
+      cause = failure;
+      queue.clear();
+      durableMonitor.notifyAll();
+      failed = new ArrayList<>(waiters);
+      waiters.clear();
+    }
+    for (DurableWaiter waiter : failed) {
+      waiter.future.completeExceptionally(new UncheckedIOException("Transfer journal is not writable", cause));
+    }
+  }
+
+  private void writeLoop() {
+    List<JournalRecord> batch = new ArrayList<>(batchSize);
+    List<DurableWaiter> durable = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    CRC32 crc = new CRC32();
+    try {
+      while (running || !queue.isEmpty()) {
+        drain(batch);
+        if (batch.isEmpty()) {
+          LockSupport.parkNanos(MAX_PARK_NANOS);
+          continue;
+        }
+        // gather more records for the same sync, up to the batch size or the flush interval
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        long remaining;
+        while (batch.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(Math.min(remaining, MAX_PARK_NANOS));
+          drain(batch);
+        }
+
+        for (JournalRecord record : batch) {
+          record.setSequence(nextSequence++);
+          buffer = encode(record, buffer, crc);
+          if (buffer.position() > (1 << 16)) {
+            flush(buffer);
+          }
+        }
+        flush(buffer);
+        channel.force(false);
+        writtenBytes = channel.size();
+
+        synchronized (durableMonitor) {
+          for (JournalRecord record : batch) {
+            record.durable = true;
+          }
+          durableMonitor.notifyAll();
+          waiters.removeIf(waiter -> waiter.record.durable && durable.add(waiter));
+        }
+        for (DurableWaiter waiter : durable) {
+          waiter.future.complete(null);
+        }
+        durable.clear();
+        batch.clear();
+      }
+    } catch (IOException e) {
+      log.error("Transfer journal {} failed, transfers can no longer be acknowledged", path, e);
+      List<DurableWaiter> failed;
+      synchronized (durableMonitor) {
+        failure = e;
+        // failure first, so a record rejected from here on reports it
+        stopped = true;
+        accepting = false;
+        durableMonitor.notifyAll();
+        failed = new ArrayList<>(waiters);
+        waiters.clear();
+      }
+      for (DurableWaiter waiter : failed) {
+        waiter.future.completeExceptionally(new UncheckedIOException("Transfer journal is not writable", e));
+      }
+    }
+  }
+
+  private void drain(List<JournalRecord> batch) {
+    JournalRecord record;
+    while (batch.size() < batchSize && (record = queue.poll()) != null) {
+      batch.add(record);
+    }
+  }
+
+  private void flush(ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static ByteBuffer encode(JournalRecord record, ByteBuffer buffer, CRC32 crc) {
+    byte[] accountId = record.getAccountId().getBytes(StandardCharsets.UTF_8);
+    byte[] receiverAccountId = record.getReceiverAccountId() == null
+            ? new byte[0] : record.getReceiverAccountId().getBytes(StandardCharsets.UTF_8);
+    byte[][] receiverAccountIds = null;
+    int length = 1 + 8 + 8 + 8 + 2 + accountId.length;
+    if (record.getType() == JournalRecord.Type.MULTI_LEG) {
+      receiverAccountIds = new byte[record.getReceiverAccountIds().length][];
+      length += 4;
+      for (int i = 0; i < receiverAccountIds.length; i++) {
+        receiverAccountIds[i] = record.getReceiverAccountIds()[i].getBytes(StandardCharsets.UTF_8);
+        length += 2 + receiverAccountIds[i].length + 8;
+      }
+    } else {
+      length += 2 + receiverAccountId.length;
+    }
+    if (buffer.remaining() < 8 + length) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + 8 + length));
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+    int start = buffer.position();
+    buffer.putInt(length);
+    buffer.putInt(0);
+    buffer.put(typeCode(record.getType()));
+    buffer.putLong(record.getSequence());
+    buffer.putLong(record.getEpoch());
+    buffer.putLong(record.getUnits());
+    // ids are bounded when accounts are created, see Account#MAX_ID_LENGTH; lengths are unsigned
+    buffer.putShort((short) accountId.length);
+    buffer.put(accountId);
+    if (receiverAccountIds != null) {
+      buffer.putInt(receiverAccountIds.length);
+      for (int i = 0; i < receiverAccountIds.length; i++) {
+        buffer.putShort((short) receiverAccountIds[i].length);
+        buffer.put(receiverAccountIds[i]);
+        buffer.putLong(record.getLegUnits()[i]);
+      }
+    } else {
+      buffer.putShort((short) receiverAccountId.length);
+      buffer.put(receiverAccountId);
+    }
+
+    crc.reset();
+    crc.update(buffer.array(), start + 8, length);
+    buffer.putInt(start + 4, (int) crc.getValue());
+    return buffer;
+  }
+
+  private static byte typeCode(JournalRecord.Type type) {
+    switch (type) {
+      case TRANSFER:
+        return TRANSFER;
+      case MULTI_LEG:
+        return MULTI_LEG;
+      default:
+        return CREATE_ACCOUNT;
+    }
+  }
+
+  private static JournalRecord decode(ByteBuffer payload) {
+    byte type = payload.get();
+    long sequence = payload.getLong();
+    long epoch = payload.getLong();
+    long units = payload.getLong();
+    String accountId = readString(payload);
+    JournalRecord record;
+    if (type == MULTI_LEG) {
+      String[] receiverAccountIds = new String[payload.getInt()];
+      long[] legUnits = new long[receiverAccountIds.length];
+      for (int i = 0; i < receiverAccountIds.length; i++) {
+        receiverAccountIds[i] = readString(payload);
+        legUnits[i] = payload.getLong();
+      }
+      record = JournalRecord.multiLeg(accountId, receiverAccountIds, legUnits, units, epoch);
+    } else {
+      String receiverAccountId = readString(payload);
+      record = type == TRANSFER
+              ? JournalRecord.transfer(accountId, receiverAccountId, units, epoch)
+              : JournalRecord.createAccount(accountId, units, epoch);
+    }
+    record.setSequence(sequence);
+    record.durable = true;
+    return record;
+  }
+
+  private static String readString(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static final class DurableWaiter {
+
+    private final JournalRecord record;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private DurableWaiter(JournalRecord record) {
+      this.record = record;
+    }
+  }
+}
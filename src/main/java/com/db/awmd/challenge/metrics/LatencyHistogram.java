@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.metrics;
+
+import org.HdrHistogram.AtomicHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies from one microsecond to one minute, at two significant digits. Recording is lock-free and does
+ * not allocate, so it can sit on the transfer path; values outside the range are clamped to it.
+ */
+public final class LatencyHistogram {
+
+  private static final long LOWEST = TimeUnit.MICROSECONDS.toNanos(1);
+
+  private static final long HIGHEST = TimeUnit.MINUTES.toNanos(1);
+
+  private final AtomicHistogram histogram = new AtomicHistogram(LOWEST, HIGHEST, 2);
+
+  public void recordNanos(long nanos) {
+    histogram.recordValue(Math.min(Math.max(nanos, LOWEST), HIGHEST));
+  }
+
+  public long count() {
+    return histogram.getTotalCount();
+  }
+
+  public long percentileMicros(double percentile) {
+    return TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile));
+  }
+
+  public long maxMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(histogram.getMaxValue());
+  }
+}
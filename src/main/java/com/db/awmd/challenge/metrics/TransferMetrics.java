@@ -0,0 +1,59 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.domain.TransferStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome of the transfers and account lookups served, recorded by the services.
+ */
+@Component
+public class TransferMetrics {
+
+  private final LatencyHistogram transferLatency = new LatencyHistogram();
+
+  private final LatencyHistogram lookupLatency = new LatencyHistogram();
+
+  private final LongAdder[] outcomes = new LongAdder[TransferStatus.values().length];
+
+  public TransferMetrics() {
+    for (int i = 0; i < outcomes.length; i++) {
+      outcomes[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param outcome {@code null} for a transfer that failed for a reason other than the ones reported to
+   *                clients; only its latency is recorded
+   */
+  public void transfer(TransferStatus outcome, long nanos) {
+    transferLatency.recordNanos(nanos);
+    if (outcome != null) {
+      outcomes[outcome.ordinal()].increment();
+    }
+  }
+
+  /**
+   * Counts the outcome of a batch item; batches are timed as a whole, not per item.
+   */
+  public void batchItem(TransferStatus outcome) {
+    outcomes[outcome.ordinal()].increment();
+  }
+
+  public void lookup(long nanos) {
+    lookupLatency.recordNanos(nanos);
+  }
+
+  public LatencyHistogram getTransferLatency() {
+    return transferLatency;
+  }
+
+  public LatencyHistogram getLookupLatency() {
+    return lookupLatency;
+  }
+
+  public long outcomeCount(TransferStatus outcome) {
+    return outcomes[outcome.ordinal()].sum();
+  }
+}
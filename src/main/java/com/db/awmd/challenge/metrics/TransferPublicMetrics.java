@@ -0,0 +1,125 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.domain.AuditReport;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.BalanceAuditService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.web.ConcurrencyLimiter;
+import com.db.awmd.challenge.web.IdempotencyCache;
+import com.db.awmd.challenge.web.RequestExecutor;
+import com.db.awmd.challenge.web.TransferRateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Publishes the transfer, account, notification, idempotency, request, admission, audit and schedule figures on
+ * the actuator {@code /metrics} endpoint.
+ * Latencies are in microseconds and cover the whole uptime.
+ */
+@Component
+public class TransferPublicMetrics implements PublicMetrics {
+
+  private final TransferMetrics transferMetrics;
+
+  private final AccountsRepository accountsRepository;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final RequestExecutor requestExecutor;
+
+  private final TransferRateLimiter rateLimiter;
+
+  private final ConcurrencyLimiter concurrencyLimiter;
+
+  private final BalanceAuditService balanceAuditService;
+
+  private final TransferScheduler transferScheduler;
+
+  @Autowired
+  public TransferPublicMetrics(TransferMetrics transferMetrics, AccountsRepository accountsRepository,
+                               NotificationDispatcher notificationDispatcher, IdempotencyCache idempotencyCache,
+                               RequestExecutor requestExecutor, TransferRateLimiter rateLimiter,
+                               ConcurrencyLimiter concurrencyLimiter, BalanceAuditService balanceAuditService,
+                               TransferScheduler transferScheduler) {
+    this.transferMetrics = transferMetrics;
+    this.accountsRepository = accountsRepository;
+    this.notificationDispatcher = notificationDispatcher;
+    this.idempotencyCache = idempotencyCache;
+    this.requestExecutor = requestExecutor;
+    this.rateLimiter = rateLimiter;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.balanceAuditService = balanceAuditService;
+    this.transferScheduler = transferScheduler;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    for (TransferStatus outcome : TransferStatus.values()) {
+      metrics.add(new Metric<>("transfers." + outcome.name().toLowerCase(Locale.ROOT),
+              transferMetrics.outcomeCount(outcome)));
+    }
+    addLatency(metrics, "transfers.latency", transferMetrics.getTransferLatency());
+    addLatency(metrics, "accounts.lookup.latency", transferMetrics.getLookupLatency());
+    if (accountsRepository.getLockWaits() != null) {
+      addLatency(metrics, "accounts.lock.wait", accountsRepository.getLockWaits());
+    }
+    metrics.add(new Metric<>("accounts.count", accountsRepository.countAccounts()));
+
+    addLatency(metrics, "notifications.latency", notificationDispatcher.getDeliveryLag());
+    metrics.add(new Metric<>("notifications.queue.depth", notificationDispatcher.queueDepth()));
+    metrics.add(new Metric<>("notifications.delivered", notificationDispatcher.deliveredCount()));
+    metrics.add(new Metric<>("notifications.dropped", notificationDispatcher.droppedCount()));
+    metrics.add(new Metric<>("notifications.spilled", notificationDispatcher.spilledCount()));
+
+    metrics.add(new Metric<>("idempotency.hits", idempotencyCache.hitCount()));
+    metrics.add(new Metric<>("idempotency.misses", idempotencyCache.missCount()));
+    metrics.add(new Metric<>("idempotency.evictions", idempotencyCache.evictionCount()));
+    metrics.add(new Metric<>("idempotency.size", idempotencyCache.size()));
+
+    metrics.add(new Metric<>("requests.in-flight", requestExecutor.inFlight()));
+    metrics.add(new Metric<>("requests.rejected", requestExecutor.rejectedCount()));
+    metrics.add(new Metric<>("requests.timed-out", requestExecutor.timedOutCount()));
+
+    metrics.add(new Metric<>("admission.rejected.global-rate", rateLimiter.globalRejectedCount()));
+    metrics.add(new Metric<>("admission.rejected.account-rate", rateLimiter.accountRejectedCount()));
+    metrics.add(new Metric<>("admission.rejected.concurrency", concurrencyLimiter.rejectedCount()));
+    metrics.add(new Metric<>("admission.account-buckets.busy-evictions", rateLimiter.busyEvictionCount()));
+    metrics.add(new Metric<>("admission.concurrency.limit", concurrencyLimiter.limit()));
+    metrics.add(new Metric<>("admission.concurrency.in-flight", concurrencyLimiter.inFlight()));
+
+    metrics.add(new Metric<>("audit.runs", balanceAuditService.runCount()));
+    metrics.add(new Metric<>("audit.failures", balanceAuditService.failureCount()));
+    AuditReport lastAudit = balanceAuditService.getLastReport();
+    if (lastAudit != null) {
+      metrics.add(new Metric<>("audit.last.duration-ms", lastAudit.getDurationMillis()));
+      metrics.add(new Metric<>("audit.last.passed", lastAudit.isPassed() ? 1 : 0));
+    }
+
+    metrics.add(new Metric<>("schedule.pending", transferScheduler.pendingCount()));
+    metrics.add(new Metric<>("schedule.scheduled", transferScheduler.scheduledCount()));
+    metrics.add(new Metric<>("schedule.cancelled", transferScheduler.cancelledCount()));
+    metrics.add(new Metric<>("schedule.released", transferScheduler.releasedCount()));
+    metrics.add(new Metric<>("schedule.rejected", transferScheduler.rejectedCount()));
+    return metrics;
+  }
+
+  private static void addLatency(List<Metric<?>> metrics, String name, LatencyHistogram histogram) {
+    metrics.add(new Metric<>(name + ".count", histogram.count()));
+    metrics.add(new Metric<>(name + ".p50", histogram.percentileMicros(50)));
+    metrics.add(new Metric<>(name + ".p99", histogram.percentileMicros(99)));
+    metrics.add(new Metric<>(name + ".p999", histogram.percentileMicros(99.9)));
+    metrics.add(new Metric<>(name + ".max", histogram.maxMicros()));
+  }
+}
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * Receives accounts one at a time with their balance in minor units, without an {@code Account} per call.
+ */
+@FunctionalInterface
+public interface AccountBalanceVisitor {
+
+  void visit(String accountId, long balanceUnits);
+}
@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of the balances of {@link AccountsRepositoryJdbc}, least recently used first out,
+ * split into stripes that each have their own monitor.
+ *
+ * A balance read from the database may already be outdated when it arrives, so it is only cached if no
+ * write or eviction touched its stripe since the read started ({@link #generation}) and the account is not
+ * cached yet. Written balances carry the row's version, and a cached balance is only ever replaced by a
+ * later version, so writers finishing out of order cannot bring an old balance back either.
+ */
+final class AccountCache {
+
+  private static final int STRIPES = 64;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  AccountCache(int capacity) {
+    int perStripe = Math.max(1, capacity / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(perStripe);
+    }
+  }
+
+  /**
+   * The cached balance and version, or {@code null}.
+   */
+  long[] get(String accountId) {
+    Stripe stripe = stripeOf(accountId);
+    synchronized (stripe) {
+      return stripe.entries.get(accountId);
+    }
+  }
+
+  /**
+   * To be taken before reading the balance from the database and passed to {@link #loaded}.
+   */
+  long generation(String accountId) {
+    Stripe stripe = stripeOf(accountId);
+    synchronized (stripe) {
+      return stripe.generation;
+    }
+  }
+
+  void loaded(String accountId, long balanceUnits, long version, long generation) {
+    Stripe stripe = stripeOf(accountId);
+    synchronized (stripe) {
+      if (stripe.generation == generation && !stripe.entries.containsKey(accountId)) {
+        stripe.entries.put(accountId, new long[]{balanceUnits, version});
+      }
+    }
+  }
+
+  /**
+   * A balance that was committed with {@code version}.
+   */
+  void written(String accountId, long balanceUnits, long version) {
+    Stripe stripe = stripeOf(accountId);
+    synchronized (stripe) {
+      long[] cached = stripe.entries.get(accountId);
+      if (cached == null || cached[1] < version) {
+        stripe.entries.put(accountId, new long[]{balanceUnits, version});
+      }
+      stripe.generation++;
+    }
+  }
+
+  void clear() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.entries.clear();
+        stripe.generation++;
+      }
+    }
+  }
+
+  private Stripe stripeOf(String accountId) {
+    int h = accountId.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+  }
+
+  private static final class Stripe {
+
+    private final Map<String, long[]> entries;
+
+    private long generation;
+
+    Stripe(int capacity) {
+      this.entries = new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+          if (size() <= capacity) {
+            return false;
+          }
+          generation++;
+          return true;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size table of locks shared by all accounts. Every account id maps to one stripe, and callers that
+ * need more than one account always lock the stripes in ascending index order, so two transfers can never
+ * wait on each other in a cycle. The table size bounds the memory spent on locks regardless of the number
+ * of accounts, at the price of unrelated accounts occasionally sharing a stripe.
+ *
+ * Time spent waiting for a held stripe is recorded in {@link #getWaits()}; an uncontended lock is not timed.
+ */
+public final class AccountLockTable {
+
+  private final ReentrantLock[] locks;
+
+  private final int mask;
+
+  private final LatencyHistogram waits = new LatencyHistogram();
+
+  public AccountLockTable(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Lock stripes must be positive, was " + stripes);
+    }
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) {
+      size <<= 1;
+    }
+    this.locks = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      this.locks[i] = new ReentrantLock();
+    }
+    this.mask = size - 1;
+  }
+
+  public LatencyHistogram getWaits() {
+    return waits;
+  }
+
+  public int size() {
+    return locks.length;
+  }
+
+  public int stripeOf(String accountId) {
+    return stripeOfHash(accountId.hashCode());
+  }
+
+  /**
+   * The stripe of the account whose id has the {@link String#hashCode()} {@code idHash}.
+   */
+  public int stripeOfHash(int idHash) {
+    return (idHash ^ (idHash >>> 16)) & mask;
+  }
+
+  public void lock(int stripe) {
+    acquire(locks[stripe]);
+  }
+
+  public void unlock(int stripe) {
+    locks[stripe].unlock();
+  }
+
+  /**
+   * Locks both stripes in global order; a pair that falls into the same stripe is locked once.
+   *
+   * @return whether the {@code second} stripe was held by someone else; waits for the first one are not
+   *         reported, so a caller can tell who it waited for
+   */
+  public boolean lock(int first, int second) {
+    if (first == second) {
+      return acquire(locks[first]);
+    } else if (first < second) {
+      acquire(locks[first]);
+      return acquire(locks[second]);
+    } else {
+      boolean waited = acquire(locks[second]);
+      acquire(locks[first]);
+      return waited;
+    }
+  }
+
+  public void unlock(int first, int second) {
+    locks[first].unlock();
+    if (first != second) {
+      locks[second].unlock();
+    }
+  }
+
+  /**
+   * The stripes set in {@code stripes}, ascending, which is the order {@link #lockAll} expects.
+   */
+  public static int[] sortedStripes(BitSet stripes) {
+    int[] sorted = new int[stripes.cardinality()];
+    int count = 0;
+    for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+      sorted[count++] = stripe;
+    }
+    return sorted;
+  }
+
+  /**
+   * Locks the given stripes, which must be distinct and sorted ascending.
+   */
+  public void lockAll(int[] sortedStripes, int count) {
+    for (int i = 0; i < count; i++) {
+      acquire(locks[sortedStripes[i]]);
+    }
+  }
+
+  public void unlockAll(int[] sortedStripes, int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      locks[sortedStripes[i]].unlock();
+    }
+  }
+
+  private boolean acquire(ReentrantLock lock) {
+    if (lock.tryLock()) {
+      return false;
+    }
+    long started = System.nanoTime();
+    lock.lock();
+    waits.recordNanos(System.nanoTime() - started);
+    return true;
+  }
+}
@@ -0,0 +1,263 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The accounts of {@link AccountsRepositoryInMemory}, interned on creation into dense int indexes (the first
+ * account created is 0), so that a request hashes and compares its ids once and everything after that works
+ * on ints and primitive arrays instead of objects spread over the heap.
+ *
+ * What a transfer reads and writes, the {@link #BALANCE} and the fields of {@link EpochClock} and
+ * {@link BalanceVersions}, is interleaved in one array at four longs per account, so an account's state
+ * shares a cache line. What only creation, audits and exports need sits in parallel arrays: the opening
+ * balance, the id's hash code (for lock stripes) and the id itself, as UTF-8 bytes rather than a String.
+ * All of it grows by segments of {@link #SEGMENT_SIZE} accounts, so nothing is copied as accounts are added.
+ *
+ * The id index is an open-addressing table of (hash, index + 1) pairs with linear probing, rebuilt at twice
+ * the size once half full. Adds are serialized by the table's monitor; lookups and field access take no lock
+ * and may miss an account that is being added.
+ */
+final class AccountTable {
+
+  static final int BALANCE = 0;
+
+  /**
+   * Balance before the first change in {@link #EPOCH}, see {@link EpochClock}.
+   */
+  static final int PREVIOUS_BALANCE = 1;
+
+  static final int EPOCH = 2;
+
+  /**
+   * See {@link BalanceVersions}.
+   */
+  static final int VERSION = 3;
+
+  private static final int FIELDS = 4;
+
+  private static final int SEGMENT_SHIFT = 14;
+
+  static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private static final int INITIAL_ENTRIES = 1 << 10;
+
+  private volatile Segment[] segments = new Segment[0];
+
+  private volatile AtomicIntegerArray index = new AtomicIntegerArray(2 * INITIAL_ENTRIES);
+
+  private volatile int size;
+
+  /**
+   * Whether any account has hot credits; until one does, transfers skip looking them up, which would cost
+   * them a cache miss per account.
+   */
+  private volatile boolean anyHot;
+
+  /**
+   * @return the number of accounts; they have the indexes below it
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the index of the account, or -1
+   */
+  int find(String accountId) {
+    AtomicIntegerArray table = index;
+    int mask = (table.length() >> 1) - 1;
+    int hash = hash(accountId);
+    for (int entry = hash & mask; ; entry = (entry + 1) & mask) {
+      // the index is written after the hash, so reading it first makes the hash visible
+      int account = table.get(2 * entry + 1) - 1;
+      if (account < 0) {
+        return -1;
+      }
+      if (table.get(2 * entry) == hash && hasAccountId(account, accountId)) {
+        return account;
+      }
+    }
+  }
+
+  /**
+   * Adds an account the caller made sure does not exist yet, created inside {@code epoch}: it is not part of
+   * any earlier cut (see {@link EpochClock}), and its balance becomes its opening balance. Its fields are
+   * written before it can be found.
+   *
+   * @return the index of the account
+   */
+  synchronized int add(String accountId, long balanceUnits, long epoch) {
+    int account = size;
+    int offset = account & SEGMENT_MASK;
+    if (offset == 0) {
+      Segment[] grown = Arrays.copyOf(segments, segments.length + 1);
+      grown[grown.length - 1] = new Segment();
+      segments = grown;
+    }
+    Segment segment = segments[account >>> SEGMENT_SHIFT];
+    set(account, BALANCE, balanceUnits);
+    set(account, PREVIOUS_BALANCE, Account.NO_BALANCE);
+    set(account, EPOCH, epoch);
+    segment.openingBalances[offset] = balanceUnits;
+    segment.idHashes[offset] = accountId.hashCode();
+    segment.appendId(offset, accountId.getBytes(StandardCharsets.UTF_8));
+
+    AtomicIntegerArray table = index;
+    if (2 * (account + 1) > table.length() >> 1) {
+      table = rehash(table, table.length());
+    }
+    insert(table, hash(accountId), account);
+    index = table;
+    size = account + 1;
+    return account;
+  }
+
+  /**
+   * Drops every account; not safe while other threads use the table.
+   */
+  synchronized void clear() {
+    segments = new Segment[0];
+    index = new AtomicIntegerArray(2 * INITIAL_ENTRIES);
+    size = 0;
+    anyHot = false;
+  }
+
+  long get(int account, int field) {
+    return segment(account).state.get((account & SEGMENT_MASK) * FIELDS + field);
+  }
+
+  void set(int account, int field, long value) {
+    segment(account).state.set((account & SEGMENT_MASK) * FIELDS + field, value);
+  }
+
+  long openingBalance(int account) {
+    return segment(account).openingBalances[account & SEGMENT_MASK];
+  }
+
+  /**
+   * The {@link String#hashCode()} of the account's id, which lock stripes are chosen by.
+   */
+  int idHash(int account) {
+    return segment(account).idHashes[account & SEGMENT_MASK];
+  }
+
+  /**
+   * Decodes the account's id; allocates, so transfers work with the ids they were given instead.
+   */
+  String accountId(int account) {
+    Segment segment = segment(account);
+    int offset = account & SEGMENT_MASK;
+    int start = segment.idStart(offset);
+    return new String(segment.ids, start, segment.idEnds[offset] - start, StandardCharsets.UTF_8);
+  }
+
+  HotCredits hotCredits(int account) {
+    return anyHot ? segment(account).hotCredits.get(account & SEGMENT_MASK) : null;
+  }
+
+  /**
+   * @return false if the account already had credits
+   */
+  boolean makeHot(int account, HotCredits hotCredits) {
+    boolean made = segment(account).hotCredits.compareAndSet(account & SEGMENT_MASK, null, hotCredits);
+    anyHot = true;
+    return made;
+  }
+
+  private Segment segment(int account) {
+    return segments[account >>> SEGMENT_SHIFT];
+  }
+
+  /**
+   * Compares without decoding the stored id; ASCII ids, the common case, need no allocation at all.
+   */
+  private boolean hasAccountId(int account, String accountId) {
+    Segment segment = segment(account);
+    int offset = account & SEGMENT_MASK;
+    int start = segment.idStart(offset);
+    int length = segment.idEnds[offset] - start;
+    if (length != accountId.length()) {
+      return length >= accountId.length() && accountId(account).equals(accountId);
+    }
+    byte[] ids = segment.ids;
+    for (int i = 0; i < length; i++) {
+      if (ids[start + i] != accountId.charAt(i)) {
+        // a multi-byte character never equals a single byte, so a mismatch here settles it
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(String accountId) {
+    int h = accountId.hashCode() * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  private static AtomicIntegerArray rehash(AtomicIntegerArray table, int length) {
+    AtomicIntegerArray grown = new AtomicIntegerArray(2 * length);
+    for (int entry = 0; entry < table.length(); entry += 2) {
+      int account = table.get(entry + 1) - 1;
+      if (account >= 0) {
+        insert(grown, table.get(entry), account);
+      }
+    }
+    return grown;
+  }
+
+  private static void insert(AtomicIntegerArray table, int hash, int account) {
+    int mask = (table.length() >> 1) - 1;
+    int entry = hash & mask;
+    while (table.get(2 * entry + 1) != 0) {
+      entry = (entry + 1) & mask;
+    }
+    table.set(2 * entry, hash);
+    table.set(2 * entry + 1, account + 1);
+  }
+
+  /**
+   * {@link #SEGMENT_SIZE} accounts. The plain arrays are written before the account is published through
+   * the index and {@link #size}, and never changed afterwards.
+   */
+  private static final class Segment {
+
+    private final AtomicLongArray state = new AtomicLongArray(SEGMENT_SIZE * FIELDS);
+
+    private final long[] openingBalances = new long[SEGMENT_SIZE];
+
+    private final int[] idHashes = new int[SEGMENT_SIZE];
+
+    /**
+     * Where each account's id ends in {@link #ids}; it starts where the previous one ends.
+     */
+    private final int[] idEnds = new int[SEGMENT_SIZE];
+
+    private final AtomicReferenceArray<HotCredits> hotCredits = new AtomicReferenceArray<>(SEGMENT_SIZE);
+
+    /**
+     * Replaced by a larger copy when full; a reader holding the old array still finds every id it knew of.
+     */
+    private volatile byte[] ids = new byte[1 << 12];
+
+    int idStart(int offset) {
+      return offset == 0 ? 0 : idEnds[offset - 1];
+    }
+
+    void appendId(int offset, byte[] id) {
+      int start = idStart(offset);
+      if (start + id.length > ids.length) {
+        ids = Arrays.copyOf(ids, Math.max(2 * ids.length, start + id.length));
+      }
+      System.arraycopy(id, 0, ids, start, id.length);
+      idEnds[offset] = start + id.length;
+    }
+  }
+}
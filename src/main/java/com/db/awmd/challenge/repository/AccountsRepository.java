@@ -2,17 +2,128 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface AccountsRepository {
 
 
+  /**
+   * @throws IllegalArgumentException when the repository cannot store an id like this one, such as one too
+   *                                  long for a fixed-width slot
+   */
   void createAccount(Account account) throws DuplicateAccountIdException;
 
   Account getAccount(String accountId);
 
+  int countAccounts();
+
+  /**
+   * Visits every account with its balance as it is at the time of the visit, straight from the repository's
+   * own storage. Accounts created while it runs may or may not be visited.
+   */
+  void forEachAccount(AccountBalanceVisitor visitor);
+
   void clearAccounts();
 
-  boolean transferFund(FundTransfer fundTransfer);
+  /**
+   * Whether {@link #readAccounts} is supported.
+   */
+  default boolean supportsConsistentReads() {
+    return false;
+  }
+
+  /**
+   * Detached copies of the given accounts in the order of {@code accountIds}, with balances from one point in
+   * time: a transfer between two of them is in both balances or in neither. An id without an account gives
+   * {@code null}.
+   *
+   * @throws UnsupportedOperationException unless {@link #supportsConsistentReads()}
+   */
+  default List<Account> readAccounts(List<String> accountIds) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot read accounts consistently");
+  }
+
+  /**
+   * Applies the transfer, or reports why it was rejected; a rejection allocates nothing. Exceptions are left
+   * for failures, such as a journal that cannot be written.
+   */
+  TransferOutcome tryTransferFund(FundTransfer fundTransfer);
+
+  /**
+   * Same as {@link #tryTransferFund}, for callers that do not want to wait for the transfer. Repositories that
+   * apply transfers on their own threads override it.
+   */
+  default CompletableFuture<TransferOutcome> tryTransferFundAsync(FundTransfer fundTransfer) {
+    try {
+      return tryTransferFund(fundTransfer).completed();
+    } catch (RuntimeException e) {
+      CompletableFuture<TransferOutcome> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  /**
+   * Same as {@link #tryTransferFund}, but a rejection is thrown as the exception of its outcome
+   * ({@link TransferOutcome#toException}).
+   */
+  default boolean transferFund(FundTransfer fundTransfer) {
+    TransferOutcome outcome = tryTransferFund(fundTransfer);
+    if (!outcome.isOk()) {
+      throw outcome.toException(fundTransfer);
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link #transferFund}, for callers that do not want to wait for the transfer; a rejected transfer
+   * completes the future exceptionally.
+   */
+  default CompletableFuture<Boolean> transferFundAsync(FundTransfer fundTransfer) {
+    return tryTransferFundAsync(fundTransfer).thenApply(outcome -> {
+      if (!outcome.isOk()) {
+        throw outcome.toException(fundTransfer);
+      }
+      return true;
+    });
+  }
+
+  /**
+   * Applies a whole batch of transfers in request order, acquiring the locks of every involved account once.
+   * A rejected item does not stop the batch; its outcome is reported at the same index of the returned list.
+   */
+  List<TransferStatus> transferFunds(List<FundTransfer> fundTransfers);
+
+  /**
+   * Whether {@link #tryTransferMultiLeg} is supported.
+   */
+  default boolean supportsMultiLegTransfers() {
+    return false;
+  }
+
+  /**
+   * Applies every leg of the transfer or none of them. The sender is checked once, against the total of the
+   * legs, and debited once. A leg's fund or receiver rejects the whole transfer with that leg's outcome,
+   * before anything is locked.
+   *
+   * @throws UnsupportedOperationException unless {@link #supportsMultiLegTransfers()}
+   */
+  default TransferOutcome tryTransferMultiLeg(MultiLegTransfer multiLegTransfer) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot apply multi-leg transfers");
+  }
+
+  /**
+   * Time transfers spent waiting for account locks, or {@code null} for a repository that takes none.
+   */
+  default LatencyHistogram getLockWaits() {
+    return null;
+  }
 
 }
@@ -2,67 +2,678 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.FundTransfer;
-import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
-import com.db.awmd.challenge.exception.InvalidTransactionException;
-import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Accounts on the heap, in an {@link AccountTable}, each guarded by a stripe of an {@link AccountLockTable}.
+ * Ids are looked up once per request; after that an account is its index in the table.
+ *
+ * Credits to a hot account, one that is configured as such or whose credits keep waiting for its lock,
+ * skip the lock and go to {@link HotCredits}; debits of it still take the lock and check the sum.
+ *
+ * Reads take no lock: they validate what they read against the {@link BalanceVersions} of the accounts.
+ */
 @Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  /**
+   * Optimistic attempts of a read before it takes the locks of the accounts it reads.
+   */
+  private static final int OPTIMISTIC_READS = 8;
+
+  /**
+   * Receivers of a multi-leg transfer from which they are credited in parallel rather than one after another.
+   */
+  private static final int PARALLEL_CREDITS = 4096;
+
+  private final AccountTable accounts = new AccountTable();
+
+  private final AccountLockTable lockTable;
+
+  private final TransferJournal journal;
+
+  private final EpochClock epochs = new EpochClock();
+
+  private final Set<String> configuredHotAccounts = new HashSet<>();
+
+  /**
+   * Lock waits of credits per account, only for accounts that had any; see {@link #noteContention}.
+   */
+  private final Map<String, Contention> contention = new ConcurrentHashMap<>();
+
+  private final int hotCreditStripes;
+
+  private final int hotDetectWaits;
+
+  public AccountsRepositoryInMemory(int lockStripes, TransferJournal journal) {
+    this(lockStripes, new String[0], 16, 0, journal);
+  }
+
+  @Autowired
+  public AccountsRepositoryInMemory(@Value("${accounts.lock-stripes:1024}") int lockStripes,
+                                    @Value("${accounts.hot.ids:}") String[] hotAccountIds,
+                                    @Value("${accounts.hot.credit-stripes:16}") int hotCreditStripes,
+                                    @Value("${accounts.hot.detect-waits:0}") int hotDetectWaits,
+                                    TransferJournal journal) {
+    this.lockTable = new AccountLockTable(lockStripes);
+    this.journal = journal;
+    for (String accountId : hotAccountIds) {
+      if (!accountId.trim().isEmpty()) {
+        configuredHotAccounts.add(accountId.trim());
+      }
+    }
+    this.hotCreditStripes = hotCreditStripes;
+    this.hotDetectWaits = hotDetectWaits;
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
-      throw new DuplicateAccountIdException(
-              "Account id " + account.getAccountId() + " already exists!");
+    // under the stripe lock, so the creation is journaled before any transfer touching the account
+    int stripe = lockTable.stripeOf(account.getAccountId());
+    lockTable.lock(stripe);
+    long epoch = epochs.enter();
+    try {
+      // creations of one id share a stripe, so checking before adding is race free
+      if (accounts.find(account.getAccountId()) >= 0) {
+        throw new DuplicateAccountIdException(
+                "Account id " + account.getAccountId() + " already exists!");
+      }
+      int index = accounts.add(account.getAccountId(), account.getBalanceUnits(), epoch);
+      if (configuredHotAccounts.contains(account.getAccountId())) {
+        accounts.makeHot(index, new HotCredits(hotCreditStripes));
+      }
+      journal.append(JournalRecord.createAccount(account.getAccountId(), account.getBalanceUnits(), epoch));
+    } finally {
+      epochs.exit(epoch);
+      lockTable.unlock(stripe);
     }
   }
 
+  /**
+   * A detached copy of the account, so that callers never see its balance change while they use it.
+   */
   @Override
   public Account getAccount(String accountId) {
-    return accounts.get(accountId);
+    int account = accounts.find(accountId);
+    return account < 0 ? null : detached(accountId, readBalance(account));
+  }
+
+  @Override
+  public void forEachAccount(AccountBalanceVisitor visitor) {
+    int size = accounts.size();
+    for (int account = 0; account < size; account++) {
+      visitor.visit(accounts.accountId(account), readBalance(account));
+    }
+  }
+
+  @Override
+  public boolean supportsConsistentReads() {
+    return true;
+  }
+
+  /**
+   * Reads the accounts optimistically, see {@link BalanceVersions}, and only takes their locks once
+   * {@link #OPTIMISTIC_READS} attempts in a row overlapped a transfer.
+   */
+  @Override
+  public List<Account> readAccounts(List<String> accountIds) {
+    int size = accountIds.size();
+    int[] stored = new int[size];
+    for (int i = 0; i < size; i++) {
+      stored[i] = accounts.find(accountIds.get(i));
+    }
+    long[] versions = new long[size];
+    long[] balances = new long[size];
+    boolean consistent = false;
+    for (int attempt = 0; attempt < OPTIMISTIC_READS && !consistent; attempt++) {
+      consistent = readOptimistically(stored, versions, balances);
+      if (!consistent) {
+        Thread.yield();
+      }
+    }
+    if (!consistent) {
+      readLocked(stored, balances);
+    }
+    List<Account> copies = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      copies.add(stored[i] < 0 ? null : detached(accountIds.get(i), balances[i]));
+    }
+    return copies;
+  }
+
+  private boolean readOptimistically(int[] stored, long[] versions, long[] balances) {
+    for (int i = 0; i < stored.length; i++) {
+      if (stored[i] >= 0 && (versions[i] = BalanceVersions.startRead(accounts, stored[i])) < 0) {
+        return false;
+      }
+    }
+    for (int i = 0; i < stored.length; i++) {
+      if (stored[i] >= 0) {
+        balances[i] = balanceWithCredits(stored[i]);
+      }
+    }
+    for (int i = 0; i < stored.length; i++) {
+      if (stored[i] >= 0 && !BalanceVersions.validate(accounts, stored[i], versions[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void readLocked(int[] stored, long[] balances) {
+    BitSet involvedStripes = new BitSet(lockTable.size());
+    for (int account : stored) {
+      if (account >= 0) {
+        involvedStripes.set(lockTable.stripeOfHash(accounts.idHash(account)));
+      }
+    }
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    lockTable.lockAll(stripes, stripes.length);
+    try {
+      for (int i = 0; i < stored.length; i++) {
+        if (stored[i] >= 0) {
+          balances[i] = balanceWithCredits(stored[i]);
+        }
+      }
+    } finally {
+      lockTable.unlockAll(stripes, stripes.length);
+    }
+  }
+
+  private long readBalance(int account) {
+    for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+      long version = BalanceVersions.startRead(accounts, account);
+      long balanceUnits = balanceWithCredits(account);
+      if (BalanceVersions.validate(accounts, account, version)) {
+        return balanceUnits;
+      }
+      Thread.yield();
+    }
+    int stripe = lockTable.stripeOfHash(accounts.idHash(account));
+    lockTable.lock(stripe);
+    try {
+      return balanceWithCredits(account);
+    } finally {
+      lockTable.unlock(stripe);
+    }
+  }
+
+  /**
+   * The stored balance plus the credits of a hot account; only consistent when validated or read under the
+   * account's lock.
+   */
+  private long balanceWithCredits(int account) {
+    long balanceUnits = accounts.get(account, AccountTable.BALANCE);
+    HotCredits hot = accounts.hotCredits(account);
+    return hot == null ? balanceUnits : Money.add(balanceUnits, hot.pending());
+  }
+
+  private static Account detached(String accountId, long balanceUnits) {
+    Account copy = new Account(accountId);
+    copy.setBalanceUnits(balanceUnits);
+    return copy;
+  }
+
+  @Override
+  public int countAccounts() {
+    return accounts.size();
   }
 
   @Override
   public void clearAccounts() {
     accounts.clear();
+    contention.clear();
+  }
+
+  @Override
+  public TransferOutcome tryTransferFund(FundTransfer fundTransfer) {
+    int sender = accounts.find(fundTransfer.getSenderAccountId());
+    if (sender < 0)
+      return TransferOutcome.SENDER_NOT_FOUND;
+    int receiver = accounts.find(fundTransfer.getReceiverAccountId());
+    if (receiver < 0)
+      return TransferOutcome.RECEIVER_NOT_FOUND;
+    TransferOutcome fundCheck = TransferErrors.checkFund(fundTransfer);
+    if (!fundCheck.isOk())
+      return fundCheck;
+    long fund = fundTransfer.getFundUnits();
+
+    HotCredits hotSender = accounts.hotCredits(sender);
+    HotCredits hotReceiver = receiver == sender ? null : accounts.hotCredits(receiver);
+    int senderStripe = lockTable.stripeOf(fundTransfer.getSenderAccountId());
+    if (hotReceiver != null) {
+      return transferToHot(fundTransfer, sender, hotSender, senderStripe, hotReceiver, fund);
+    }
+    int receiverStripe = lockTable.stripeOf(fundTransfer.getReceiverAccountId());
+    // only a wait for the receiver's stripe says anything about the receiver
+    boolean receiverWaited = lockTable.lock(senderStripe, receiverStripe);
+    long epoch = epochs.enter();
+    try {
+      if (!canDebit(sender, hotSender, fund))
+        return TransferOutcome.OVERDRAFT;
+      long debited = Money.subtract(accounts.get(sender, AccountTable.BALANCE), fund);
+      long credited = Money.add(receiver == sender ? debited : accounts.get(receiver, AccountTable.BALANCE), fund);
+      beginWrite(sender, receiver);
+      EpochClock.write(accounts, sender, debited, epoch);
+      EpochClock.write(accounts, receiver, credited, epoch);
+      endWrite(sender, receiver);
+      journal.append(JournalRecord.transfer(fundTransfer.getSenderAccountId(), fundTransfer.getReceiverAccountId(),
+              fund, epoch));
+      if (receiverWaited && hotDetectWaits > 0) {
+        noteContention(receiver, fundTransfer.getReceiverAccountId());
+      }
+    } finally {
+      epochs.exit(epoch);
+      lockTable.unlock(senderStripe, receiverStripe);
+    }
+    return TransferOutcome.OK;
+  }
+
+  /**
+   * Same as a transfer to a cold account, except that only the sender is locked.
+   */
+  private TransferOutcome transferToHot(FundTransfer fundTransfer, int sender, HotCredits hotSender,
+                                        int senderStripe, HotCredits hotReceiver, long fund) {
+    lockTable.lock(senderStripe);
+    long epoch = epochs.enter();
+    try {
+      if (!canDebit(sender, hotSender, fund))
+        return TransferOutcome.OVERDRAFT;
+      long debited = Money.subtract(accounts.get(sender, AccountTable.BALANCE), fund);
+      // the credit is part of the sender's write, so a reader that sees the debit sees the credit as well
+      BalanceVersions.beginWrite(accounts, sender);
+      try {
+        EpochClock.write(accounts, sender, debited, epoch);
+        // journaled before the credit can be spent, so a replay never debits what it has not credited yet
+        journal.append(JournalRecord.transfer(fundTransfer.getSenderAccountId(),
+                fundTransfer.getReceiverAccountId(), fund, epoch));
+        hotReceiver.credit(fund, epoch);
+      } finally {
+        BalanceVersions.endWrite(accounts, sender);
+      }
+    } finally {
+      epochs.exit(epoch);
+      lockTable.unlock(senderStripe);
+    }
+    return TransferOutcome.OK;
+  }
+
+  private void beginWrite(int sender, int receiver) {
+    BalanceVersions.beginWrite(accounts, sender);
+    if (receiver != sender) {
+      BalanceVersions.beginWrite(accounts, receiver);
+    }
+  }
+
+  private void endWrite(int sender, int receiver) {
+    BalanceVersions.endWrite(accounts, sender);
+    if (receiver != sender) {
+      BalanceVersions.endWrite(accounts, receiver);
+    }
+  }
+
+  /**
+   * Whether the sender can pay {@code fund} out of its stored balance and its credits; the caller holds the
+   * sender's lock.
+   */
+  private boolean canDebit(int sender, HotCredits hotSender, long fund) {
+    long balanceUnits = accounts.get(sender, AccountTable.BALANCE);
+    long available = hotSender == null ? balanceUnits : Money.add(balanceUnits, hotSender.pending());
+    return Money.subtract(available, fund) > 0;
+  }
+
+  /**
+   * Counts a credit that waited for the receiver's lock, and makes the receiver hot once
+   * {@code accounts.hot.detect-waits} of them fall within one second. The caller holds the receiver's lock,
+   * which guards its {@link Contention}.
+   */
+  private void noteContention(int receiver, String accountId) {
+    Contention seen = contention.computeIfAbsent(accountId, id -> new Contention());
+    long now = System.nanoTime();
+    if (now - seen.windowStarted > TimeUnit.SECONDS.toNanos(1)) {
+      seen.windowStarted = now;
+      seen.waits = 0;
+    }
+    if (++seen.waits >= hotDetectWaits) {
+      accounts.makeHot(receiver, new HotCredits(hotCreditStripes));
+      contention.remove(accountId);
+    }
   }
 
   @Override
-  public boolean transferFund(FundTransfer fundTransfer) {
-    if (accounts.get(fundTransfer.getSenderAccountId()) == null)
-      throw new AccountNotFoundException("Debiting Account with accountId " + fundTransfer.getSenderAccountId() + " does not available in system");
-    if (accounts.get(fundTransfer.getReceiverAccountId()) == null)
-      throw new AccountNotFoundException("Crediting Account with accountId " + fundTransfer.getReceiverAccountId() + " does not available in system");
-    if (fundTransfer.getFund().compareTo(BigDecimal.ZERO) <= 0) {
-      throw new InvalidTransactionException("Only positive fund transfer supported in system");
-    }
-    Account debitingAc;
-    synchronized (accounts.get(fundTransfer.getSenderAccountId())) {
-      if (accounts.get(fundTransfer.getSenderAccountId()).getBalance().subtract(fundTransfer.getFund()).compareTo(BigDecimal.ZERO) < 1)
-        throw new OverDraftNotSuportedException(
-                "The Debiting Fund " + fundTransfer.getFund() + " from AccountId " + fundTransfer.getSenderAccountId() + " is Not allowed," +
-                        " Due to less balance"
-        );
-      debitingAc = accounts.get(fundTransfer.getSenderAccountId());
-      debitingAc.setBalance(debitingAc.getBalance().subtract(fundTransfer.getFund()));
-      accounts.put(fundTransfer.getSenderAccountId(), debitingAc);
-    }
-
-    synchronized (accounts.get(fundTransfer.getReceiverAccountId())) {
-      Account credtttingAc = accounts.get(fundTransfer.getReceiverAccountId());
-      credtttingAc.setBalance(credtttingAc.getBalance().add(fundTransfer.getFund()));
-      accounts.put(fundTransfer.getReceiverAccountId(), credtttingAc);
+  public List<TransferStatus> transferFunds(List<FundTransfer> fundTransfers) {
+    int size = fundTransfers.size();
+    TransferStatus[] statuses = new TransferStatus[size];
+    long[] funds = new long[size];
+    int[] senders = new int[size];
+    int[] receivers = new int[size];
+    BitSet involvedStripes = new BitSet(lockTable.size());
+
+    for (int i = 0; i < size; i++) {
+      FundTransfer fundTransfer = fundTransfers.get(i);
+      funds[i] = TransferErrors.batchFundUnits(fundTransfer);
+      if (funds[i] == 0) {
+        statuses[i] = TransferStatus.INVALID;
+        continue;
+      }
+      senders[i] = accounts.find(fundTransfer.getSenderAccountId());
+      receivers[i] = accounts.find(fundTransfer.getReceiverAccountId());
+      if (senders[i] < 0 || receivers[i] < 0) {
+        statuses[i] = TransferStatus.NOT_FOUND;
+        continue;
+      }
+      involvedStripes.set(lockTable.stripeOf(fundTransfer.getSenderAccountId()));
+      involvedStripes.set(lockTable.stripeOf(fundTransfer.getReceiverAccountId()));
+    }
+
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    int count = stripes.length;
+    lockTable.lockAll(stripes, count);
+    long epoch = epochs.enter();
+    try {
+      for (int i = 0; i < size; i++) {
+        if (statuses[i] != null) {
+          continue;
+        }
+        // every stripe is locked, so credits to hot receivers can go straight to their stored balance
+        if (!canDebit(senders[i], accounts.hotCredits(senders[i]), funds[i])) {
+          statuses[i] = TransferStatus.OVERDRAFT;
+          continue;
+        }
+        long remaining = Money.subtract(accounts.get(senders[i], AccountTable.BALANCE), funds[i]);
+        long credited = Money.add(accounts.get(receivers[i], AccountTable.BALANCE), funds[i]);
+        beginWrite(senders[i], receivers[i]);
+        EpochClock.write(accounts, senders[i], remaining, epoch);
+        EpochClock.write(accounts, receivers[i], credited, epoch);
+        endWrite(senders[i], receivers[i]);
+        FundTransfer fundTransfer = fundTransfers.get(i);
+        journal.append(JournalRecord.transfer(fundTransfer.getSenderAccountId(),
+                fundTransfer.getReceiverAccountId(), funds[i], epoch));
+        statuses[i] = TransferStatus.OK;
+      }
+    } finally {
+      epochs.exit(epoch);
+      lockTable.unlockAll(stripes, count);
     }
+    return Arrays.asList(statuses);
+  }
+
+  @Override
+  public boolean supportsMultiLegTransfers() {
     return true;
+  }
+
+  /**
+   * Takes the locks of the sender and of every receiver, in stripe order like a batch, so that readers and
+   * consistent cuts see all legs or none. Legs to the same receiver are merged first, so each receiver is
+   * written once; with every stripe held, credits to hot receivers go straight to their stored balance. From
+   * {@link #PARALLEL_CREDITS} receivers on, they are credited in parallel on the common pool.
+   */
+  @Override
+  public TransferOutcome tryTransferMultiLeg(MultiLegTransfer multiLegTransfer) {
+    int sender = accounts.find(multiLegTransfer.getSenderAccountId());
+    if (sender < 0)
+      return TransferOutcome.SENDER_NOT_FOUND;
+    TransferOutcome legCheck = TransferErrors.checkLegs(multiLegTransfer);
+    if (!legCheck.isOk())
+      return legCheck;
+    List<FundTransfer> legs = multiLegTransfer.getFundTransfers();
+    int size = legs.size();
+    // receiver in the high half, leg in the low half: sorting groups the legs of each receiver
+    long[] keys = new long[size];
+    long total = 0;
+    for (int i = 0; i < size; i++) {
+      int receiver = accounts.find(legs.get(i).getReceiverAccountId());
+      if (receiver < 0)
+        return TransferOutcome.RECEIVER_NOT_FOUND;
+      keys[i] = (long) receiver << 32 | i;
+      total += legs.get(i).getFundUnits();
+    }
+    Arrays.sort(keys);
+
+    int[] receivers = new int[size];
+    long[] credits = new long[size];
+    String[] receiverAccountIds = new String[size];
+    int count = 0;
+    BitSet involvedStripes = new BitSet(lockTable.size());
+    involvedStripes.set(lockTable.stripeOfHash(accounts.idHash(sender)));
+    for (long key : keys) {
+      int receiver = (int) (key >>> 32);
+      FundTransfer leg = legs.get((int) key);
+      if (count > 0 && receivers[count - 1] == receiver) {
+        credits[count - 1] += leg.getFundUnits();
+        continue;
+      }
+      receivers[count] = receiver;
+      credits[count] = leg.getFundUnits();
+      receiverAccountIds[count] = leg.getReceiverAccountId();
+      involvedStripes.set(lockTable.stripeOfHash(accounts.idHash(receiver)));
+      count++;
+    }
+
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    lockTable.lockAll(stripes, stripes.length);
+    long epoch = epochs.enter();
+    try {
+      if (!canDebit(sender, accounts.hotCredits(sender), total))
+        return TransferOutcome.OVERDRAFT;
+      // every new balance first, so a credit that overflows throws before anything is written
+      long debited = Money.subtract(accounts.get(sender, AccountTable.BALANCE), total);
+      long[] balances = new long[count];
+      for (int i = 0; i < count; i++) {
+        balances[i] = Money.add(receivers[i] == sender ? debited : accounts.get(receivers[i], AccountTable.BALANCE),
+                credits[i]);
+      }
+      BalanceVersions.beginWrite(accounts, sender);
+      for (int i = 0; i < count; i++) {
+        if (receivers[i] != sender) {
+          BalanceVersions.beginWrite(accounts, receivers[i]);
+        }
+      }
+      try {
+        EpochClock.write(accounts, sender, debited, epoch);
+        if (count >= PARALLEL_CREDITS) {
+          ForkJoinPool.commonPool().invoke(new CreditTask(receivers, balances, 0, count, epoch));
+        } else {
+          write(receivers, balances, 0, count, epoch);
+        }
+      } finally {
+        BalanceVersions.endWrite(accounts, sender);
+        for (int i = 0; i < count; i++) {
+          if (receivers[i] != sender) {
+            BalanceVersions.endWrite(accounts, receivers[i]);
+          }
+        }
+      }
+      journal.append(JournalRecord.multiLeg(multiLegTransfer.getSenderAccountId(),
+              Arrays.copyOf(receiverAccountIds, count), Arrays.copyOf(credits, count), total, epoch));
+    } finally {
+      epochs.exit(epoch);
+      lockTable.unlockAll(stripes, stripes.length);
+    }
+    return TransferOutcome.OK;
+  }
+
+  private void write(int[] receivers, long[] balances, int from, int to, long epoch) {
+    for (int i = from; i < to; i++) {
+      EpochClock.write(accounts, receivers[i], balances[i], epoch);
+    }
+  }
+
+  @Override
+  public LatencyHistogram getLockWaits() {
+    return lockTable.getWaits();
+  }
+
+  public EpochClock getEpochs() {
+    return epochs;
+  }
+
+  /**
+   * Visits every account with its balance at one consistent point in time, while transfers keep running.
+   * Accounts created after that point are left out.
+   *
+   * @return the epoch the point closes; changes journaled with a later epoch are not part of it
+   */
+  public long forEachAtConsistentCut(AccountBalanceVisitor visitor) {
+    return epochs.readCut(cut -> {
+      int size = accounts.size();
+      for (int account = 0; account < size; account++) {
+        long balanceUnits = balanceAtCut(account, cut);
+        if (balanceUnits != Account.NO_BALANCE) {
+          visitor.visit(accounts.accountId(account), balanceUnits);
+        }
+      }
+      return cut;
+    });
+  }
+
+  /**
+   * Sums every balance at one consistent point in time, like {@link #forEachAtConsistentCut}, with the
+   * accounts split into slices summed in parallel on {@code pool}.
+   */
+  public BalanceTotals totalsAtConsistentCut(ForkJoinPool pool) {
+    return epochs.readCut(cut -> pool.invoke(new TotalsTask(0, accounts.size(), cut)).at(cut));
+  }
+
+  private long balanceAtCut(int account, long cut) {
+    long balanceUnits = EpochClock.balanceAt(accounts, account, cut);
+    if (balanceUnits == Account.NO_BALANCE) {
+      return balanceUnits;
+    }
+    HotCredits hot = accounts.hotCredits(account);
+    return hot == null ? balanceUnits : Money.add(balanceUnits, settle(account, hot, cut));
+  }
+
+  private long settle(int account, HotCredits hot, long cut) {
+    int stripe = lockTable.stripeOfHash(accounts.idHash(account));
+    lockTable.lock(stripe);
+    // moving credits between the cells and the settled sum is a write to optimistic readers
+    BalanceVersions.beginWrite(accounts, account);
+    try {
+      return hot.settle(cut);
+    } finally {
+      BalanceVersions.endWrite(accounts, account);
+      lockTable.unlock(stripe);
+    }
+  }
+
+  /**
+   * Whether credits to the account currently bypass its lock.
+   */
+  public boolean isHot(String accountId) {
+    int account = accounts.find(accountId);
+    return account >= 0 && accounts.hotCredits(account) != null;
+  }
+
+  /**
+   * Sums a slice of the accounts, splitting it in halves down to {@link #SLICE} accounts.
+   */
+  private final class TotalsTask extends RecursiveTask<BalanceTotals> {
+
+    private static final int SLICE = 4096;
+
+    private final int from;
+
+    private final int to;
+
+    private final long cut;
+
+    TotalsTask(int from, int to, long cut) {
+      this.from = from;
+      this.to = to;
+      this.cut = cut;
+    }
+
+    @Override
+    protected BalanceTotals compute() {
+      if (to - from > SLICE) {
+        int middle = (from + to) >>> 1;
+        TotalsTask upper = new TotalsTask(middle, to, cut);
+        upper.fork();
+        BalanceTotals lower = new TotalsTask(from, middle, cut).compute();
+        return lower.combine(upper.join());
+      }
+      BalanceTotals totals = new BalanceTotals();
+      for (int account = from; account < to; account++) {
+        long balanceUnits = balanceAtCut(account, cut);
+        if (balanceUnits != Account.NO_BALANCE) {
+          // ids are only kept for negative balances, so only those are decoded
+          totals.add(balanceUnits < 0 ? accounts.accountId(account) : null, balanceUnits,
+                  accounts.openingBalance(account));
+        }
+      }
+      return totals;
+    }
+  }
+
+  /**
+   * Writes the credited balances of a slice of the merged receivers of a multi-leg transfer, splitting it in
+   * halves down to {@link #SLICE} receivers. The transfer holds the locks of all of them, and each is in one slice only.
+   */
+  private final class CreditTask extends RecursiveAction {
+
+    private static final int SLICE = 1024;
+
+    private final int[] receivers;
+
+    private final long[] balances;
+
+    private final int from;
+
+    private final int to;
+
+    private final long epoch;
+
+    CreditTask(int[] receivers, long[] balances, int from, int to, long epoch) {
+      this.receivers = receivers;
+      this.balances = balances;
+      this.from = from;
+      this.to = to;
+      this.epoch = epoch;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > SLICE) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new CreditTask(receivers, balances, from, middle, epoch),
+                new CreditTask(receivers, balances, middle, to, epoch));
+        return;
+      }
+      write(receivers, balances, from, to, epoch);
+    }
+  }
+
+  private static final class Contention {
+
+    private long windowStarted = System.nanoTime();
 
+    private int waits;
   }
 }
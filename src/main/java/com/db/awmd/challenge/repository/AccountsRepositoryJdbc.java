@@ -0,0 +1,253 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Accounts in a table of an embedded H2 database, selected with {@code accounts.repository: jdbc}: every
+ * acknowledged transfer is committed, and the balances are there again after a restart.
+ *
+ * Transfers are queued to {@link JdbcTransferWriter}s, which coalesce whatever is queued into one
+ * transaction and one JDBC batch. Reads and account creation borrow connections from a pool whose
+ * connections keep their prepared statements, and {@link #getAccount} reads through an {@link AccountCache}
+ * that writers update as they commit.
+ *
+ * {@link #getAccount(String)} returns a detached copy: changing it does not change the stored balance.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "jdbc")
+public class AccountsRepositoryJdbc implements AccountsRepository {
+
+  private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS account ("
+          + "account_id VARCHAR PRIMARY KEY, balance_units BIGINT NOT NULL, version BIGINT NOT NULL)";
+
+  /**
+   * SQL state of a unique constraint violation.
+   */
+  private static final String DUPLICATE_KEY = "23505";
+
+  private final DataSource dataSource;
+
+  private final AccountCache cache;
+
+  private final BlockingQueue<JdbcTransferWriter.Work> queue;
+
+  private final JdbcTransferWriter[] writers;
+
+  @Autowired
+  public AccountsRepositoryJdbc(@Value("${accounts.jdbc.url:jdbc:h2:./accounts}") String url,
+                                @Value("${accounts.jdbc.pool-size:8}") int poolSize,
+                                @Value("${accounts.jdbc.writers:2}") int writers,
+                                @Value("${accounts.jdbc.batch-size:256}") int batchSize,
+                                @Value("${accounts.jdbc.queue:65536}") int queueCapacity,
+                                @Value("${accounts.jdbc.cache-size:100000}") int cacheSize) throws SQLException {
+    PoolProperties pool = new PoolProperties();
+    pool.setUrl(url);
+    pool.setDriverClassName("org.h2.Driver");
+    pool.setUsername("sa");
+    pool.setPassword("");
+    // the writers hold theirs for good
+    pool.setMaxActive(poolSize + writers);
+    pool.setMaxIdle(poolSize + writers);
+    pool.setInitialSize(writers);
+    pool.setJdbcInterceptors("StatementCache(prepared=true,callable=false,max=16)");
+    this.dataSource = new DataSource(pool);
+    this.cache = cacheSize > 0 ? new AccountCache(cacheSize) : null;
+    this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute(CREATE_TABLE);
+    }
+    this.writers = new JdbcTransferWriter[writers];
+    for (int i = 0; i < writers; i++) {
+      this.writers[i] = new JdbcTransferWriter(i, queue, batchSize, cache, dataSource.getConnection());
+      this.writers[i].start();
+    }
+    log.info("Opened account database {} with {} writers", url, writers);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement insert = connection.prepareStatement("INSERT INTO account VALUES (?, ?, 0)")) {
+      insert.setString(1, account.getAccountId());
+      insert.setLong(2, account.getBalanceUnits());
+      insert.executeUpdate();
+    } catch (SQLException e) {
+      if (DUPLICATE_KEY.equals(e.getSQLState())) {
+        throw new DuplicateAccountIdException(
+                "Account id " + account.getAccountId() + " already exists!");
+      }
+      throw new IllegalStateException("Creating account " + account.getAccountId() + " failed", e);
+    }
+    if (cache != null) {
+      cache.written(account.getAccountId(), account.getBalanceUnits(), 0);
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    long[] cached = cache == null ? null : cache.get(accountId);
+    if (cached != null) {
+      return detached(accountId, cached[0]);
+    }
+    long generation = cache == null ? 0 : cache.generation(accountId);
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement select = connection.prepareStatement(
+                 "SELECT balance_units, version FROM account WHERE account_id = ?")) {
+      select.setString(1, accountId);
+      try (ResultSet found = select.executeQuery()) {
+        if (!found.next()) {
+          return null;
+        }
+        if (cache != null) {
+          cache.loaded(accountId, found.getLong(1), found.getLong(2), generation);
+        }
+        return detached(accountId, found.getLong(1));
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Reading account " + accountId + " failed", e);
+    }
+  }
+
+  private static Account detached(String accountId, long balanceUnits) {
+    Account account = new Account(accountId);
+    account.setBalanceUnits(balanceUnits);
+    return account;
+  }
+
+  @Override
+  public int countAccounts() {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement count = connection.prepareStatement("SELECT COUNT(*) FROM account");
+         ResultSet result = count.executeQuery()) {
+      result.next();
+      return result.getInt(1);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Counting accounts failed", e);
+    }
+  }
+
+  @Override
+  public void forEachAccount(AccountBalanceVisitor visitor) {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement select = connection.prepareStatement("SELECT account_id, balance_units FROM account")) {
+      select.setFetchSize(1024);
+      try (ResultSet accounts = select.executeQuery()) {
+        while (accounts.next()) {
+          visitor.visit(accounts.getString(1), accounts.getLong(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Reading accounts failed", e);
+    }
+  }
+
+  @Override
+  public void clearAccounts() {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("DELETE FROM account");
+    } catch (SQLException e) {
+      throw new IllegalStateException("Deleting accounts failed", e);
+    }
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  @Override
+  public TransferOutcome tryTransferFund(FundTransfer fundTransfer) {
+    CompletableFuture<TransferOutcome> outcome = tryTransferFundAsync(fundTransfer);
+    try {
+      return outcome.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+
+  /**
+   * A rejected fund is answered at once; unknown accounts and overdrafts are found by the writer, which
+   * completes the future once the transfer is committed.
+   */
+  @Override
+  public CompletableFuture<TransferOutcome> tryTransferFundAsync(FundTransfer fundTransfer) {
+    TransferOutcome fundCheck = TransferErrors.checkFund(fundTransfer);
+    if (!fundCheck.isOk())
+      return fundCheck.completed();
+    JdbcTransferWriter.Work work = new JdbcTransferWriter.Work(Collections.singletonList(fundTransfer),
+            new long[]{fundTransfer.getFundUnits()}, new TransferOutcome[1]);
+    submit(work);
+    return work.done.thenApply(outcomes -> outcomes[0]);
+  }
+
+  /**
+   * Runs as one request of a writer, so in one transaction and in request order.
+   */
+  @Override
+  public List<TransferStatus> transferFunds(List<FundTransfer> fundTransfers) {
+    int size = fundTransfers.size();
+    long[] units = new long[size];
+    TransferOutcome[] outcomes = new TransferOutcome[size];
+    for (int i = 0; i < size; i++) {
+      units[i] = TransferErrors.batchFundUnits(fundTransfers.get(i));
+      if (units[i] == 0) {
+        outcomes[i] = TransferOutcome.NOT_POSITIVE;
+      }
+    }
+    JdbcTransferWriter.Work work = new JdbcTransferWriter.Work(new ArrayList<>(fundTransfers), units, outcomes);
+    submit(work);
+    try {
+      work.done.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+    TransferStatus[] statuses = new TransferStatus[size];
+    for (int i = 0; i < size; i++) {
+      statuses[i] = outcomes[i].getStatus();
+    }
+    return Arrays.asList(statuses);
+  }
+
+  private void submit(JdbcTransferWriter.Work work) {
+    try {
+      queue.put(work);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while queueing a transfer", e);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    for (JdbcTransferWriter writer : writers) {
+      writer.close();
+    }
+    dataSource.close();
+  }
+}
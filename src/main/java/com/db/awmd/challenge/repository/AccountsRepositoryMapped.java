@@ -0,0 +1,327 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Keeps balances in a memory-mapped file instead of on the heap, selected with
+ * {@code accounts.repository: mapped}. Heap usage stays flat as accounts are added, and after a clean
+ * shutdown, which forces the file to disk, the balances are there again on restart without replaying
+ * anything; only the off-heap id index is rebuilt from the slots on startup.
+ *
+ * Nothing is forced before then and a transfer is two separate stores, so a crash of the process may leave a
+ * transfer half applied, and a crash of the operating system loses whatever it had not written back yet.
+ * Use the in-memory repository with the journal where transfers must survive a crash.
+ *
+ * {@link #getAccount(String)} returns a detached copy: changing it does not change the stored balance.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+  private final MappedAccountFile file;
+
+  private final OffHeapAccountIndex index;
+
+  private final AccountLockTable lockTable;
+
+  /**
+   * Slots below this are fully written; published last by {@link #createAccount(Account)}.
+   */
+  private volatile int publishedSlots;
+
+  @Autowired
+  public AccountsRepositoryMapped(@Value("${accounts.mapped.path:accounts.dat}") String path,
+                                  @Value("${accounts.mapped.capacity:1000000}") int capacity,
+                                  @Value("${accounts.lock-stripes:1024}") int lockStripes) throws IOException {
+    this.file = new MappedAccountFile(Paths.get(path), capacity);
+    this.index = new OffHeapAccountIndex(file, file.capacity());
+    this.lockTable = new AccountLockTable(lockStripes);
+
+    int usedSlots = file.usedSlots();
+    for (int slot = 0; slot < usedSlots; slot++) {
+      index.insert(file.accountId(slot), slot);
+    }
+    this.publishedSlots = usedSlots;
+    log.info("Opened account file {} with {} of {} slots in use", path, usedSlots, file.capacity());
+  }
+
+  @Override
+  public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+    if (findSlot(account.getAccountId()) >= 0) {
+      throw new DuplicateAccountIdException(
+              "Account id " + account.getAccountId() + " already exists!");
+    }
+    int slot = publishedSlots;
+    if (slot >= file.capacity()) {
+      throw new IllegalStateException("Account file is full, capacity is " + file.capacity());
+    }
+    file.write(slot, account.getAccountId(), account.getBalanceUnits());
+    file.setUsedSlots(slot + 1);
+    index.insert(account.getAccountId(), slot);
+    publishedSlots = slot + 1;
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    int slot = findSlot(accountId);
+    if (slot < 0) {
+      return null;
+    }
+    int stripe = lockTable.stripeOf(accountId);
+    long balanceUnits;
+    lockTable.lock(stripe);
+    try {
+      balanceUnits = file.balance(slot);
+    } finally {
+      lockTable.unlock(stripe);
+    }
+    Account account = new Account(accountId);
+    account.setBalanceUnits(balanceUnits);
+    return account;
+  }
+
+  @Override
+  public boolean supportsConsistentReads() {
+    return true;
+  }
+
+  /**
+   * Reads the balances with the locks of all the accounts held at once, like {@link #getAccount} does for one.
+   */
+  @Override
+  public List<Account> readAccounts(List<String> accountIds) {
+    int size = accountIds.size();
+    int[] slots = new int[size];
+    long[] balances = new long[size];
+    BitSet involvedStripes = new BitSet(lockTable.size());
+    for (int i = 0; i < size; i++) {
+      slots[i] = findSlot(accountIds.get(i));
+      if (slots[i] >= 0) {
+        involvedStripes.set(lockTable.stripeOf(accountIds.get(i)));
+      }
+    }
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    lockTable.lockAll(stripes, stripes.length);
+    try {
+      for (int i = 0; i < size; i++) {
+        if (slots[i] >= 0) {
+          balances[i] = file.balance(slots[i]);
+        }
+      }
+    } finally {
+      lockTable.unlockAll(stripes, stripes.length);
+    }
+    List<Account> accounts = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Account account = null;
+      if (slots[i] >= 0) {
+        account = new Account(accountIds.get(i));
+        account.setBalanceUnits(balances[i]);
+      }
+      accounts.add(account);
+    }
+    return accounts;
+  }
+
+  @Override
+  public int countAccounts() {
+    return publishedSlots;
+  }
+
+  @Override
+  public void forEachAccount(AccountBalanceVisitor visitor) {
+    int published = publishedSlots;
+    for (int slot = 0; slot < published; slot++) {
+      String accountId = file.accountId(slot);
+      int stripe = lockTable.stripeOf(accountId);
+      long balanceUnits;
+      lockTable.lock(stripe);
+      try {
+        balanceUnits = file.balance(slot);
+      } finally {
+        lockTable.unlock(stripe);
+      }
+      visitor.visit(accountId, balanceUnits);
+    }
+  }
+
+  @Override
+  public synchronized void clearAccounts() {
+    publishedSlots = 0;
+    file.setUsedSlots(0);
+    index.clear();
+  }
+
+  @Override
+  public TransferOutcome tryTransferFund(FundTransfer fundTransfer) {
+    int sender = findSlot(fundTransfer.getSenderAccountId());
+    if (sender < 0)
+      return TransferOutcome.SENDER_NOT_FOUND;
+    int receiver = findSlot(fundTransfer.getReceiverAccountId());
+    if (receiver < 0)
+      return TransferOutcome.RECEIVER_NOT_FOUND;
+    TransferOutcome fundCheck = TransferErrors.checkFund(fundTransfer);
+    if (!fundCheck.isOk())
+      return fundCheck;
+    long fund = fundTransfer.getFundUnits();
+
+    int senderStripe = lockTable.stripeOf(fundTransfer.getSenderAccountId());
+    int receiverStripe = lockTable.stripeOf(fundTransfer.getReceiverAccountId());
+    lockTable.lock(senderStripe, receiverStripe);
+    try {
+      long remaining = Money.subtract(file.balance(sender), fund);
+      if (remaining <= 0)
+        return TransferOutcome.OVERDRAFT;
+      long credited = Money.add(receiver == sender ? remaining : file.balance(receiver), fund);
+      file.setBalance(sender, remaining);
+      file.setBalance(receiver, credited);
+    } finally {
+      lockTable.unlock(senderStripe, receiverStripe);
+    }
+    return TransferOutcome.OK;
+  }
+
+  @Override
+  public List<TransferStatus> transferFunds(List<FundTransfer> fundTransfers) {
+    int size = fundTransfers.size();
+    TransferStatus[] statuses = new TransferStatus[size];
+    long[] funds = new long[size];
+    int[] senders = new int[size];
+    int[] receivers = new int[size];
+    BitSet involvedStripes = new BitSet(lockTable.size());
+
+    for (int i = 0; i < size; i++) {
+      FundTransfer fundTransfer = fundTransfers.get(i);
+      funds[i] = TransferErrors.batchFundUnits(fundTransfer);
+      if (funds[i] == 0) {
+        statuses[i] = TransferStatus.INVALID;
+        continue;
+      }
+      senders[i] = findSlot(fundTransfer.getSenderAccountId());
+      receivers[i] = findSlot(fundTransfer.getReceiverAccountId());
+      if (senders[i] < 0 || receivers[i] < 0) {
+        statuses[i] = TransferStatus.NOT_FOUND;
+        continue;
+      }
+      involvedStripes.set(lockTable.stripeOf(fundTransfer.getSenderAccountId()));
+      involvedStripes.set(lockTable.stripeOf(fundTransfer.getReceiverAccountId()));
+    }
+
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    lockTable.lockAll(stripes, stripes.length);
+    try {
+      for (int i = 0; i < size; i++) {
+        if (statuses[i] != null) {
+          continue;
+        }
+        long remaining = Money.subtract(file.balance(senders[i]), funds[i]);
+        if (remaining <= 0) {
+          statuses[i] = TransferStatus.OVERDRAFT;
+          continue;
+        }
+        long credited = Money.add(file.balance(receivers[i]), funds[i]);
+        file.setBalance(senders[i], remaining);
+        file.setBalance(receivers[i], credited);
+        statuses[i] = TransferStatus.OK;
+      }
+    } finally {
+      lockTable.unlockAll(stripes, stripes.length);
+    }
+    return Arrays.asList(statuses);
+  }
+
+  @Override
+  public boolean supportsMultiLegTransfers() {
+    return true;
+  }
+
+  /**
+   * Debits the sender the total and credits the receivers one leg after another, with the locks of all of
+   * them held throughout, like a batch.
+   */
+  @Override
+  public TransferOutcome tryTransferMultiLeg(MultiLegTransfer multiLegTransfer) {
+    int sender = findSlot(multiLegTransfer.getSenderAccountId());
+    if (sender < 0)
+      return TransferOutcome.SENDER_NOT_FOUND;
+    TransferOutcome legCheck = TransferErrors.checkLegs(multiLegTransfer);
+    if (!legCheck.isOk())
+      return legCheck;
+    List<FundTransfer> legs = multiLegTransfer.getFundTransfers();
+    int size = legs.size();
+    int[] receivers = new int[size];
+    long total = 0;
+    BitSet involvedStripes = new BitSet(lockTable.size());
+    involvedStripes.set(lockTable.stripeOf(multiLegTransfer.getSenderAccountId()));
+    for (int i = 0; i < size; i++) {
+      receivers[i] = findSlot(legs.get(i).getReceiverAccountId());
+      if (receivers[i] < 0)
+        return TransferOutcome.RECEIVER_NOT_FOUND;
+      involvedStripes.set(lockTable.stripeOf(legs.get(i).getReceiverAccountId()));
+      total += legs.get(i).getFundUnits();
+    }
+
+    int[] stripes = AccountLockTable.sortedStripes(involvedStripes);
+    lockTable.lockAll(stripes, stripes.length);
+    try {
+      long remaining = Money.subtract(file.balance(sender), total);
+      if (remaining <= 0)
+        return TransferOutcome.OVERDRAFT;
+      file.setBalance(sender, remaining);
+      int credited = 0;
+      try {
+        for (; credited < size; credited++) {
+          file.setBalance(receivers[credited],
+                  Money.add(file.balance(receivers[credited]), legs.get(credited).getFundUnits()));
+        }
+      } catch (ArithmeticException e) {
+        // a credit overflowed: take back the ones before it and the debit, the locks are still held
+        for (int i = credited - 1; i >= 0; i--) {
+          file.setBalance(receivers[i], file.balance(receivers[i]) - legs.get(i).getFundUnits());
+        }
+        file.setBalance(sender, file.balance(sender) + total);
+        throw e;
+      }
+    } finally {
+      lockTable.unlockAll(stripes, stripes.length);
+    }
+    return TransferOutcome.OK;
+  }
+
+  @Override
+  public LatencyHistogram getLockWaits() {
+    return lockTable.getWaits();
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private int findSlot(String accountId) {
+    int published = publishedSlots;
+    int slot = index.find(accountId);
+    return slot < published ? slot : -1;
+  }
+}
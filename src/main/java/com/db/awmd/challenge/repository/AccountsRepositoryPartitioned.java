@@ -0,0 +1,208 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Accounts hash-partitioned across single-threaded {@link TransferShard}s. A shard owns the balances of its
+ * accounts and is the only thread changing them, so transfers take no locks. A transfer within one shard
+ * runs in one step; across shards the sender's shard debits the fund and passes the credit to the
+ * receiver's shard, which sends it back to be refunded when the credit would overflow the receiver's
+ * balance. Request threads only look up the accounts, check the fund and queue the debit.
+ *
+ * Transfers are not journaled, and the fund of a cross-shard transfer is briefly in flight between two
+ * shards, so this repository offers no consistent cuts for snapshots.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "partitioned")
+public class AccountsRepositoryPartitioned implements AccountsRepository {
+
+  private final TransferShard[] shards;
+
+  @Autowired
+  public AccountsRepositoryPartitioned(@Value("${accounts.partitions:0}") int partitions,
+                                       @Value("${accounts.partition-queue:65536}") int queueCapacity) {
+    int count = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+    this.shards = new TransferShard[count];
+    for (int i = 0; i < count; i++) {
+      shards[i] = new TransferShard(i, queueCapacity);
+      shards[i].start();
+    }
+  }
+
+  /**
+   * Stores a copy of {@code account}, as its shard changes the balance from then on.
+   */
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    Account previous = shardOf(account.getAccountId()).accounts.putIfAbsent(account.getAccountId(),
+            detached(account.getAccountId(), account.getBalanceUnits()));
+    if (previous != null) {
+      throw new DuplicateAccountIdException(
+              "Account id " + account.getAccountId() + " already exists!");
+    }
+  }
+
+  /**
+   * A detached copy of the account, so that callers never see its balance change while they use it.
+   */
+  @Override
+  public Account getAccount(String accountId) {
+    Account account = liveAccount(accountId);
+    return account == null ? null : detached(accountId, account.getBalanceUnits());
+  }
+
+  @Override
+  public int countAccounts() {
+    int count = 0;
+    for (TransferShard shard : shards) {
+      count += shard.accounts.size();
+    }
+    return count;
+  }
+
+  @Override
+  public void forEachAccount(AccountBalanceVisitor visitor) {
+    for (TransferShard shard : shards) {
+      for (Account account : shard.accounts.values()) {
+        visitor.visit(account.getAccountId(), account.getBalanceUnits());
+      }
+    }
+  }
+
+  @Override
+  public void clearAccounts() {
+    for (TransferShard shard : shards) {
+      shard.accounts.clear();
+    }
+  }
+
+  @Override
+  public TransferOutcome tryTransferFund(FundTransfer fundTransfer) {
+    CompletableFuture<TransferOutcome> outcome = tryTransferFundAsync(fundTransfer);
+    try {
+      return outcome.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+
+  /**
+   * A rejection found before the shard is involved is answered at once; an overdraft is found by the
+   * sender's shard, which completes the future with it.
+   */
+  @Override
+  public CompletableFuture<TransferOutcome> tryTransferFundAsync(FundTransfer fundTransfer) {
+    Account sender = liveAccount(fundTransfer.getSenderAccountId());
+    if (sender == null)
+      return TransferOutcome.SENDER_NOT_FOUND.completed();
+    Account receiver = liveAccount(fundTransfer.getReceiverAccountId());
+    if (receiver == null)
+      return TransferOutcome.RECEIVER_NOT_FOUND.completed();
+    TransferOutcome fundCheck = TransferErrors.checkFund(fundTransfer);
+    if (!fundCheck.isOk())
+      return fundCheck.completed();
+    TransferShard senderShard = shardOf(sender.getAccountId());
+    TransferShard.Message debit = new TransferShard.Message(TransferShard.Kind.DEBIT, fundTransfer, sender,
+            receiver, senderShard, shardOf(receiver.getAccountId()), fundTransfer.getFundUnits(),
+            new CompletableFuture<>());
+    senderShard.submit(debit);
+    return debit.result;
+  }
+
+  /**
+   * Items run in request order per sender. An item whose sender still has a credit on its way from an
+   * earlier item waits for the earlier items first, so it sees their effect as a sequential batch would.
+   */
+  @Override
+  public List<TransferStatus> transferFunds(List<FundTransfer> fundTransfers) {
+    int size = fundTransfers.size();
+    TransferStatus[] statuses = new TransferStatus[size];
+    List<CompletableFuture<TransferOutcome>> results = new ArrayList<>(size);
+    Set<String> pendingCredits = new HashSet<>();
+
+    for (int i = 0; i < size; i++) {
+      FundTransfer fundTransfer = fundTransfers.get(i);
+      long fund = TransferErrors.batchFundUnits(fundTransfer);
+      if (fund == 0) {
+        statuses[i] = TransferStatus.INVALID;
+        results.add(null);
+        continue;
+      }
+      Account sender = liveAccount(fundTransfer.getSenderAccountId());
+      Account receiver = liveAccount(fundTransfer.getReceiverAccountId());
+      if (sender == null || receiver == null) {
+        statuses[i] = TransferStatus.NOT_FOUND;
+        results.add(null);
+        continue;
+      }
+      if (pendingCredits.contains(sender.getAccountId())) {
+        awaitAll(results, statuses);
+        pendingCredits.clear();
+      }
+      TransferShard senderShard = shardOf(sender.getAccountId());
+      TransferShard receiverShard = shardOf(receiver.getAccountId());
+      TransferShard.Message debit = new TransferShard.Message(TransferShard.Kind.DEBIT, fundTransfer, sender,
+              receiver, senderShard, receiverShard, fund, new CompletableFuture<>());
+      senderShard.submit(debit);
+      results.add(debit.result);
+      if (receiverShard != senderShard) {
+        pendingCredits.add(receiver.getAccountId());
+      }
+    }
+    awaitAll(results, statuses);
+    return Arrays.asList(statuses);
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    for (TransferShard shard : shards) {
+      shard.close();
+    }
+  }
+
+  private static void awaitAll(List<CompletableFuture<TransferOutcome>> results, TransferStatus[] statuses) {
+    for (int i = 0; i < results.size(); i++) {
+      CompletableFuture<TransferOutcome> result = results.get(i);
+      if (result == null || statuses[i] != null) {
+        continue;
+      }
+      try {
+        statuses[i] = result.join().getStatus();
+      } catch (CompletionException e) {
+        throw new IllegalStateException("Transfer failed", e.getCause());
+      }
+    }
+  }
+
+  private Account liveAccount(String accountId) {
+    return shardOf(accountId).accounts.get(accountId);
+  }
+
+  private static Account detached(String accountId, long balanceUnits) {
+    Account copy = new Account(accountId);
+    copy.setBalanceUnits(balanceUnits);
+    return copy;
+  }
+
+  private TransferShard shardOf(String accountId) {
+    int h = accountId.hashCode();
+    return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+  }
+}
@@ -0,0 +1,109 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Money;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sums over the balances of a consistent cut, see {@link AccountsRepositoryInMemory#totalsAtConsistentCut}.
+ * Transfers move money without creating or destroying it, so {@link #getBalance()} equals
+ * {@link #getOpeningBalance()} unless something is wrong.
+ */
+public final class BalanceTotals {
+
+  /**
+   * Negative accounts whose ids are kept.
+   */
+  public static final int NEGATIVE_IDS = 10;
+
+  @Getter
+  private long cut;
+
+  @Getter
+  private long accounts;
+
+  private final Sum balance = new Sum();
+
+  private final Sum openingBalance = new Sum();
+
+  @Getter
+  private long negativeAccounts;
+
+  @Getter
+  private final List<String> negativeAccountIds = new ArrayList<>();
+
+  /**
+   * @param accountId only needed, and may be {@code null} otherwise, when the balance is negative
+   */
+  void add(String accountId, long balanceUnits, long openingBalanceUnits) {
+    accounts++;
+    balance.add(balanceUnits);
+    openingBalance.add(openingBalanceUnits);
+    if (balanceUnits < 0) {
+      negativeAccounts++;
+      if (negativeAccountIds.size() < NEGATIVE_IDS) {
+        negativeAccountIds.add(accountId);
+      }
+    }
+  }
+
+  BalanceTotals combine(BalanceTotals other) {
+    accounts += other.accounts;
+    balance.add(other.balance);
+    openingBalance.add(other.openingBalance);
+    negativeAccounts += other.negativeAccounts;
+    for (String accountId : other.negativeAccountIds) {
+      if (negativeAccountIds.size() < NEGATIVE_IDS) {
+        negativeAccountIds.add(accountId);
+      }
+    }
+    return this;
+  }
+
+  BalanceTotals at(long cut) {
+    this.cut = cut;
+    return this;
+  }
+
+  public BigDecimal getBalance() {
+    return balance.toDecimal();
+  }
+
+  public BigDecimal getOpeningBalance() {
+    return openingBalance.toDecimal();
+  }
+
+  /**
+   * A sum of minor units that may outgrow a long: it adds in a long and moves that into a
+   * {@link BigInteger} only when the next addition would overflow.
+   */
+  private static final class Sum {
+
+    private long units;
+
+    private BigInteger spilled = BigInteger.ZERO;
+
+    void add(long other) {
+      long sum = units + other;
+      // the addition overflowed if the sum's sign differs from the sign both operands share
+      if (((units ^ sum) & (other ^ sum)) < 0) {
+        spilled = spilled.add(BigInteger.valueOf(units));
+        sum = other;
+      }
+      units = sum;
+    }
+
+    void add(Sum other) {
+      spilled = spilled.add(other.spilled);
+      add(other.units);
+    }
+
+    BigDecimal toDecimal() {
+      return Money.toDecimal(spilled.add(BigInteger.valueOf(units)));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * Versions for reading balances without taking account locks, in the manner of a sequence lock.
+ *
+ * A transfer holding the locks of its accounts makes every version odd with {@link #beginWrite} before it
+ * writes any of their balances, and even again with {@link #endWrite} once it has written all of them. A
+ * reader reads the versions, then the balances, then the versions again; if all versions were even and none
+ * changed, no transfer touched those accounts while it read, so the balances are mutually consistent even
+ * for several accounts. A reader never delays a writer; it retries instead.
+ */
+final class BalanceVersions {
+
+  private BalanceVersions() {
+  }
+
+  /**
+   * The caller holds the account's lock and calls this once per account, even for a transfer to itself.
+   */
+  static void beginWrite(AccountTable accounts, int account) {
+    accounts.set(account, AccountTable.VERSION, accounts.get(account, AccountTable.VERSION) + 1);
+  }
+
+  static void endWrite(AccountTable accounts, int account) {
+    accounts.set(account, AccountTable.VERSION, accounts.get(account, AccountTable.VERSION) + 1);
+  }
+
+  /**
+   * The version to validate a read against, or {@code -1} while a write is in progress.
+   */
+  static long startRead(AccountTable accounts, int account) {
+    long version = accounts.get(account, AccountTable.VERSION);
+    return (version & 1) == 0 ? version : -1;
+  }
+
+  static boolean validate(AccountTable accounts, int account, long version) {
+    return version >= 0 && accounts.get(account, AccountTable.VERSION) == version;
+  }
+}
@@ -0,0 +1,109 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Epochs for taking a consistent cut of all balances while transfers keep running.
+ *
+ * Every balance change runs between {@link #enter()} and {@link #exit(long)} and is tagged with the epoch it
+ * entered in. It enters once it holds the locks of its accounts, so the changes of one account never go
+ * back to an earlier epoch; entering before waiting for a lock would let a change of the next epoch write
+ * first and then be taken for part of the closed one.
+ *
+ * The first change of an account in a new epoch saves the balance it overwrites, so a reader that closed
+ * epoch {@code E} can still find every balance as it was when {@code E} ended: the current one for accounts
+ * last changed in {@code E} or earlier, the saved one for accounts changed since.
+ * {@link #readCut(LongFunction)} closes the current epoch, waits until no change that entered in it is still
+ * running, and then reads. Writers never wait for readers; readers wait only for changes already in flight.
+ *
+ * Cuts are taken one at a time, since an account keeps only one saved balance.
+ */
+public final class EpochClock {
+
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+  private volatile long current = 1;
+
+  /**
+   * Changes in flight, per epoch parity; only the open and the just-closed epoch can have any.
+   */
+  private final LongAdder[] active = {new LongAdder(), new LongAdder()};
+
+  public long current() {
+    return current;
+  }
+
+  /**
+   * @return the epoch the caller's changes belong to, to be passed to {@link #exit(long)}
+   */
+  public long enter() {
+    while (true) {
+      long epoch = current;
+      LongAdder counter = active[(int) (epoch & 1)];
+      counter.increment();
+      if (current == epoch) {
+        return epoch;
+      }
+      // the epoch closed in between; enter the next one instead
+      counter.decrement();
+    }
+  }
+
+  public void exit(long epoch) {
+    active[(int) (epoch & 1)].decrement();
+  }
+
+  /**
+   * Closes the current epoch and hands it to {@code reader} once every change in it has completed.
+   */
+  public synchronized <T> T readCut(LongFunction<T> reader) {
+    long closed = current;
+    current = closed + 1;
+    LongAdder counter = active[(int) (closed & 1)];
+    while (counter.sum() != 0) {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return reader.apply(closed);
+  }
+
+  /**
+   * Moves the clock past every epoch found in recovered data, so new changes sort after them. The open
+   * epoch keeps its parity, which {@link HotCredits} relies on.
+   */
+  public synchronized void advancePast(long epoch) {
+    if (current <= epoch) {
+      long next = epoch + 1;
+      current = ((next - current) & 1) == 0 ? next : next + 1;
+    }
+  }
+
+  /**
+   * Changes a balance inside {@code epoch}; the caller holds the account's lock.
+   */
+  static void write(AccountTable accounts, int account, long balanceUnits, long epoch) {
+    if (accounts.get(account, AccountTable.EPOCH) != epoch) {
+      // saved balance first, then the epoch, then the new balance: a reader that sees the new balance
+      // also sees the new epoch, and then uses the saved balance
+      accounts.set(account, AccountTable.PREVIOUS_BALANCE, accounts.get(account, AccountTable.BALANCE));
+      accounts.set(account, AccountTable.EPOCH, epoch);
+    }
+    accounts.set(account, AccountTable.BALANCE, balanceUnits);
+  }
+
+  /**
+   * The balance at the end of epoch {@code cut}, or {@link Account#NO_BALANCE} for an account created later.
+   */
+  static long balanceAt(AccountTable accounts, int account, long cut) {
+    if (accounts.get(account, AccountTable.EPOCH) > cut) {
+      return accounts.get(account, AccountTable.PREVIOUS_BALANCE);
+    }
+    long balanceUnits = accounts.get(account, AccountTable.BALANCE);
+    return accounts.get(account, AccountTable.EPOCH) > cut
+            ? accounts.get(account, AccountTable.PREVIOUS_BALANCE) : balanceUnits;
+  }
+}
@@ -0,0 +1,67 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Credits to a hot account, added without its lock into striped cells and summed when the balance is read.
+ * The account's balance field then holds only what debits and batches left; the real balance is that plus
+ * {@link #pending()}, which may make the field itself negative.
+ *
+ * Cells are kept per epoch parity, so a consistent cut can tell the credits of a closed epoch from those
+ * of the open one: once epoch {@code E} is closed and drained nobody adds to its parity's cells until the
+ * next cut, and {@link #settle(long)} moves them into {@link #settled}. The other parity's cells were
+ * settled by the previous cut and since then only hold credits of the open epoch.
+ */
+final class HotCredits {
+
+  /**
+   * Longs per cell, so that two cells never share a cache line.
+   */
+  private static final int PAD = 8;
+
+  private final AtomicLongArray[] cells;
+
+  private final int mask;
+
+  private volatile long settled;
+
+  HotCredits(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.cells = new AtomicLongArray[]{new AtomicLongArray(size * PAD), new AtomicLongArray(size * PAD)};
+    this.mask = size - 1;
+  }
+
+  void credit(long units, long epoch) {
+    int cell = (int) Thread.currentThread().getId() & mask;
+    cells[(int) (epoch & 1)].getAndAdd(cell * PAD, units);
+  }
+
+  /**
+   * Every credit not yet in the balance field; only grows while the account's lock is held.
+   */
+  long pending() {
+    return settled + sum(cells[0]) + sum(cells[1]);
+  }
+
+  /**
+   * Moves the credits of the closed epoch {@code epoch} into {@link #settled}, under the account's lock, and
+   * returns every credit of {@code epoch} and earlier.
+   */
+  long settle(long epoch) {
+    AtomicLongArray closed = cells[(int) (epoch & 1)];
+    long drained = 0;
+    for (int i = 0; i < closed.length(); i += PAD) {
+      drained += closed.getAndSet(i, 0L);
+    }
+    settled += drained;
+    return settled;
+  }
+
+  private static long sum(AtomicLongArray parity) {
+    long sum = 0;
+    for (int i = 0; i < parity.length(); i += PAD) {
+      sum += parity.get(i);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,236 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread of {@link AccountsRepositoryJdbc} that applies transfers. It keeps one connection and its
+ * prepared statements for its lifetime, takes whatever transfers are queued, up to the batch size, and
+ * applies them in one transaction:
+ * it locks every involved row with {@code SELECT ... FOR UPDATE} in account id order, so writers locking
+ * overlapping rows never deadlock, applies the transfers in queue order to the balances it read, writes the
+ * changed rows in one JDBC batch and commits. Under load, one commit then covers many transfers.
+ *
+ * A transaction that fails is rolled back and its transfers are applied again one request at a time, so a
+ * failing request does not take the others of its batch down with it.
+ */
+@Slf4j
+final class JdbcTransferWriter implements Runnable {
+
+  /**
+   * Transfers queued together, as one request: a single transfer, or a batch applied in request order.
+   */
+  static final class Work {
+
+    final List<FundTransfer> transfers;
+
+    /**
+     * Fund of each transfer in minor units, or 0 for a transfer whose outcome is already decided.
+     */
+    final long[] units;
+
+    final TransferOutcome[] outcomes;
+
+    final CompletableFuture<TransferOutcome[]> done = new CompletableFuture<>();
+
+    Work(List<FundTransfer> transfers, long[] units, TransferOutcome[] outcomes) {
+      this.transfers = transfers;
+      this.units = units;
+      this.outcomes = outcomes;
+    }
+  }
+
+  private static final long POLL_MILLIS = 100;
+
+  private final BlockingQueue<Work> queue;
+
+  private final int batchSize;
+
+  private final AccountCache cache;
+
+  private final Connection connection;
+
+  private final PreparedStatement lockRow;
+
+  private final PreparedStatement updateRow;
+
+  private final Thread thread;
+
+  private volatile boolean running = true;
+
+  JdbcTransferWriter(int index, BlockingQueue<Work> queue, int batchSize, AccountCache cache,
+                     Connection connection) throws SQLException {
+    this.queue = queue;
+    this.batchSize = batchSize;
+    this.cache = cache;
+    this.connection = connection;
+    connection.setAutoCommit(false);
+    this.lockRow = connection.prepareStatement(
+            "SELECT balance_units, version FROM account WHERE account_id = ? FOR UPDATE");
+    this.updateRow = connection.prepareStatement(
+            "UPDATE account SET balance_units = ?, version = ? WHERE account_id = ?");
+    this.thread = new Thread(this, "jdbc-writer-" + index);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Applies what is queued, then closes the connection.
+   */
+  void close() throws InterruptedException {
+    running = false;
+    thread.join(TimeUnit.SECONDS.toMillis(5));
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      log.warn("Closing the connection of {} failed", thread.getName(), e);
+    }
+  }
+
+  @Override
+  public void run() {
+    List<Work> works = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      Work first;
+      try {
+        first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (first == null) {
+        continue;
+      }
+      works.add(first);
+      queue.drainTo(works, batchSize - 1);
+      try {
+        apply(works);
+      } catch (SQLException | RuntimeException e) {
+        if (works.size() == 1) {
+          fail(first, e);
+        } else {
+          for (Work work : works) {
+            applyAlone(work);
+          }
+        }
+      }
+      works.clear();
+    }
+  }
+
+  private void applyAlone(Work work) {
+    try {
+      apply(Collections.singletonList(work));
+    } catch (SQLException | RuntimeException e) {
+      fail(work, e);
+    }
+  }
+
+  private void fail(Work work, Exception e) {
+    log.error("Transfers {} failed", work.transfers, e);
+    work.done.completeExceptionally(e instanceof SQLException
+            ? new IllegalStateException("Transfer failed in the database", e) : e);
+  }
+
+  /**
+   * Commits all of {@code works} or, when it throws, none of them.
+   */
+  private void apply(List<Work> works) throws SQLException {
+    // balance, version and whether it changed, per account; null for an id without a row
+    Map<String, long[]> rows = new TreeMap<>();
+    for (Work work : works) {
+      for (int i = 0; i < work.units.length; i++) {
+        if (work.units[i] != 0) {
+          rows.put(work.transfers.get(i).getSenderAccountId(), null);
+          rows.put(work.transfers.get(i).getReceiverAccountId(), null);
+        }
+      }
+    }
+    try {
+      for (Map.Entry<String, long[]> row : rows.entrySet()) {
+        lockRow.setString(1, row.getKey());
+        try (ResultSet found = lockRow.executeQuery()) {
+          if (found.next()) {
+            row.setValue(new long[]{found.getLong(1), found.getLong(2), 0});
+          }
+        }
+      }
+      for (Work work : works) {
+        transfer(work, rows);
+      }
+      boolean changed = false;
+      for (Map.Entry<String, long[]> row : rows.entrySet()) {
+        long[] balance = row.getValue();
+        if (balance != null && balance[2] != 0) {
+          updateRow.setLong(1, balance[0]);
+          updateRow.setLong(2, ++balance[1]);
+          updateRow.setString(3, row.getKey());
+          updateRow.addBatch();
+          changed = true;
+        }
+      }
+      if (changed) {
+        updateRow.executeBatch();
+      }
+      connection.commit();
+    } catch (SQLException | RuntimeException e) {
+      updateRow.clearBatch();
+      connection.rollback();
+      throw e;
+    }
+    if (cache != null) {
+      for (Map.Entry<String, long[]> row : rows.entrySet()) {
+        long[] balance = row.getValue();
+        if (balance != null && balance[2] != 0) {
+          cache.written(row.getKey(), balance[0], balance[1]);
+        }
+      }
+    }
+    for (Work work : works) {
+      work.done.complete(work.outcomes);
+    }
+  }
+
+  private static void transfer(Work work, Map<String, long[]> rows) {
+    for (int i = 0; i < work.units.length; i++) {
+      long units = work.units[i];
+      if (units == 0) {
+        continue;
+      }
+      FundTransfer fundTransfer = work.transfers.get(i);
+      long[] sender = rows.get(fundTransfer.getSenderAccountId());
+      long[] receiver = rows.get(fundTransfer.getReceiverAccountId());
+      if (sender == null) {
+        work.outcomes[i] = TransferOutcome.SENDER_NOT_FOUND;
+      } else if (receiver == null) {
+        work.outcomes[i] = TransferOutcome.RECEIVER_NOT_FOUND;
+      } else if (Money.subtract(sender[0], units) <= 0) {
+        work.outcomes[i] = TransferOutcome.OVERDRAFT;
+      } else {
+        sender[0] = Money.subtract(sender[0], units);
+        receiver[0] = Money.add(receiver[0], units);
+        sender[2] = 1;
+        receiver[2] = 1;
+        work.outcomes[i] = TransferOutcome.OK;
+      }
+    }
+  }
+}
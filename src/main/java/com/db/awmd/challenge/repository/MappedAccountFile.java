@@ -0,0 +1,170 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Account slots in a memory-mapped file. Each account takes one fixed-width slot holding its balance in
+ * minor units and its UTF-8 id; slots are handed out in creation order and never move, so a slot number is
+ * a stable handle for the lifetime of the file. The file is mapped in segments because a single mapping is
+ * limited to 2 GiB.
+ *
+ * <pre>
+ * header (64 bytes): magic, slot size, capacity, used slots
+ * slot   (64 bytes): balance (8), id length (2), id bytes (up to 54)
+ * </pre>
+ *
+ * Writes of one slot must be serialized by the caller; this class does no locking of its own.
+ */
+final class MappedAccountFile implements Closeable {
+
+  static final int SLOT_BYTES = 64;
+
+  static final int MAX_ID_BYTES = SLOT_BYTES - 10;
+
+  private static final int HEADER_BYTES = 64;
+
+  private static final long MAGIC = 0x4143434f554e5453L;
+
+  private static final int SEGMENT_SHIFT = 24;
+
+  private static final int SEGMENT_SLOTS = 1 << SEGMENT_SHIFT;
+
+  private static final int SEGMENT_MASK = SEGMENT_SLOTS - 1;
+
+  private static final int BALANCE_OFFSET = 0;
+
+  private static final int ID_LENGTH_OFFSET = 8;
+
+  private static final int ID_OFFSET = 10;
+
+  private final FileChannel channel;
+
+  private final MappedByteBuffer header;
+
+  private final MappedByteBuffer[] segments;
+
+  private final int capacity;
+
+  MappedAccountFile(Path path, int capacity) throws IOException {
+    this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean fresh = channel.size() < HEADER_BYTES;
+    this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+    if (fresh) {
+      header.putLong(0, MAGIC);
+      header.putInt(8, SLOT_BYTES);
+      header.putInt(12, capacity);
+      header.putInt(16, 0);
+    } else if (header.getLong(0) != MAGIC || header.getInt(8) != SLOT_BYTES) {
+      channel.close();
+      throw new IOException(path + " is not an account file");
+    }
+    // an existing file keeps the capacity it was created with
+    this.capacity = header.getInt(12);
+
+    int segmentCount = (int) (((long) this.capacity + SEGMENT_SLOTS - 1) >>> SEGMENT_SHIFT);
+    this.segments = new MappedByteBuffer[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      long firstSlot = (long) i << SEGMENT_SHIFT;
+      long slots = Math.min(SEGMENT_SLOTS, this.capacity - firstSlot);
+      segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+              HEADER_BYTES + firstSlot * SLOT_BYTES, slots * SLOT_BYTES);
+    }
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Number of slots in use, as last persisted by {@link #setUsedSlots(int)}.
+   */
+  int usedSlots() {
+    return header.getInt(16);
+  }
+
+  void setUsedSlots(int usedSlots) {
+    header.putInt(16, usedSlots);
+  }
+
+  long balance(int slot) {
+    return segment(slot).getLong(offset(slot) + BALANCE_OFFSET);
+  }
+
+  void setBalance(int slot, long balanceUnits) {
+    segment(slot).putLong(offset(slot) + BALANCE_OFFSET, balanceUnits);
+  }
+
+  /**
+   * Fills a free slot. The balance is written before the id so a reader that matches the id sees it.
+   */
+  void write(int slot, String accountId, long balanceUnits) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > MAX_ID_BYTES) {
+      throw new IllegalArgumentException("Account id " + accountId + " is longer than " + MAX_ID_BYTES + " bytes");
+    }
+    MappedByteBuffer segment = segment(slot);
+    int offset = offset(slot);
+    segment.putLong(offset + BALANCE_OFFSET, balanceUnits);
+    for (int i = 0; i < id.length; i++) {
+      segment.put(offset + ID_OFFSET + i, id[i]);
+    }
+    segment.putShort(offset + ID_LENGTH_OFFSET, (short) id.length);
+  }
+
+  String accountId(int slot) {
+    MappedByteBuffer segment = segment(slot);
+    int offset = offset(slot);
+    byte[] id = new byte[segment.getShort(offset + ID_LENGTH_OFFSET)];
+    for (int i = 0; i < id.length; i++) {
+      id[i] = segment.get(offset + ID_OFFSET + i);
+    }
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compares without decoding the stored id; ASCII ids, the common case, need no allocation at all.
+   */
+  boolean hasAccountId(int slot, String accountId) {
+    MappedByteBuffer segment = segment(slot);
+    int offset = offset(slot);
+    int length = segment.getShort(offset + ID_LENGTH_OFFSET);
+    if (length != accountId.length()) {
+      return length >= accountId.length() && accountId(slot).equals(accountId);
+    }
+    for (int i = 0; i < length; i++) {
+      if (segment.get(offset + ID_OFFSET + i) != accountId.charAt(i)) {
+        // a multi-byte character never equals a single byte, so a mismatch here settles it
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void force() {
+    header.force();
+    for (MappedByteBuffer segment : segments) {
+      segment.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    force();
+    channel.close();
+  }
+
+  private MappedByteBuffer segment(int slot) {
+    return segments[slot >>> SEGMENT_SHIFT];
+  }
+
+  private static int offset(int slot) {
+    return (slot & SEGMENT_MASK) * SLOT_BYTES;
+  }
+}
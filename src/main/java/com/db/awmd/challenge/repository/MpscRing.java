@@ -0,0 +1,65 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer. Producers claim a slot by moving the tail
+ * with a compare-and-set and then fill it; the consumer takes slots in order, so a claimed slot that is
+ * not filled yet reads as empty until it is.
+ */
+final class MpscRing<E> {
+
+  private final AtomicReferenceArray<E> slots;
+
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Written by the consumer only; producers read it to see how many slots are free.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  MpscRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return {@code false} when the ring is full
+   */
+  boolean offer(E element) {
+    while (true) {
+      long claimed = tail.get();
+      if (claimed - head.get() > mask) {
+        return false;
+      }
+      if (tail.compareAndSet(claimed, claimed + 1)) {
+        slots.set((int) claimed & mask, element);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Consumer only. @return the oldest element, or {@code null} when none is ready
+   */
+  E poll() {
+    long next = head.get();
+    int index = (int) next & mask;
+    E element = slots.get(index);
+    if (element == null) {
+      return null;
+    }
+    // empty the slot before handing it back to the producers
+    slots.lazySet(index, null);
+    head.lazySet(next + 1);
+    return element;
+  }
+
+  boolean isEmpty() {
+    return slots.get((int) head.get() & mask) == null;
+  }
+}
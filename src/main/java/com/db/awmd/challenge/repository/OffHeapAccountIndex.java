@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Account id to slot index kept in a direct buffer, so it adds nothing to the heap however many accounts
+ * there are. Open addressing with linear probing; each entry is the id hash and the slot number plus one,
+ * zero marking a free entry. Ids are not copied into the index, a candidate slot is confirmed against the id
+ * stored in the {@link MappedAccountFile}.
+ *
+ * Inserts must be serialized by the caller. Lookups may run concurrently with an insert and can miss the
+ * entry being inserted.
+ */
+final class OffHeapAccountIndex {
+
+  private static final int ENTRY_BYTES = 8;
+
+  private final MappedAccountFile file;
+
+  private final ByteBuffer table;
+
+  private final int mask;
+
+  OffHeapAccountIndex(MappedAccountFile file, int maxEntries) {
+    // keep the load factor at or below one half
+    long entries = Long.highestOneBit(Math.max(16L, (long) maxEntries * 2 - 1) << 1);
+    if (entries * ENTRY_BYTES > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Index for " + maxEntries + " accounts does not fit in one buffer");
+    }
+    this.file = file;
+    this.table = ByteBuffer.allocateDirect((int) (entries * ENTRY_BYTES));
+    this.mask = (int) entries - 1;
+  }
+
+  static int hash(String accountId) {
+    int h = accountId.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @return the slot of the account, or -1
+   */
+  int find(String accountId) {
+    int hash = hash(accountId);
+    for (int entry = hash & mask; ; entry = (entry + 1) & mask) {
+      int slot = table.getInt(entry * ENTRY_BYTES + 4) - 1;
+      if (slot < 0) {
+        return -1;
+      }
+      if (table.getInt(entry * ENTRY_BYTES) == hash && file.hasAccountId(slot, accountId)) {
+        return slot;
+      }
+    }
+  }
+
+  void insert(String accountId, int slot) {
+    int hash = hash(accountId);
+    int entry = hash & mask;
+    while (table.getInt(entry * ENTRY_BYTES + 4) != 0) {
+      entry = (entry + 1) & mask;
+    }
+    table.putInt(entry * ENTRY_BYTES, hash);
+    table.putInt(entry * ENTRY_BYTES + 4, slot + 1);
+  }
+
+  void clear() {
+    for (int i = 0; i < table.capacity(); i += ENTRY_BYTES) {
+      table.putLong(i, 0L);
+    }
+  }
+}
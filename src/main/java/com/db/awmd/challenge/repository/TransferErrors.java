@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+
+import java.util.List;
+
+/**
+ * The checks a transfer's fund has to pass, shared by every {@link AccountsRepository} implementation so
+ * clients see the same outcomes whichever store is configured. A rejection is a {@link TransferOutcome}, turned
+ * into an exception only by the throwing API ({@link TransferOutcome#toException}).
+ */
+final class TransferErrors {
+
+  private TransferErrors() {
+  }
+
+  /**
+   * {@link TransferOutcome#OK} when the fund can be moved, and the rejection otherwise.
+   */
+  static TransferOutcome checkFund(FundTransfer fundTransfer) {
+    if (fundTransfer.getFund() == null) {
+      return TransferOutcome.NOT_POSITIVE;
+    }
+    if (!fundTransfer.hasFundUnits()) {
+      return TransferOutcome.TOO_PRECISE;
+    }
+    return fundTransfer.getFundUnits() <= 0 ? TransferOutcome.NOT_POSITIVE : TransferOutcome.OK;
+  }
+
+  /**
+   * Same checks as the single transfer path, for batches that report {@code INVALID} instead of throwing:
+   * returns 0 when the transfer cannot be applied.
+   */
+  static long batchFundUnits(FundTransfer fundTransfer) {
+    if (fundTransfer == null
+            || fundTransfer.getSenderAccountId() == null
+            || fundTransfer.getReceiverAccountId() == null
+            || fundTransfer.getSenderAccountId().equalsIgnoreCase(fundTransfer.getReceiverAccountId())
+            || fundTransfer.getFund() == null
+            || !fundTransfer.hasFundUnits()) {
+      return 0L;
+    }
+    return Math.max(fundTransfer.getFundUnits(), 0L);
+  }
+
+  /**
+   * {@link TransferOutcome#OK} when every leg's fund can be moved and their total fits in a long, the first
+   * leg's rejection otherwise. A transfer without legs moves nothing and is rejected as not positive, a total
+   * too large to count is an overdraft whatever the balance.
+   */
+  static TransferOutcome checkLegs(MultiLegTransfer multiLegTransfer) {
+    List<FundTransfer> legs = multiLegTransfer.getFundTransfers();
+    if (legs.isEmpty()) {
+      return TransferOutcome.NOT_POSITIVE;
+    }
+    long total = 0;
+    for (FundTransfer leg : legs) {
+      TransferOutcome fundCheck = checkFund(leg);
+      if (!fundCheck.isOk()) {
+        return fundCheck;
+      }
+      try {
+        total = Money.add(total, leg.getFundUnits());
+      } catch (ArithmeticException e) {
+        return TransferOutcome.OVERDRAFT;
+      }
+    }
+    return TransferOutcome.OK;
+  }
+}
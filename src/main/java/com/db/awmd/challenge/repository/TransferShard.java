@@ -0,0 +1,210 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of {@link AccountsRepositoryPartitioned}: a thread that alone changes the balances of the
+ * accounts hashed to it, so it needs no locks. Work arrives through a lock-free inbox, from request threads
+ * (debits) and from other shards (credits, and refunds of credits the receiver could not take).
+ */
+@Slf4j
+final class TransferShard implements Runnable {
+
+  private static final int SPINS = 1_000;
+
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  enum Kind {
+    DEBIT, CREDIT, REFUND
+  }
+
+  /**
+   * A debit of {@code sender}, the matching credit of {@code receiver} on the receiver's shard, or, when that
+   * credit would overflow, the refund of {@code sender} on the sender's shard.
+   */
+  static final class Message {
+
+    final Kind kind;
+
+    final FundTransfer fundTransfer;
+
+    final Account sender;
+
+    final Account receiver;
+
+    final TransferShard senderShard;
+
+    final TransferShard receiverShard;
+
+    final long units;
+
+    final CompletableFuture<TransferOutcome> result;
+
+    Message(Kind kind, FundTransfer fundTransfer, Account sender, Account receiver, TransferShard senderShard,
+            TransferShard receiverShard, long units, CompletableFuture<TransferOutcome> result) {
+      this.kind = kind;
+      this.fundTransfer = fundTransfer;
+      this.sender = sender;
+      this.receiver = receiver;
+      this.senderShard = senderShard;
+      this.receiverShard = receiverShard;
+      this.units = units;
+      this.result = result;
+    }
+
+    Message forward(Kind kind) {
+      return new Message(kind, fundTransfer, sender, receiver, senderShard, receiverShard, units, result);
+    }
+
+    TransferShard destination() {
+      return kind == Kind.REFUND ? senderShard : receiverShard;
+    }
+  }
+
+  final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+  private final MpscRing<Message> inbox;
+
+  /**
+   * Credits and refunds whose shard had a full inbox; kept here instead of waiting, so two busy shards never
+   * wait on each other.
+   */
+  private final ArrayDeque<Message> unsent = new ArrayDeque<>();
+
+  private final Thread thread;
+
+  private volatile boolean running = true;
+
+  private volatile boolean sleeping;
+
+  TransferShard(int index, int inboxCapacity) {
+    this.inbox = new MpscRing<>(inboxCapacity);
+    this.thread = new Thread(this, "transfer-shard-" + index);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Hands a debit to this shard, waiting while its inbox is full. Not for shard threads.
+   */
+  void submit(Message debit) {
+    while (!inbox.offer(debit)) {
+      wake();
+      Thread.yield();
+    }
+    wake();
+  }
+
+  void close() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(thread);
+    thread.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Override
+  public void run() {
+    int idle = 0;
+    while (running || !inbox.isEmpty() || !unsent.isEmpty()) {
+      boolean sent = sendUnsent();
+      Message message = inbox.poll();
+      if (message != null) {
+        handle(message);
+        idle = 0;
+      } else if (sent) {
+        idle = 0;
+      } else if (++idle > SPINS) {
+        sleeping = true;
+        if (inbox.isEmpty() && unsent.isEmpty()) {
+          LockSupport.parkNanos(PARK_NANOS);
+        }
+        sleeping = false;
+      }
+    }
+  }
+
+  private void handle(Message message) {
+    try {
+      if (message.kind == Kind.CREDIT) {
+        long credited;
+        try {
+          credited = Money.add(message.receiver.getBalanceUnits(), message.units);
+        } catch (ArithmeticException e) {
+          // the sender is debited already: its shard hands the fund back and then fails the transfer
+          send(message.forward(Kind.REFUND));
+          return;
+        }
+        message.receiver.setBalanceUnits(credited);
+        message.result.complete(TransferOutcome.OK);
+        return;
+      }
+      if (message.kind == Kind.REFUND) {
+        message.sender.setBalanceUnits(Money.add(message.sender.getBalanceUnits(), message.units));
+        message.result.completeExceptionally(new ArithmeticException("long overflow"));
+        return;
+      }
+      long remaining = Money.subtract(message.sender.getBalanceUnits(), message.units);
+      if (remaining <= 0) {
+        message.result.complete(TransferOutcome.OVERDRAFT);
+        return;
+      }
+      if (message.receiverShard == this) {
+        long credited = Money.add(message.receiver == message.sender ? remaining : message.receiver.getBalanceUnits(),
+                message.units);
+        message.sender.setBalanceUnits(remaining);
+        message.receiver.setBalanceUnits(credited);
+        message.result.complete(TransferOutcome.OK);
+        return;
+      }
+      // reserve the fund by debiting it here, the receiver's shard credits it
+      message.sender.setBalanceUnits(remaining);
+      send(message.forward(Kind.CREDIT));
+    } catch (RuntimeException e) {
+      log.error("Transfer {} failed on {}", message.fundTransfer, thread.getName(), e);
+      message.result.completeExceptionally(e);
+    }
+  }
+
+  private void send(Message message) {
+    if (!unsent.isEmpty() || !message.destination().offer(message)) {
+      unsent.add(message);
+    }
+  }
+
+  private boolean offer(Message message) {
+    if (!inbox.offer(message)) {
+      return false;
+    }
+    wake();
+    return true;
+  }
+
+  private boolean sendUnsent() {
+    boolean sent = false;
+    Message message;
+    while ((message = unsent.peek()) != null && message.destination().offer(message)) {
+      unsent.poll();
+      sent = true;
+    }
+    return sent;
+  }
+
+  private void wake() {
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+}
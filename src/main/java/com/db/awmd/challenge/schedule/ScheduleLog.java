@@ -0,0 +1,305 @@
+package com.db.awmd.challenge.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of schedule changes, replayed on startup to rebuild the pending transfers.
+ *
+ * Records are framed like those of the transfer journal, as {@code length, crc32, payload}, and replay cuts
+ * the file at the first torn or corrupt one. Appending only writes to the file; {@link #sync} then makes
+ * everything up to a position durable, and callers that sync at the same time share one fsync. Once the file
+ * holds mostly records of transfers no longer pending, {@link #rewrite} replaces it with one record per
+ * pending transfer.
+ *
+ * Records reach the file through {@link #write}, which a subclass may override to stand in a failing disk.
+ */
+@Slf4j
+public class ScheduleLog implements Closeable {
+
+  static final byte SCHEDULE = 1;
+
+  static final byte CANCEL = 2;
+
+  static final byte RELEASE = 3;
+
+  /**
+   * Lowest generation for handles without a pending transfer, written first by {@link #rewrite} since the
+   * records that gave out the generations before it are gone.
+   */
+  static final byte FLOOR = 4;
+
+  private static final int MAX_RECORD_BYTES = 1 << 16;
+
+  /**
+   * Receives the records of {@link #replay}, in file order.
+   */
+  interface Replay {
+
+    void schedule(long id, long dueMillis, int intervalSeconds, long units, String sender, String receiver);
+
+    void cancel(long id);
+
+    void release(long id, long nextDueMillis);
+
+    void floor(int generation);
+  }
+
+  private final Path path;
+
+  private final boolean fsync;
+
+  private final CRC32 crc = new CRC32();
+
+  private final Object syncMonitor = new Object();
+
+  private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+  private FileChannel channel;
+
+  // guarded by this
+  private long appended;
+
+  private long records;
+
+  // guarded by syncMonitor
+  private long synced;
+
+  public ScheduleLog(Path path, boolean fsync) {
+    this.path = path;
+    this.fsync = fsync;
+  }
+
+  /**
+   * Records in the file, including those written before the last start.
+   */
+  synchronized long records() {
+    return records;
+  }
+
+  /**
+   * Reads every intact record and cuts the file after the last one. Must run before {@link #open()}.
+   */
+  void replay(Replay replay) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    long validLength = 0;
+    try (InputStream file = Files.newInputStream(path);
+         DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+      CRC32 check = new CRC32();
+      byte[] payload = new byte[MAX_RECORD_BYTES];
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+          int checksum = in.readInt();
+          if (length <= 0 || length > MAX_RECORD_BYTES) {
+            log.warn("Schedule log {} has a corrupt record at offset {}, ignoring the rest", path, validLength);
+            break;
+          }
+          in.readFully(payload, 0, length);
+          check.reset();
+          check.update(payload, 0, length);
+          if ((int) check.getValue() != checksum) {
+            log.warn("Schedule log {} has a corrupt record at offset {}, ignoring the rest", path, validLength);
+            break;
+          }
+        } catch (EOFException e) {
+          break;
+        }
+        decode(ByteBuffer.wrap(payload, 0, length), replay);
+        validLength += 8 + length;
+        records++;
+      }
+    }
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      if (file.size() > validLength) {
+        log.warn("Truncating schedule log {} from {} to {} bytes", path, file.size(), validLength);
+        file.truncate(validLength);
+      }
+    }
+    log.info("Replayed {} schedule records from {}", records, path);
+  }
+
+  synchronized void open() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    appended = channel.size();
+    synced = appended;
+  }
+
+  /**
+   * @return the position to {@link #sync} up to for the record to be durable
+   */
+  synchronized long schedule(long id, long dueMillis, int intervalSeconds, long units,
+                             String sender, String receiver) throws IOException {
+    byte[] senderBytes = sender.getBytes(StandardCharsets.UTF_8);
+    byte[] receiverBytes = receiver.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer payload = begin(1 + 8 + 8 + 4 + 8 + 2 + senderBytes.length + 2 + receiverBytes.length);
+    payload.put(SCHEDULE);
+    payload.putLong(id);
+    payload.putLong(dueMillis);
+    payload.putInt(intervalSeconds);
+    payload.putLong(units);
+    payload.putShort((short) senderBytes.length);
+    payload.put(senderBytes);
+    payload.putShort((short) receiverBytes.length);
+    payload.put(receiverBytes);
+    return write(payload);
+  }
+
+  synchronized long cancel(long id) throws IOException {
+    ByteBuffer payload = begin(1 + 8);
+    payload.put(CANCEL);
+    payload.putLong(id);
+    return write(payload);
+  }
+
+  /**
+   * @param nextDueMillis when a repeating transfer is due next, 0 for one that is done
+   */
+  synchronized long release(long id, long nextDueMillis) throws IOException {
+    ByteBuffer payload = begin(1 + 8 + 8);
+    payload.put(RELEASE);
+    payload.putLong(id);
+    payload.putLong(nextDueMillis);
+    return write(payload);
+  }
+
+  /**
+   * Makes every record up to {@code position} durable, with one fsync for all callers waiting meanwhile.
+   */
+  void sync(long position) throws IOException {
+    if (!fsync) {
+      return;
+    }
+    synchronized (syncMonitor) {
+      if (synced >= position) {
+        return;
+      }
+      long end;
+      synchronized (this) {
+        end = appended;
+      }
+      channel.force(false);
+      synced = end;
+    }
+  }
+
+  /**
+   * Replaces the file with {@code floor} and a schedule record per pending transfer, written by
+   * {@code pending} to the log it is given; the caller must keep the log from being appended to meanwhile.
+   */
+  void rewrite(int floor, PendingWriter pending) throws IOException {
+    synchronized (syncMonitor) {
+      synchronized (this) {
+        Path rewritten = path.resolveSibling(path.getFileName() + ".tmp");
+        ScheduleLog target = new ScheduleLog(rewritten, fsync);
+        Files.deleteIfExists(rewritten);
+        target.open();
+        try {
+          ByteBuffer payload = target.begin(1 + 4);
+          payload.put(FLOOR);
+          payload.putInt(floor);
+          target.write(payload);
+          pending.writeTo(target);
+          if (fsync) {
+            target.channel.force(false);
+          }
+        } finally {
+          target.close();
+        }
+        channel.close();
+        Files.move(rewritten, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = target.records;
+        open();
+      }
+    }
+  }
+
+  interface PendingWriter {
+
+    void writeTo(ScheduleLog log) throws IOException;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private ByteBuffer begin(int length) {
+    if (buffer.capacity() < 8 + length) {
+      buffer = ByteBuffer.allocate(8 + length);
+    }
+    buffer.clear();
+    buffer.putInt(length);
+    buffer.putInt(0);
+    return buffer;
+  }
+
+  /**
+   * Appends a record {@link #begin} started and whose payload is filled in; called holding this log's lock.
+   *
+   * @return the position to {@link #sync} up to for the record to be durable
+   */
+  protected long write(ByteBuffer payload) throws IOException {
+    int length = payload.position() - 8;
+    crc.reset();
+    crc.update(payload.array(), 8, length);
+    payload.putInt(4, (int) crc.getValue());
+    payload.flip();
+    while (payload.hasRemaining()) {
+      channel.write(payload);
+    }
+    appended += 8 + length;
+    records++;
+    return appended;
+  }
+
+  private static void decode(ByteBuffer payload, Replay replay) {
+    byte type = payload.get();
+    switch (type) {
+      case SCHEDULE:
+        long id = payload.getLong();
+        long dueMillis = payload.getLong();
+        int intervalSeconds = payload.getInt();
+        long units = payload.getLong();
+        replay.schedule(id, dueMillis, intervalSeconds, units, readString(payload), readString(payload));
+        break;
+      case CANCEL:
+        replay.cancel(payload.getLong());
+        break;
+      case RELEASE:
+        replay.release(payload.getLong(), payload.getLong());
+        break;
+      case FLOOR:
+        replay.floor(payload.getInt());
+        break;
+      default:
+        throw new IllegalStateException("Unknown schedule record type " + type);
+    }
+  }
+
+  private static String readString(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
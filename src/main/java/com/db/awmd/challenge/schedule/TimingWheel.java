@@ -0,0 +1,229 @@
+package com.db.awmd.challenge.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel of int handles, each with a due time in epoch milliseconds. Not thread-safe.
+ *
+ * Time advances in ticks of {@code tickMillis}. There are {@link #LEVELS} wheels of {@link #SLOTS} slots;
+ * a slot of level {@code n} covers {@code SLOTS^n} ticks, so the wheels together reach {@code SLOTS^LEVELS}
+ * ticks ahead and anything further waits in an overflow list. A handle is put in the slot of the lowest
+ * level whose range its due tick falls in; whenever the lower wheel completes a turn, the next slot of the
+ * wheel above is emptied into the levels below (cascading), until the handle reaches level 0 and its tick.
+ * Adding and removing a handle are O(1); {@link #advance} costs one slot per tick plus the handles it moves.
+ *
+ * Each slot is a circular doubly linked list through a sentinel node, kept in two int arrays next to the
+ * due times, so the wheel takes 16 bytes per handle and allocates nothing after growing. Handles that are
+ * due wait in the expired list, oldest first, until they are taken with {@link #pollExpired}.
+ */
+public final class TimingWheel {
+
+  static final int SLOT_BITS = 8;
+
+  static final int SLOTS = 1 << SLOT_BITS;
+
+  static final int LEVELS = 4;
+
+  private static final int EXPIRED = LEVELS * SLOTS;
+
+  private static final int OVERFLOW = EXPIRED + 1;
+
+  private static final int SENTINELS = OVERFLOW + 1;
+
+  private static final int UNLINKED = -1;
+
+  private final long tickMillis;
+
+  /**
+   * Links of sentinel {@code s} at index {@code s} and of handle {@code h} at {@code SENTINELS + h}.
+   */
+  private int[] next;
+
+  private int[] prev;
+
+  private long[] dueMillis;
+
+  private long currentTick;
+
+  private int size;
+
+  public TimingWheel(long tickMillis, long nowMillis, int initialCapacity) {
+    this.tickMillis = Math.max(1, tickMillis);
+    this.currentTick = Math.floorDiv(nowMillis, this.tickMillis);
+    this.next = new int[SENTINELS + Math.max(1, initialCapacity)];
+    this.prev = new int[next.length];
+    this.dueMillis = new long[next.length - SENTINELS];
+    for (int s = 0; s < SENTINELS; s++) {
+      next[s] = s;
+      prev[s] = s;
+    }
+    Arrays.fill(next, SENTINELS, next.length, UNLINKED);
+  }
+
+  /**
+   * Handles below this can be added without growing.
+   */
+  public int capacity() {
+    return dueMillis.length;
+  }
+
+  /**
+   * Grows the arrays so handles below {@code capacity} can be added.
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= dueMillis.length) {
+      return;
+    }
+    int grown = Math.max(capacity, dueMillis.length * 2);
+    int oldLength = next.length;
+    next = Arrays.copyOf(next, SENTINELS + grown);
+    prev = Arrays.copyOf(prev, SENTINELS + grown);
+    dueMillis = Arrays.copyOf(dueMillis, grown);
+    Arrays.fill(next, oldLength, next.length, UNLINKED);
+  }
+
+  /**
+   * Handles added and neither removed nor polled yet, expired ones included.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(int handle) {
+    return handle >= 0 && handle < dueMillis.length && next[SENTINELS + handle] != UNLINKED;
+  }
+
+  public long dueMillis(int handle) {
+    return dueMillis[handle];
+  }
+
+  /**
+   * Schedules {@code handle}, which must not be in the wheel; a due time that has passed makes it expired
+   * at once.
+   */
+  public void add(int handle, long due) {
+    ensureCapacity(handle + 1);
+    if (next[SENTINELS + handle] != UNLINKED) {
+      throw new IllegalStateException("Handle " + handle + " is already scheduled");
+    }
+    dueMillis[handle] = due;
+    place(handle);
+    size++;
+  }
+
+  /**
+   * Unschedules {@code handle}, expired or not.
+   *
+   * @return whether it was in the wheel
+   */
+  public boolean remove(int handle) {
+    if (!contains(handle)) {
+      return false;
+    }
+    unlink(SENTINELS + handle);
+    size--;
+    return true;
+  }
+
+  /**
+   * Moves the handles due by the start of the tick {@code nowMillis} falls in to the expired list. A handle
+   * expires at the first tick boundary at or after its due time, so up to a tick late but never early.
+   */
+  public void advance(long nowMillis) {
+    long nowTick = Math.floorDiv(nowMillis, tickMillis);
+    while (currentTick < nowTick) {
+      currentTick++;
+      int index = (int) currentTick & (SLOTS - 1);
+      if (index == 0) {
+        cascade(1);
+      }
+      moveAll(index, EXPIRED);
+    }
+  }
+
+  /**
+   * Removes and returns the expired handle that expired first, or -1 when none is.
+   */
+  public int pollExpired() {
+    int first = next[EXPIRED];
+    if (first == EXPIRED) {
+      return -1;
+    }
+    unlink(first);
+    size--;
+    return first - SENTINELS;
+  }
+
+  /**
+   * Empties the slot of {@code level} the current tick has just entered into the levels below, after the
+   * level above if this one has completed a turn as well.
+   */
+  private void cascade(int level) {
+    int index = (int) (currentTick >>> (level * SLOT_BITS)) & (SLOTS - 1);
+    if (level + 1 < LEVELS && index == 0) {
+      cascade(level + 1);
+    } else if (level + 1 == LEVELS && index == 0) {
+      replace(OVERFLOW);
+    }
+    replace(level * SLOTS + index);
+  }
+
+  /**
+   * Places every handle of {@code sentinel} again, for the current tick.
+   */
+  private void replace(int sentinel) {
+    int node = next[sentinel];
+    // detach the whole list first, so handles placed back into the same sentinel are not seen again
+    next[sentinel] = sentinel;
+    prev[sentinel] = sentinel;
+    while (node != sentinel) {
+      int following = next[node];
+      next[node] = UNLINKED;
+      place(node - SENTINELS);
+      node = following;
+    }
+  }
+
+  private void moveAll(int from, int to) {
+    int first = next[from];
+    if (first == from) {
+      return;
+    }
+    int last = prev[from];
+    int tail = prev[to];
+    next[tail] = first;
+    prev[first] = tail;
+    next[last] = to;
+    prev[to] = last;
+    next[from] = from;
+    prev[from] = from;
+  }
+
+  private void place(int handle) {
+    long dueTick = Math.floorDiv(dueMillis[handle] + tickMillis - 1, tickMillis);
+    long ticks = dueTick - currentTick;
+    int sentinel;
+    if (ticks <= 0) {
+      sentinel = EXPIRED;
+    } else if (ticks >= 1L << (LEVELS * SLOT_BITS)) {
+      sentinel = OVERFLOW;
+    } else {
+      int level = (63 - Long.numberOfLeadingZeros(ticks)) / SLOT_BITS;
+      sentinel = level * SLOTS + ((int) (dueTick >>> (level * SLOT_BITS)) & (SLOTS - 1));
+    }
+    int node = SENTINELS + handle;
+    int tail = prev[sentinel];
+    next[tail] = node;
+    prev[node] = tail;
+    next[node] = sentinel;
+    prev[sentinel] = node;
+  }
+
+  private void unlink(int node) {
+    int before = prev[node];
+    int after = next[node];
+    next[before] = after;
+    prev[after] = before;
+    next[node] = UNLINKED;
+  }
+}
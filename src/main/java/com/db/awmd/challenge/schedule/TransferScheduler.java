@@ -0,0 +1,559 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.FundService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transfers to be made at a later time, once or repeatedly, released into the same batch path as
+ * {@code POST /v1/fund/transfers} when they are due.
+ *
+ * Pending transfers live in a {@link TimingWheel} by int handle, with their fields in parallel arrays and
+ * account ids shared between all transfers of an account, so a pending transfer takes 40 bytes of heap, plus
+ * the slack of arrays that grow by doubling, and scheduling or cancelling one is O(1). An account's id is
+ * dropped with its last pending transfer. An id is the handle with a generation in the upper half, which
+ * is raised whenever the handle is freed, so the id of a transfer that is done never matches the next one.
+ *
+ * A single thread advances the wheel every {@code schedule.tick-ms} and releases what is due in batches of
+ * up to {@code schedule.batch-size}, at most {@code schedule.max-release-rate} transfers per second when that
+ * is positive. Transfers due at the same moment, say on the minute, thereby reach the repository as a few
+ * large batches, or spread over the following seconds, instead of one request each at once.
+ *
+ * With a {@code schedule.path} every change is written to a {@link ScheduleLog} first, and schedules are
+ * acknowledged once it is durable; startup replays the log, and transfers that fell due meanwhile are
+ * released right away. A release is logged before the transfer is applied, so a crash in between loses that
+ * occurrence instead of repeating it: releases are at most once.
+ */
+@Slf4j
+@Service
+public class TransferScheduler {
+
+  /**
+   * Records the log may hold beyond twice the pending transfers before it is rewritten.
+   */
+  private static final long COMPACTION_SLACK = 100_000;
+
+  private final FundService fundService;
+
+  private final ScheduleLog scheduleLog;
+
+  private final long tickMillis;
+
+  private final int batchSize;
+
+  private final int releasesPerTick;
+
+  private final TimingWheel wheel;
+
+  // guarded by this, an entry per account with pending transfers
+  private final Map<String, SharedId> accountIds = new HashMap<>();
+
+  private final LongAdder scheduled = new LongAdder();
+
+  private final LongAdder cancelled = new LongAdder();
+
+  private final LongAdder releasedOk = new LongAdder();
+
+  private final LongAdder releasedRejected = new LongAdder();
+
+  // guarded by this, indexed by handle
+  private long[] units;
+
+  private int[] intervalSeconds;
+
+  private String[] senders;
+
+  private String[] receivers;
+
+  private int[] generations;
+
+  private int[] freeHandles;
+
+  private int freeCount;
+
+  private int highWater;
+
+  private int generationFloor;
+
+  private IOException failure;
+
+  private volatile boolean running;
+
+  private Thread releaser;
+
+  @Autowired
+  public TransferScheduler(FundService fundService,
+                           @Value("${schedule.path:}") String path,
+                           @Value("${schedule.fsync:true}") boolean fsync,
+                           @Value("${schedule.tick-ms:100}") long tickMillis,
+                           @Value("${schedule.batch-size:1024}") int batchSize,
+                           @Value("${schedule.max-release-rate:0}") int maxReleaseRate) {
+    this(fundService, path == null || path.isEmpty() ? null : new ScheduleLog(Paths.get(path), fsync), tickMillis,
+            batchSize, maxReleaseRate);
+  }
+
+  /**
+   * Logs to {@code scheduleLog}, or keeps the schedule in memory only when it is {@code null}.
+   */
+  public TransferScheduler(FundService fundService, ScheduleLog scheduleLog, long tickMillis, int batchSize,
+                           int maxReleaseRate) {
+    this.fundService = fundService;
+    this.scheduleLog = scheduleLog;
+    this.tickMillis = Math.max(1, tickMillis);
+    this.batchSize = Math.max(1, batchSize);
+    this.releasesPerTick = maxReleaseRate > 0
+            ? (int) Math.max(1, maxReleaseRate * this.tickMillis / 1000) : Integer.MAX_VALUE;
+    int capacity = 1024;
+    this.wheel = new TimingWheel(this.tickMillis, System.currentTimeMillis(), capacity);
+    this.units = new long[capacity];
+    this.intervalSeconds = new int[capacity];
+    this.senders = new String[capacity];
+    this.receivers = new String[capacity];
+    this.generations = new int[capacity];
+    this.freeHandles = new int[capacity];
+  }
+
+  /**
+   * Recovers the pending transfers and starts releasing them.
+   */
+  @PostConstruct
+  public synchronized void start() throws IOException {
+    if (running) {
+      return;
+    }
+    recover();
+    running = true;
+    releaser = new Thread(this::releaseLoop, "transfer-scheduler");
+    releaser.setDaemon(true);
+    releaser.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException, IOException {
+    running = false;
+    if (releaser != null) {
+      releaser.join();
+    }
+    if (scheduleLog != null) {
+      scheduleLog.close();
+    }
+  }
+
+  /**
+   * Replays the log, if there is one, and opens it for appending. {@link #start()} does this first.
+   */
+  public synchronized void recover() throws IOException {
+    if (scheduleLog == null) {
+      return;
+    }
+    scheduleLog.replay(new ScheduleLog.Replay() {
+      @Override
+      public void schedule(long id, long dueMillis, int interval, long amount, String sender, String receiver) {
+        int handle = (int) id;
+        ensureCapacity(handle + 1);
+        highWater = Math.max(highWater, handle + 1);
+        wheel.remove(handle);
+        if (senders[handle] != null) {
+          unintern(senders[handle]);
+          unintern(receivers[handle]);
+        }
+        generations[handle] = (int) (id >>> 32);
+        units[handle] = amount;
+        intervalSeconds[handle] = interval;
+        senders[handle] = intern(sender);
+        receivers[handle] = intern(receiver);
+        wheel.add(handle, dueMillis);
+      }
+
+      @Override
+      public void cancel(long id) {
+        if (isPending(id)) {
+          wheel.remove((int) id);
+        }
+      }
+
+      @Override
+      public void release(long id, long nextDueMillis) {
+        if (isPending(id)) {
+          wheel.remove((int) id);
+          if (nextDueMillis != 0) {
+            wheel.add((int) id, nextDueMillis);
+          }
+        }
+      }
+
+      @Override
+      public void floor(int generation) {
+        generationFloor = Math.max(generationFloor, generation);
+      }
+    });
+    for (int handle = highWater - 1; handle >= 0; handle--) {
+      if (!wheel.contains(handle)) {
+        // a later generation than any the handle was given out with, before or after a rewrite
+        generations[handle] = Math.max(generations[handle] + 1, generationFloor);
+        if (senders[handle] != null) {
+          unintern(senders[handle]);
+          unintern(receivers[handle]);
+        }
+        senders[handle] = null;
+        receivers[handle] = null;
+        pushFree(handle);
+      }
+    }
+    scheduleLog.open();
+    log.info("Recovered {} scheduled transfers", wheel.size());
+  }
+
+  /**
+   * Schedules a transfer of {@code fundUnits} minor units, due at {@code dueMillis} and then every
+   * {@code repeatSeconds} if that is positive; returns once it is durable.
+   *
+   * @return the id to look it up or cancel it with
+   * @throws UncheckedIOException when the schedule log can no longer be written
+   */
+  public long schedule(String sender, String receiver, long fundUnits, long dueMillis, int repeatSeconds) {
+    long id;
+    long position;
+    synchronized (this) {
+      checkWritable();
+      int handle = allocate();
+      units[handle] = fundUnits;
+      intervalSeconds[handle] = Math.max(0, repeatSeconds);
+      senders[handle] = intern(sender);
+      receivers[handle] = intern(receiver);
+      id = idOf(handle);
+      try {
+        position = scheduleLog == null ? 0
+                : scheduleLog.schedule(id, dueMillis, intervalSeconds[handle], fundUnits, senders[handle],
+                receivers[handle]);
+      } catch (IOException e) {
+        release(handle);
+        throw fail(e);
+      }
+      wheel.add(handle, dueMillis);
+    }
+    sync(position);
+    scheduled.increment();
+    return id;
+  }
+
+  /**
+   * @return false when {@code id} is not pending, because it was released, cancelled or never given out
+   */
+  public boolean cancel(long id) {
+    long position;
+    synchronized (this) {
+      if (!isPending(id)) {
+        return false;
+      }
+      checkWritable();
+      try {
+        position = scheduleLog == null ? 0 : scheduleLog.cancel(id);
+      } catch (IOException e) {
+        throw fail(e);
+      }
+      wheel.remove((int) id);
+      release((int) id);
+    }
+    sync(position);
+    cancelled.increment();
+    return true;
+  }
+
+  /**
+   * The pending transfer {@code id}, with its next due time, or {@code null} when it is not pending.
+   */
+  public synchronized ScheduledTransfer get(long id) {
+    if (!isPending(id)) {
+      return null;
+    }
+    int handle = (int) id;
+    return new ScheduledTransfer(id, senders[handle], receivers[handle], Money.toDecimal(units[handle]),
+            Instant.ofEpochMilli(wheel.dueMillis(handle)).toString(), intervalSeconds[handle]);
+  }
+
+  public synchronized int pendingCount() {
+    return wheel.size();
+  }
+
+  /**
+   * Accounts that send or receive a pending transfer, each holding one shared id.
+   */
+  public synchronized int accountCount() {
+    return accountIds.size();
+  }
+
+  /**
+   * Releases up to {@code max} transfers due by {@code nowMillis}, no more than one batch, and waits until
+   * the batch is applied. The release thread calls this every tick. When the log fails partway, the
+   * transfers whose release was logged before are still applied, and the rest stay pending.
+   *
+   * @return the number of transfers released
+   */
+  public int releaseDue(long nowMillis, int max) {
+    List<FundTransfer> batch = new ArrayList<>(Math.min(max, batchSize));
+    long position = 0;
+    synchronized (this) {
+      if (failure != null) {
+        return 0;
+      }
+      wheel.advance(nowMillis);
+      int handle;
+      while (batch.size() < max && batch.size() < batchSize && (handle = wheel.pollExpired()) >= 0) {
+        long nextDue = nextDue(handle, nowMillis);
+        if (scheduleLog != null) {
+          try {
+            position = scheduleLog.release(idOf(handle), nextDue);
+          } catch (IOException e) {
+            // its release is not logged, so it stays pending; those logged before are applied below, as
+            // a restart would not release them again
+            wheel.add(handle, wheel.dueMillis(handle));
+            fail(e);
+            break;
+          }
+        }
+        batch.add(new FundTransfer(senders[handle], receivers[handle], Money.toDecimal(units[handle])));
+        if (nextDue != 0) {
+          wheel.add(handle, nextDue);
+        } else {
+          release(handle);
+        }
+      }
+    }
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    sync(position);
+    List<TransferStatus> statuses = fundService.fundTransfers(batch);
+    for (int i = 0; i < statuses.size(); i++) {
+      if (statuses.get(i) == TransferStatus.OK) {
+        releasedOk.increment();
+      } else {
+        releasedRejected.increment();
+        log.warn("Scheduled transfer {} was rejected: {}", batch.get(i), statuses.get(i));
+      }
+    }
+    return batch.size();
+  }
+
+  public long scheduledCount() {
+    return scheduled.sum();
+  }
+
+  public long cancelledCount() {
+    return cancelled.sum();
+  }
+
+  public long releasedCount() {
+    return releasedOk.sum();
+  }
+
+  /**
+   * Released transfers the repository turned down, for an overdraft or an account that is gone.
+   */
+  public long rejectedCount() {
+    return releasedRejected.sum();
+  }
+
+  private void releaseLoop() {
+    long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    long nextTick = System.nanoTime();
+    while (running) {
+      try {
+        long now = System.currentTimeMillis();
+        int allowance = releasesPerTick;
+        int released;
+        do {
+          released = releaseDue(now, allowance);
+          allowance -= released;
+        } while (released > 0 && allowance > 0 && running);
+        compactIfNeeded();
+      } catch (RuntimeException e) {
+        log.error("Releasing scheduled transfers failed", e);
+      }
+      nextTick += tickNanos;
+      long wait = nextTick - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      } else {
+        // behind by more than a tick, catch up from now rather than releasing in bursts
+        nextTick = System.nanoTime();
+      }
+    }
+  }
+
+  private synchronized void compactIfNeeded() {
+    if (scheduleLog == null || failure != null
+            || scheduleLog.records() <= 2L * wheel.size() + COMPACTION_SLACK) {
+      return;
+    }
+    long started = System.nanoTime();
+    int floor = generationFloor;
+    for (int handle = 0; handle < highWater; handle++) {
+      floor = Math.max(floor, generations[handle]);
+    }
+    long records = scheduleLog.records();
+    try {
+      scheduleLog.rewrite(floor, target -> {
+        for (int handle = 0; handle < highWater; handle++) {
+          if (wheel.contains(handle)) {
+            target.schedule(idOf(handle), wheel.dueMillis(handle), intervalSeconds[handle], units[handle],
+                    senders[handle], receivers[handle]);
+          }
+        }
+      });
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    log.info("Rewrote the schedule log from {} to {} records in {} ms", records, scheduleLog.records(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+  }
+
+  /**
+   * When a repeating transfer is due after {@code nowMillis}, skipping occurrences missed while stopped, or
+   * 0 for a transfer made once.
+   */
+  private long nextDue(int handle, long nowMillis) {
+    long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds[handle]);
+    if (intervalMillis == 0) {
+      return 0;
+    }
+    long due = wheel.dueMillis(handle);
+    return due + ((Math.max(0, nowMillis - due) / intervalMillis) + 1) * intervalMillis;
+  }
+
+  private boolean isPending(long id) {
+    int handle = (int) id;
+    return handle >= 0 && handle < highWater && generations[handle] == (int) (id >>> 32)
+            && wheel.contains(handle);
+  }
+
+  private long idOf(int handle) {
+    return ((long) generations[handle] << 32) | handle;
+  }
+
+  private int allocate() {
+    if (freeCount > 0) {
+      return freeHandles[--freeCount];
+    }
+    int handle = highWater++;
+    ensureCapacity(highWater);
+    generations[handle] = generationFloor;
+    return handle;
+  }
+
+  /**
+   * Frees a handle that is out of the wheel.
+   */
+  private void release(int handle) {
+    generations[handle]++;
+    unintern(senders[handle]);
+    unintern(receivers[handle]);
+    senders[handle] = null;
+    receivers[handle] = null;
+    pushFree(handle);
+  }
+
+  private void pushFree(int handle) {
+    if (freeCount == freeHandles.length) {
+      freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+    }
+    freeHandles[freeCount++] = handle;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= units.length) {
+      return;
+    }
+    int grown = Math.max(capacity, units.length * 2);
+    wheel.ensureCapacity(grown);
+    units = Arrays.copyOf(units, grown);
+    intervalSeconds = Arrays.copyOf(intervalSeconds, grown);
+    senders = Arrays.copyOf(senders, grown);
+    receivers = Arrays.copyOf(receivers, grown);
+    generations = Arrays.copyOf(generations, grown);
+  }
+
+  /**
+   * The id shared by the pending transfers of {@code accountId}, counting one more of them.
+   */
+  private String intern(String accountId) {
+    SharedId shared = accountIds.get(accountId);
+    if (shared == null) {
+      shared = new SharedId(accountId);
+      accountIds.put(accountId, shared);
+    }
+    shared.transfers++;
+    return shared.id;
+  }
+
+  /**
+   * Counts one pending transfer of {@code accountId} less, dropping its id with the last one.
+   */
+  private void unintern(String accountId) {
+    SharedId shared = accountIds.get(accountId);
+    if (shared != null && --shared.transfers == 0) {
+      accountIds.remove(accountId);
+    }
+  }
+
+  private void sync(long position) {
+    if (scheduleLog == null) {
+      return;
+    }
+    try {
+      scheduleLog.sync(position);
+    } catch (IOException e) {
+      synchronized (this) {
+        throw fail(e);
+      }
+    }
+  }
+
+  private void checkWritable() {
+    if (failure != null) {
+      throw new UncheckedIOException("Schedule log is not writable", failure);
+    }
+  }
+
+  private UncheckedIOException fail(IOException e) {
+    if (failure == null) {
+      log.error("Schedule log failed, transfers can no longer be scheduled or released", e);
+      failure = e;
+    }
+    return new UncheckedIOException("Schedule log is not writable", e);
+  }
+
+  private static final class SharedId {
+
+    final String id;
+
+    int transfers;
+
+    SharedId(String id) {
+      this.id = id;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes every account balance to a stream, iterating the repository in place instead of copying it.
+ *
+ * A consistent export reads a consistent cut of the in-memory repository (see
+ * {@link AccountsRepositoryInMemory#forEachAtConsistentCut}); transfers keep running, but snapshots wait
+ * until the export is written, so a slow client delays them.
+ */
+@Slf4j
+@Service
+public class AccountExportService {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format of(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final AccountsRepository accountsRepository;
+
+    @Autowired
+    public AccountExportService(AccountsService accountsService) {
+        this.accountsRepository = accountsService.getAccountsRepository();
+    }
+
+    public boolean supportsConsistentExport() {
+        return accountsRepository instanceof AccountsRepositoryInMemory;
+    }
+
+    /**
+     * @throws IllegalStateException when {@code consistent} is asked of a repository without consistent cuts
+     */
+    public void export(Format format, boolean consistent, OutputStream out) throws IOException {
+        if (consistent && !supportsConsistentExport()) {
+            throw new IllegalStateException("Consistent export needs the in-memory repository");
+        }
+        long started = System.nanoTime();
+        BalanceExportWriter writer = new BalanceExportWriter(format, out);
+        try {
+            if (consistent) {
+                ((AccountsRepositoryInMemory) accountsRepository).forEachAtConsistentCut(writer);
+            } else {
+                accountsRepository.forEachAccount(writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} accounts as {} in {} ms", writer.count(), format,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+}
@@ -0,0 +1,167 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates accounts from a stream of newline delimited JSON, one {@code {"accountId":..,"balance":..}} per
+ * line. The request thread parses the stream value by value and hands batches to a fixed pool of import
+ * threads; at most two batches per thread are in flight, so memory does not grow with the stream. The
+ * journal is awaited once at the end instead of once per account.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+
+    private static final int DUPLICATE_SAMPLE = 100;
+
+    private final AccountsService accountsService;
+
+    private final ObjectReader accountReader;
+
+    private final ExecutorService importers;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    @Autowired
+    public AccountImportService(AccountsService accountsService, ObjectMapper objectMapper,
+                                @Value("${accounts.import.threads:0}") int threads,
+                                @Value("${accounts.import.batch-size:1024}") int batchSize) {
+        this.accountsService = accountsService;
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+        AtomicInteger created = new AtomicInteger();
+        this.importers = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "account-import-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ImportSummary importAccounts(InputStream ndjson) throws IOException, InterruptedException {
+        Semaphore inFlight = new Semaphore(2 * threads);
+        LongAdder imported = new LongAdder();
+        LongAdder duplicates = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        List<String> duplicateAccountIds = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long invalid = 0;
+        String error = null;
+
+        try (JsonParser parser = accountReader.getFactory().createParser(ndjson);
+             MappingIterator<Account> accounts = accountReader.readValues(parser)) {
+            List<Account> batch = new ArrayList<>(batchSize);
+            while (failure.get() == null) {
+                Account account;
+                try {
+                    if (!accounts.hasNextValue()) {
+                        break;
+                    }
+                    account = accounts.nextValue();
+                } catch (JsonParseException e) {
+                    // the parser cannot find the next line after malformed JSON
+                    error = "Malformed JSON at line " + e.getLocation().getLineNr() + ": " + e.getOriginalMessage();
+                    break;
+                } catch (JsonMappingException e) {
+                    invalid++;
+                    continue;
+                }
+                if (!isValid(account)) {
+                    invalid++;
+                    continue;
+                }
+                batch.add(account);
+                if (batch.size() == batchSize) {
+                    submit(batch, inFlight, imported, duplicates, rejected, duplicateAccountIds, failure);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && failure.get() == null) {
+                submit(batch, inFlight, imported, duplicates, rejected, duplicateAccountIds, failure);
+            }
+        } finally {
+            // every permit back means every batch is done
+            inFlight.acquire(2 * threads);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        this.accountsService.getJournal().awaitDurable();
+        return new ImportSummary(imported.sum(), duplicates.sum(), invalid + rejected.sum(),
+                new ArrayList<>(duplicateAccountIds), error);
+    }
+
+    private void submit(List<Account> batch, Semaphore inFlight, LongAdder imported, LongAdder duplicates,
+                        LongAdder rejected, List<String> duplicateAccountIds,
+                        AtomicReference<RuntimeException> failure)
+            throws InterruptedException {
+        inFlight.acquire();
+        importers.execute(() -> {
+            try {
+                for (Account account : batch) {
+                    try {
+                        this.accountsService.getAccountsRepository().createAccount(account);
+                        imported.increment();
+                    } catch (DuplicateAccountIdException e) {
+                        duplicates.increment();
+                        synchronized (duplicateAccountIds) {
+                            if (duplicateAccountIds.size() < DUPLICATE_SAMPLE) {
+                                duplicateAccountIds.add(account.getAccountId());
+                            }
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // an id the repository cannot store counts as invalid, like one without a balance
+                        rejected.increment();
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static boolean isValid(Account account) {
+        BigDecimal balance = account.getBalance();
+        return account.getAccountId() != null && !account.getAccountId().isEmpty()
+                && account.getAccountId().length() <= Account.MAX_ID_LENGTH && balance != null && balance.signum() >= 0;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        importers.shutdown();
+        if (!importers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Account import threads did not finish within 10 seconds");
+        }
+    }
+}
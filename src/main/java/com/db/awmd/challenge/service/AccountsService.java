@@ -1,27 +1,83 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class AccountsService {
 
     @Getter
     private final AccountsRepository accountsRepository;
 
+    @Getter
+    private final TransferJournal journal;
+
+    @Getter
+    private final TransferMetrics metrics;
+
+    @Getter
+    private final TransactionHistory history;
+
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository) {
+    public AccountsService(AccountsRepository accountsRepository, TransferJournal journal, TransferMetrics metrics,
+                           TransactionHistory history) {
         this.accountsRepository = accountsRepository;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.history = history;
     }
 
     public void createAccount(Account account) {
         this.accountsRepository.createAccount(account);
+        this.journal.awaitDurable();
+    }
+
+    /**
+     * Creates the account and returns a future that completes once it is durable.
+     *
+     * @throws com.db.awmd.challenge.exception.DuplicateAccountIdException right away, like {@link #createAccount}
+     */
+    public CompletableFuture<Void> createAccountAsync(Account account) {
+        this.accountsRepository.createAccount(account);
+        return this.journal.whenDurable();
     }
 
     public Account getAccount(String accountId) {
-        return this.accountsRepository.getAccount(accountId);
+        long started = System.nanoTime();
+        Account account = this.accountsRepository.getAccount(accountId);
+        this.metrics.lookup(System.nanoTime() - started);
+        return account;
+    }
+
+    public boolean supportsConsistentReads() {
+        return this.accountsRepository.supportsConsistentReads();
+    }
+
+    public boolean supportsMultiLegTransfers() {
+        return this.accountsRepository.supportsMultiLegTransfers();
+    }
+
+    /**
+     * The accounts with balances from one point in time, see {@link AccountsRepository#readAccounts}.
+     */
+    public List<Account> getAccounts(List<String> accountIds) {
+        long started = System.nanoTime();
+        List<Account> accounts = this.accountsRepository.readAccounts(accountIds);
+        this.metrics.lookup(System.nanoTime() - started);
+        return accounts;
+    }
+
+    public TransactionPage getTransactions(String accountId, Long cursor, int limit) {
+        return this.history.page(accountId, cursor, limit);
     }
 }
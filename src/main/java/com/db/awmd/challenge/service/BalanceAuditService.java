@@ -0,0 +1,139 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AuditReport;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.BalanceTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that transfers neither create nor destroy money: at a consistent cut of the in-memory repository
+ * (see {@link AccountsRepositoryInMemory#totalsAtConsistentCut}) the sum of all balances must equal the sum
+ * the accounts were created with, and no balance may be negative.
+ *
+ * Transfers keep running during an audit. The balances are summed on a fork/join pool of
+ * {@code audit.parallelism} threads, by default half the processors, so the rest is left to transfers.
+ * Snapshots and consistent exports wait for an audit, since cuts are taken one at a time.
+ */
+@Slf4j
+@Service
+public class BalanceAuditService {
+
+    private final AccountsRepository accountsRepository;
+
+    private final long intervalSeconds;
+
+    private final ForkJoinPool pool;
+
+    private final LongAdder runs = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private volatile AuditReport lastReport;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public BalanceAuditService(AccountsService accountsService,
+                               @Value("${audit.parallelism:0}") int parallelism,
+                               @Value("${audit.interval-seconds:0}") long intervalSeconds) {
+        this.accountsRepository = accountsService.getAccountsRepository();
+        this.intervalSeconds = intervalSeconds;
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger created = new AtomicInteger();
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("balance-audit-" + created.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    public boolean supportsAudit() {
+        return accountsRepository instanceof AccountsRepositoryInMemory;
+    }
+
+    /**
+     * Audits every {@code audit.interval-seconds} from now on, if that is positive.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (intervalSeconds <= 0 || !supportsAudit() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-audit-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                audit();
+            } catch (RuntimeException e) {
+                log.error("Audit of balances failed", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * @throws IllegalStateException for a repository without consistent cuts
+     */
+    public AuditReport audit() {
+        if (!supportsAudit()) {
+            throw new IllegalStateException("Audits need the in-memory repository");
+        }
+        long started = System.nanoTime();
+        BalanceTotals totals = ((AccountsRepositoryInMemory) accountsRepository).totalsAtConsistentCut(pool);
+        AuditReport report = new AuditReport(totals.getCut(), totals.getAccounts(),
+                totals.getBalance(), totals.getOpeningBalance(),
+                totals.getNegativeAccounts(), totals.getNegativeAccountIds(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), pool.getParallelism());
+        runs.increment();
+        if (report.isPassed()) {
+            log.info("Audit of {} accounts at epoch {} passed in {} ms", report.getAccounts(), report.getCut(),
+                    report.getDurationMillis());
+        } else {
+            failures.increment();
+            log.error("Audit at epoch {} failed: total {} against {} opened with, {} negative accounts {}",
+                    report.getCut(), report.getTotalBalance(), report.getOpeningBalance(),
+                    report.getNegativeAccounts(), report.getNegativeAccountIds());
+        }
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * The report of the latest audit, or {@code null} before the first.
+     */
+    public AuditReport getLastReport() {
+        return lastReport;
+    }
+
+    public long runCount() {
+        return runs.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+}
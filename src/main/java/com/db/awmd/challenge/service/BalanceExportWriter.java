@@ -0,0 +1,186 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.repository.AccountBalanceVisitor;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats visited balances into a reused buffer and writes it out whenever it fills up. Balances are printed
+ * straight from their minor units the way {@link Money#toDecimal(long)} reads them, and plain ASCII ids are
+ * copied char by char, so an account costs no allocation. Write failures surface as
+ * {@link UncheckedIOException}, since the visitor cannot throw.
+ */
+final class BalanceExportWriter implements AccountBalanceVisitor {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final long UNITS_PER_WHOLE = unitsPerWhole();
+
+    private static final byte[] NDJSON_ID = "{\"accountId\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NDJSON_BALANCE = "\",\"balance\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NDJSON_END = "}\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] CSV_HEADER = "accountId,balance\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final AccountExportService.Format format;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+
+    private final byte[] digits = new byte[20];
+
+    private int position;
+
+    private long count;
+
+    BalanceExportWriter(AccountExportService.Format format, OutputStream out) {
+        this.format = format;
+        this.out = out;
+        if (format == AccountExportService.Format.CSV) {
+            put(CSV_HEADER);
+        }
+    }
+
+    @Override
+    public void visit(String accountId, long balanceUnits) {
+        if (format == AccountExportService.Format.NDJSON) {
+            put(NDJSON_ID);
+            putId(accountId);
+            put(NDJSON_BALANCE);
+            putUnits(balanceUnits);
+            put(NDJSON_END);
+        } else {
+            putId(accountId);
+            put((byte) ',');
+            putUnits(balanceUnits);
+            put((byte) '\n');
+        }
+        count++;
+    }
+
+    long count() {
+        return count;
+    }
+
+    void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    private void putId(String accountId) {
+        int length = accountId.length();
+        if (BUFFER_BYTES - position < length) {
+            drain();
+        }
+        if (length > BUFFER_BYTES || !isPlain(accountId)) {
+            put(escaped(accountId));
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) accountId.charAt(i);
+        }
+    }
+
+    /**
+     * Whether the id is printable ASCII that neither format has to quote or escape.
+     */
+    private static boolean isPlain(String accountId) {
+        for (int i = 0; i < accountId.length(); i++) {
+            char c = accountId.charAt(i);
+            if (c < 0x20 || c >= 0x7f || c == '"' || c == '\\' || c == ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] escaped(String accountId) {
+        if (format == AccountExportService.Format.NDJSON) {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(accountId);
+        }
+        return ('"' + accountId.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void putUnits(long units) {
+        if (units < 0) {
+            put((byte) '-');
+            units = -units;
+        }
+        putDigits(units / UNITS_PER_WHOLE, 1);
+        long fraction = units % UNITS_PER_WHOLE;
+        if (fraction != 0) {
+            int scale = Money.SCALE;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                scale--;
+            }
+            put((byte) '.');
+            putDigits(fraction, scale);
+        }
+    }
+
+    /**
+     * Writes {@code value} with at least {@code minDigits} digits, padding with leading zeros.
+     */
+    private void putDigits(long value, int minDigits) {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count < minDigits) {
+            digits[count++] = '0';
+        }
+        if (BUFFER_BYTES - position < count) {
+            drain();
+        }
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    private void put(byte b) {
+        if (position == BUFFER_BYTES) {
+            drain();
+        }
+        buffer[position++] = b;
+    }
+
+    private void put(byte[] bytes) {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (position == BUFFER_BYTES) {
+                drain();
+            }
+            int length = Math.min(bytes.length - offset, BUFFER_BYTES - position);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    private void drain() {
+        try {
+            out.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position = 0;
+    }
+
+    private static long unitsPerWhole() {
+        long units = 1;
+        for (int i = 0; i < Money.SCALE; i++) {
+            units *= 10;
+        }
+        return units;
+    }
+}
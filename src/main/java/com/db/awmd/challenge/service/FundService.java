@@ -1,34 +1,192 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Applies transfers and, once they are durable, records them in the history and queues their notifications.
+ * The asynchronous variants do that last part on settler threads of their own rather than on the journal
+ * writer that completes the durability future, so a full notification queue holds up settling, never the
+ * group commits of other transfers.
+ */
+@Slf4j
 @Service
 public class FundService {
     @Getter
     private final AccountsService accountService;
 
     @Getter
-    private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
+
+    private final ExecutorService settlers;
+
+    public FundService(AccountsService accountService, NotificationDispatcher notificationDispatcher) {
+        this(accountService, notificationDispatcher, 0);
+    }
 
     @Autowired
-    public FundService(AccountsService accountService, NotificationService notificationService) {
+    public FundService(AccountsService accountService, NotificationDispatcher notificationDispatcher,
+                       @Value("${transfers.settle-threads:0}") int settleThreads) {
         this.accountService = accountService;
-        this.notificationService = notificationService;
+        this.notificationDispatcher = notificationDispatcher;
+        AtomicInteger created = new AtomicInteger();
+        this.settlers = Executors.newFixedThreadPool(
+                settleThreads > 0 ? settleThreads : Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "transfer-settler-" + created.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
 
     public boolean fundTransfer(FundTransfer fundTransfer) {
-        boolean transferStatus = this.accountService.getAccountsRepository().transferFund(fundTransfer);
-        if (transferStatus) {
-            this.getNotificationService().notifyAboutTransfer(this.accountService.getAccount(
-                    fundTransfer.getSenderAccountId()),
-                    " Account debited with " + fundTransfer.getFund());
-            this.getNotificationService().notifyAboutTransfer(this.accountService.getAccount(
-                    fundTransfer.getReceiverAccountId()),
-                    " Account Credited with " + fundTransfer.getFund());
+        long started = System.nanoTime();
+        TransferStatus outcome = TransferStatus.OK;
+        try {
+            boolean transferStatus = this.accountService.getAccountsRepository().transferFund(fundTransfer);
+            this.accountService.getJournal().awaitDurable();
+            if (transferStatus) {
+                this.accountService.getHistory().record(fundTransfer);
+                this.notificationDispatcher.submit(fundTransfer);
+            }
+            return transferStatus;
+        } catch (RuntimeException e) {
+            outcome = TransferStatus.of(e);
+            throw e;
+        } finally {
+            this.accountService.getMetrics().transfer(outcome, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Submits the transfer without waiting for it; the future completes once it is durable and its
+     * notifications are queued, or with the rejection. No thread waits for the journal in between, and a
+     * rejection known at once is answered with its shared future, without allocating.
+     */
+    public CompletableFuture<TransferOutcome> fundTransferAsync(FundTransfer fundTransfer) {
+        long started = System.nanoTime();
+        CompletableFuture<TransferOutcome> result =
+                this.accountService.getAccountsRepository().tryTransferFundAsync(fundTransfer);
+        if (result.isDone() && !result.isCompletedExceptionally() && !result.join().isOk()) {
+            this.accountService.getMetrics().transfer(result.join().getStatus(), System.nanoTime() - started);
+            return result;
+        }
+        return result
+                .thenCompose(outcome -> !outcome.isOk() ? outcome.completed()
+                        : whenDurable(() -> {
+                            this.accountService.getHistory().record(fundTransfer);
+                            this.notificationDispatcher.submit(fundTransfer);
+                            return outcome;
+                        }))
+                .whenComplete((outcome, failure) -> this.accountService.getMetrics().transfer(
+                        failure == null ? outcome.getStatus() : TransferStatus.of(
+                                failure instanceof CompletionException ? failure.getCause() : failure),
+                        System.nanoTime() - started));
+    }
+
+    /**
+     * Applies every leg of the transfer or none of them, see {@link
+     * com.db.awmd.challenge.repository.AccountsRepository#tryTransferMultiLeg}. Once it is durable each leg is
+     * recorded in the history like a single transfer, and the notifications of all legs are queued as one.
+     */
+    public TransferOutcome fundMultiLegTransfer(MultiLegTransfer multiLegTransfer) {
+        long started = System.nanoTime();
+        TransferOutcome outcome = this.accountService.getAccountsRepository().tryTransferMultiLeg(multiLegTransfer);
+        if (outcome.isOk()) {
+            this.accountService.getJournal().awaitDurable();
+            settle(multiLegTransfer);
+        }
+        this.accountService.getMetrics().transfer(outcome.getStatus(), System.nanoTime() - started);
+        return outcome;
+    }
+
+    /**
+     * Same as {@link #fundMultiLegTransfer}, but completes the future once the transfer is durable instead of
+     * waiting for the journal.
+     */
+    public CompletableFuture<TransferOutcome> fundMultiLegTransferAsync(MultiLegTransfer multiLegTransfer) {
+        long started = System.nanoTime();
+        TransferOutcome outcome = this.accountService.getAccountsRepository().tryTransferMultiLeg(multiLegTransfer);
+        if (!outcome.isOk()) {
+            this.accountService.getMetrics().transfer(outcome.getStatus(), System.nanoTime() - started);
+            return outcome.completed();
+        }
+        return whenDurable(() -> {
+            settle(multiLegTransfer);
+            return outcome;
+        }).whenComplete((settled, failure) -> this.accountService.getMetrics().transfer(
+                failure == null ? settled.getStatus() : TransferStatus.of(
+                        failure instanceof CompletionException ? failure.getCause() : failure),
+                System.nanoTime() - started));
+    }
+
+    private void settle(MultiLegTransfer multiLegTransfer) {
+        for (FundTransfer leg : multiLegTransfer.getFundTransfers()) {
+            this.accountService.getHistory().record(leg);
+        }
+        this.notificationDispatcher.submit(multiLegTransfer);
+    }
+
+    public List<TransferStatus> fundTransfers(List<FundTransfer> fundTransfers) {
+        List<TransferStatus> statuses = this.accountService.getAccountsRepository().transferFunds(fundTransfers);
+        this.accountService.getJournal().awaitDurable();
+        settle(fundTransfers, statuses);
+        return statuses;
+    }
+
+    /**
+     * Same as {@link #fundTransfers}, but completes the future once the batch is durable instead of waiting
+     * for the journal.
+     */
+    public CompletableFuture<List<TransferStatus>> fundTransfersAsync(List<FundTransfer> fundTransfers) {
+        List<TransferStatus> statuses = this.accountService.getAccountsRepository().transferFunds(fundTransfers);
+        return whenDurable(() -> {
+            settle(fundTransfers, statuses);
+            return statuses;
+        });
+    }
+
+    /**
+     * Runs {@code settle} once what was applied so far is durable: right away on this thread when it already
+     * is, otherwise on a settler thread, as the journal writer completes the future.
+     */
+    private <T> CompletableFuture<T> whenDurable(Supplier<T> settle) {
+        CompletableFuture<Void> durable = this.accountService.getJournal().whenDurable();
+        return durable.isDone() ? durable.thenApply(ignored -> settle.get())
+                : durable.thenApplyAsync(ignored -> settle.get(), this.settlers);
+    }
+
+    private void settle(List<FundTransfer> fundTransfers, List<TransferStatus> statuses) {
+        for (int i = 0; i < statuses.size(); i++) {
+            this.accountService.getMetrics().batchItem(statuses.get(i));
+            if (statuses.get(i) == TransferStatus.OK) {
+                this.accountService.getHistory().record(fundTransfers.get(i));
+                this.notificationDispatcher.submit(fundTransfers.get(i));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        this.settlers.shutdown();
+        if (!this.settlers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Transfer settlers did not finish within 10 seconds");
         }
-        return transferStatus;
     }
 }
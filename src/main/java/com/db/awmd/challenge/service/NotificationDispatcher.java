@@ -0,0 +1,261 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends transfer notifications off the request thread. Transfers are queued in a bounded queue and
+ * dedicated dispatcher threads take them in batches, look up both accounts and call the
+ * {@link NotificationService} for each, as {@link FundService} used to do inline.
+ *
+ * What happens when the queue is full is configurable, see {@link Overflow}. Notifications are delivered
+ * in queue order per dispatcher thread; spilled ones are delivered once the queue has room again, after
+ * the ones queued before them.
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    public enum Overflow {
+        /**
+         * The transfer waits for room in the queue.
+         */
+        BLOCK,
+        /**
+         * The oldest queued notification is discarded to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * The notification is appended to a spill file and queued again later.
+         */
+        SPILL
+    }
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final long CLOSE_MILLIS = 5000;
+
+    private final AccountsService accountsService;
+
+    private final NotificationService notificationService;
+
+    private final BlockingQueue<PendingNotification> queue;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final Overflow overflow;
+
+    private final NotificationSpill spill;
+
+    private final Thread[] dispatchers;
+
+    private volatile boolean running = true;
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    private final LatencyHistogram deliveryLag = new LatencyHistogram();
+
+    @Autowired
+    public NotificationDispatcher(@Value("${notifications.queue-capacity:65536}") int capacity,
+                                  @Value("${notifications.dispatcher-threads:1}") int threads,
+                                  @Value("${notifications.batch-size:256}") int batchSize,
+                                  @Value("${notifications.overflow:block}") String overflow,
+                                  @Value("${notifications.spill-path:notifications.spill}") String spillPath,
+                                  AccountsService accountsService,
+                                  NotificationService notificationService) {
+        this.accountsService = accountsService;
+        this.notificationService = notificationService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflow = Overflow.valueOf(overflow.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.spill = this.overflow == Overflow.SPILL ? new NotificationSpill(Paths.get(spillPath)) : null;
+        this.dispatchers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            dispatchers[i] = new Thread(this::dispatch, "notification-dispatcher-" + i);
+            dispatchers[i].setDaemon(true);
+            dispatchers[i].start();
+        }
+    }
+
+    /**
+     * Queues the debit and credit notifications of a completed transfer.
+     */
+    public void submit(FundTransfer fundTransfer) {
+        enqueue(new PendingNotification(fundTransfer, System.nanoTime()));
+    }
+
+    /**
+     * Queues the notifications of every leg of a completed multi-leg transfer as one entry: the sender is
+     * notified once of the total, each receiver of its leg.
+     */
+    public void submit(MultiLegTransfer multiLegTransfer) {
+        enqueue(new PendingNotification(multiLegTransfer, System.nanoTime()));
+    }
+
+    private void enqueue(PendingNotification notification) {
+        if (queue.offer(notification)) {
+            return;
+        }
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(notification);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(notification)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                break;
+            case SPILL:
+                try {
+                    spill.write(notification);
+                    spilled.increment();
+                } catch (IOException e) {
+                    log.error("Could not spill notification of {}", notification, e);
+                    dropped.increment();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown overflow " + overflow);
+        }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long deliveredCount() {
+        return delivered.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long spilledCount() {
+        return spilled.sum();
+    }
+
+    /**
+     * Time from submitting a transfer's notifications to having delivered both.
+     */
+    public LatencyHistogram getDeliveryLag() {
+        return deliveryLag;
+    }
+
+    /**
+     * Stops taking new batches once the queue is drained, or after a few seconds.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + CLOSE_MILLIS;
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("{} notifications were not delivered before shutdown", queue.size());
+        }
+    }
+
+    private void dispatch() {
+        List<PendingNotification> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingNotification first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                // spilled notifications go out once the queue is no more than half full
+                if (spill != null && queue.size() <= capacity / 2) {
+                    takeSpilled(batch);
+                }
+                deliver(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void takeSpilled(List<PendingNotification> batch) {
+        try {
+            spill.take(batch, batchSize);
+        } catch (IOException e) {
+            log.error("Could not read spilled notifications", e);
+        }
+    }
+
+    private void deliver(List<PendingNotification> batch) {
+        for (PendingNotification notification : batch) {
+            if (notification.getMultiLegTransfer() != null) {
+                deliverMultiLeg(notification.getMultiLegTransfer());
+            } else {
+                FundTransfer fundTransfer = notification.getFundTransfer();
+                try {
+                    notifyAccount(fundTransfer.getSenderAccountId(), " Account debited with " + fundTransfer.getFund());
+                    notifyAccount(fundTransfer.getReceiverAccountId(), " Account Credited with " + fundTransfer.getFund());
+                } catch (RuntimeException e) {
+                    log.warn("Notification of {} failed", fundTransfer, e);
+                }
+                delivered.increment();
+            }
+            deliveryLag.recordNanos(System.nanoTime() - notification.getSubmittedNanos());
+        }
+    }
+
+    /**
+     * Counts as one delivered notification per leg, as if the legs had been single transfers.
+     */
+    private void deliverMultiLeg(MultiLegTransfer multiLegTransfer) {
+        try {
+            notifyAccount(multiLegTransfer.getSenderAccountId(),
+                    " Account debited with " + multiLegTransfer.getTotalFund());
+            for (FundTransfer leg : multiLegTransfer.getFundTransfers()) {
+                notifyAccount(leg.getReceiverAccountId(), " Account Credited with " + leg.getFund());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Notification of {} failed", multiLegTransfer, e);
+        }
+        delivered.add(multiLegTransfer.getFundTransfers().size());
+    }
+
+    private void notifyAccount(String accountId, String transferDescription) {
+        Account account = this.accountsService.getAccount(accountId);
+        if (account != null) {
+            this.notificationService.notifyAboutTransfer(account, transferDescription);
+        }
+    }
+}
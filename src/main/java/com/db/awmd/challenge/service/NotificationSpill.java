@@ -0,0 +1,156 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifications that did not fit in the {@link NotificationDispatcher} queue, one tab separated line each:
+ * sender, receiver, fund, wall clock submit time. A multi-leg transfer is one line as well: sender, wall clock
+ * submit time, number of legs, then receiver and fund of each leg. A file left over from an earlier run is
+ * delivered as well.
+ */
+@Slf4j
+final class NotificationSpill {
+
+    private final Path path;
+
+    private BufferedWriter writer;
+
+    /**
+     * Bytes of the file already taken; the file is only emptied once all of it is.
+     */
+    private long readOffset;
+
+    private boolean pending;
+
+    NotificationSpill(Path path) {
+        this.path = path;
+        this.pending = Files.exists(path);
+    }
+
+    synchronized void write(PendingNotification notification) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        if (notification.getMultiLegTransfer() != null) {
+            writeMultiLeg(notification.getMultiLegTransfer(), submittedMillis(notification.getSubmittedNanos()));
+        } else {
+            FundTransfer fundTransfer = notification.getFundTransfer();
+            writer.write(fundTransfer.getSenderAccountId() + '\t' + fundTransfer.getReceiverAccountId() + '\t'
+                    + fundTransfer.getFund().toPlainString() + '\t' + submittedMillis(notification.getSubmittedNanos()));
+        }
+        // not newLine(), whose separator varies: take() counts one byte per line end
+        writer.write('\n');
+        writer.flush();
+        pending = true;
+    }
+
+    /**
+     * Moves up to {@code max} spilled notifications to {@code into}, continuing where the previous call stopped,
+     * and empties the file once all of it has been taken. A line that cannot be parsed is skipped.
+     */
+    synchronized void take(List<PendingNotification> into, int max) throws IOException {
+        if (!pending) {
+            return;
+        }
+        int taken = 0;
+        boolean exhausted = true;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(readOffset)))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                readOffset += line.size() + 1;
+                PendingNotification notification = parse(line.toString(StandardCharsets.UTF_8.name()));
+                line.reset();
+                if (notification != null) {
+                    into.add(notification);
+                    if (++taken == max) {
+                        exhausted = false;
+                        break;
+                    }
+                }
+            }
+            // whatever is left without a newline is a line cut short by a crash
+        }
+        if (exhausted) {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            Files.delete(path);
+            readOffset = 0;
+            pending = false;
+        }
+    }
+
+    /**
+     * The notification on a spilled line, or {@code null} for a line cut short by a crash or otherwise
+     * unreadable.
+     */
+    private PendingNotification parse(String line) {
+        String[] fields = line.split("\t");
+        try {
+            if (fields.length == 4) {
+                return new PendingNotification(new FundTransfer(fields[0], fields[1], new BigDecimal(fields[2])),
+                        submittedNanos(Long.parseLong(fields[3])));
+            }
+            if (fields.length >= 5 && fields.length == 3 + 2 * Integer.parseInt(fields[2])) {
+                return new PendingNotification(readMultiLeg(fields), submittedNanos(Long.parseLong(fields[1])));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Skipping unreadable spilled notification in {}: {}", path, line, e);
+            return null;
+        }
+        log.warn("Skipping incomplete spilled notification in {}: {}", path, line);
+        return null;
+    }
+
+    private void writeMultiLeg(MultiLegTransfer multiLegTransfer, long submittedMillis) throws IOException {
+        writer.write(multiLegTransfer.getSenderAccountId() + '\t' + submittedMillis + '\t'
+                + multiLegTransfer.getLegs().size());
+        for (MultiLegTransfer.Leg leg : multiLegTransfer.getLegs()) {
+            writer.write('\t' + leg.getReceiverAccountId() + '\t' + leg.getFund().toPlainString());
+        }
+    }
+
+    private static MultiLegTransfer readMultiLeg(String[] fields) {
+        List<MultiLegTransfer.Leg> legs = new ArrayList<>((fields.length - 3) / 2);
+        for (int i = 3; i < fields.length; i += 2) {
+            legs.add(new MultiLegTransfer.Leg(fields[i], new BigDecimal(fields[i + 1])));
+        }
+        return new MultiLegTransfer(fields[0], legs);
+    }
+
+    // nanoTime has no meaning outside this process, so spilled notifications keep their age on the wall clock
+
+    private static long submittedMillis(long submittedNanos) {
+        return System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedNanos);
+    }
+
+    private static long submittedNanos(long submittedMillis) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - submittedMillis);
+    }
+}
@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import lombok.Data;
+
+/**
+ * A completed transfer waiting in the {@link NotificationDispatcher} queue: a single transfer, or a multi-leg
+ * transfer whose legs are all notified from this one entry.
+ */
+@Data
+class PendingNotification {
+
+    private final FundTransfer fundTransfer;
+
+    private final MultiLegTransfer multiLegTransfer;
+
+    /**
+     * {@link System#nanoTime()} at submission.
+     */
+    private final long submittedNanos;
+
+    PendingNotification(FundTransfer fundTransfer, long submittedNanos) {
+        this.fundTransfer = fundTransfer;
+        this.multiLegTransfer = null;
+        this.submittedNanos = submittedNanos;
+    }
+
+    PendingNotification(MultiLegTransfer multiLegTransfer, long submittedNanos) {
+        this.fundTransfer = null;
+        this.multiLegTransfer = multiLegTransfer;
+        this.submittedNanos = submittedNanos;
+    }
+}
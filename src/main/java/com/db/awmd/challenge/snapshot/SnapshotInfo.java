@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.snapshot;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * Where a snapshot of all balances was taken: the epoch its consistent cut closed and the journal length
+ * at that time. Journal records before that offset, and those after it with an epoch up to the cut, are
+ * already part of the snapshot.
+ */
+@Data
+public class SnapshotInfo {
+
+  private final Path path;
+
+  private final long epoch;
+
+  private final long journalOffset;
+
+  private final long accountCount;
+}
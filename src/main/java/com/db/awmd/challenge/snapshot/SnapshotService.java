@@ -0,0 +1,426 @@
+package com.db.awmd.challenge.snapshot;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountBalanceVisitor;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic snapshots of every balance, so a restart loads the newest snapshot and replays only the journal
+ * written after it instead of the whole history.
+ *
+ * A snapshot is read from a consistent cut of the in-memory repository (see
+ * {@link AccountsRepositoryInMemory#forEachAtConsistentCut}), so transfers keep running while it is
+ * written. The file is split into chunks of accounts that are loaded in parallel on startup:
+ *
+ * <pre>
+ * header: magic, version, cut epoch, journal offset
+ * chunk:  (id length, id bytes, balance units)*
+ * footer: chunk offsets, chunk count, account count, magic
+ * </pre>
+ *
+ * Id lengths are unsigned shorts. A new snapshot is read back in full before the older ones are deleted, and
+ * startup falls back to an older snapshot when the newest cannot be loaded.
+ */
+@Slf4j
+@Component
+public class SnapshotService {
+
+  private static final long MAGIC = 0x534e415053484f54L;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 8 + 4 + 8 + 8;
+
+  private static final int FOOTER_TAIL_BYTES = 4 + 8 + 8;
+
+  private static final int CHUNK_ACCOUNTS = 1 << 16;
+
+  private static final String PREFIX = "snapshot-";
+
+  private static final String SUFFIX = ".bin";
+
+  private final boolean enabled;
+
+  private final Path directory;
+
+  private final long intervalSeconds;
+
+  private final int loadThreads;
+
+  private final TransferJournal journal;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public SnapshotService(@Value("${snapshot.enabled:false}") boolean enabled,
+                         @Value("${snapshot.directory:snapshots}") String directory,
+                         @Value("${snapshot.interval-seconds:300}") long intervalSeconds,
+                         @Value("${snapshot.load-threads:0}") int loadThreads,
+                         TransferJournal journal) {
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.intervalSeconds = intervalSeconds;
+    this.loadThreads = loadThreads > 0 ? loadThreads : Runtime.getRuntime().availableProcessors();
+    this.journal = journal;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Takes a snapshot every {@code snapshot.interval-seconds} from now on.
+   */
+  public synchronized void start(AccountsRepositoryInMemory repository) {
+    if (!enabled || scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "account-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        takeSnapshot(repository);
+      } catch (IOException | RuntimeException e) {
+        log.error("Snapshot of accounts failed", e);
+      }
+    }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public synchronized SnapshotInfo takeSnapshot(AccountsRepositoryInMemory repository) throws IOException {
+    long started = System.nanoTime();
+    Files.createDirectories(directory);
+    Path temp = directory.resolve(PREFIX + "in-progress.tmp");
+    // read before the cut: every record up to here was applied in the cut's epoch or earlier
+    long journalOffset = journal.writtenBytes();
+
+    long epoch;
+    SnapshotWriter writer;
+    try (FileChannel channel = FileChannel.open(temp,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writer = new SnapshotWriter(channel, journalOffset);
+      try {
+        epoch = repository.forEachAtConsistentCut(writer::add);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      writer.finish(epoch);
+      channel.force(true);
+    }
+
+    Path target = directory.resolve(String.format("%s%019d%s", PREFIX, epoch, SUFFIX));
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    try {
+      verify(target);
+    } catch (IOException e) {
+      // the older snapshots are still there to start from
+      Files.deleteIfExists(target);
+      throw e;
+    }
+    for (Path older : snapshots()) {
+      if (!older.equals(target)) {
+        Files.deleteIfExists(older);
+      }
+    }
+    log.info("Snapshot {} of {} accounts written in {} ms", target, writer.accountCount,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    return new SnapshotInfo(target, epoch, journalOffset, writer.accountCount);
+  }
+
+  /**
+   * Creates the accounts of the newest snapshot in {@code repository}, loading its chunks in parallel. When
+   * it cannot be loaded the repository is cleared and the next older one is tried.
+   *
+   * @return the snapshot loaded, or {@code null} when snapshots are disabled or none was taken yet
+   * @throws IOException when none of the snapshots can be loaded
+   */
+  public SnapshotInfo loadLatest(AccountsRepositoryInMemory repository) throws IOException {
+    List<Path> snapshots = enabled ? snapshots() : new ArrayList<>();
+    IOException failure = null;
+    for (int i = snapshots.size() - 1; i >= 0; i--) {
+      try {
+        return load(snapshots.get(i), repository);
+      } catch (IOException e) {
+        log.error("Could not load snapshot {}", snapshots.get(i), e);
+        repository.clearAccounts();
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return null;
+  }
+
+  private SnapshotInfo load(Path snapshot, AccountsRepositoryInMemory repository) throws IOException {
+    long started = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      Layout layout = new Layout(snapshot, channel);
+      ExecutorService pool = Executors.newFixedThreadPool(loadThreads);
+      long loaded = 0;
+      try {
+        List<Future<Long>> chunks = new ArrayList<>(layout.chunkCount());
+        for (int i = 0; i < layout.chunkCount(); i++) {
+          int chunk = i;
+          chunks.add(pool.submit(() -> readChunk(layout.chunk(channel, chunk), (accountId, balanceUnits) -> {
+            Account account = new Account(accountId);
+            account.setBalanceUnits(balanceUnits);
+            repository.createAccount(account);
+          })));
+        }
+        for (Future<Long> chunk : chunks) {
+          loaded += chunk.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while loading " + snapshot, e);
+      } catch (ExecutionException e) {
+        throw new IOException("Could not load " + snapshot, e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+      layout.checkAccountCount(loaded);
+
+      repository.getEpochs().advancePast(layout.epoch);
+      log.info("Loaded {} accounts from snapshot {} in {} ms with {} threads", loaded, snapshot,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), loadThreads);
+      return new SnapshotInfo(snapshot, layout.epoch, layout.journalOffset, loaded);
+    }
+  }
+
+  /**
+   * Reads a snapshot through without loading it.
+   *
+   * @throws IOException when it could not be loaded
+   */
+  private static void verify(Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      Layout layout = new Layout(snapshot, channel);
+      long accounts = 0;
+      for (int i = 0; i < layout.chunkCount(); i++) {
+        accounts += readChunk(layout.chunk(channel, i), (accountId, balanceUnits) -> { });
+      }
+      layout.checkAccountCount(accounts);
+    } catch (RuntimeException e) {
+      throw new IOException("Could not read back " + snapshot, e);
+    }
+  }
+
+  private List<Path> snapshots() throws IOException {
+    List<Path> snapshots = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return snapshots;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      for (Path file : files) {
+        snapshots.add(file);
+      }
+    }
+    // the zero-padded epoch in the name makes name order epoch order
+    snapshots.sort(null);
+    return snapshots;
+  }
+
+  /**
+   * @return the number of accounts in the chunk
+   */
+  private static long readChunk(ByteBuffer chunk, AccountBalanceVisitor visitor) {
+    long accounts = 0;
+    while (chunk.hasRemaining()) {
+      byte[] id = new byte[chunk.getShort() & 0xFFFF];
+      chunk.get(id);
+      visitor.visit(new String(id, StandardCharsets.UTF_8), chunk.getLong());
+      accounts++;
+    }
+    return accounts;
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Snapshot ends before offset " + (position + length));
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Header and footer of a snapshot file.
+   */
+  private static final class Layout {
+
+    private final Path path;
+
+    private final long epoch;
+
+    private final long journalOffset;
+
+    private final long accountCount;
+
+    private final long[] chunkStarts;
+
+    Layout(Path path, FileChannel channel) throws IOException {
+      this.path = path;
+      long size = channel.size();
+      if (size < HEADER_BYTES + FOOTER_TAIL_BYTES) {
+        throw new IOException(path + " is incomplete");
+      }
+      ByteBuffer header = read(channel, 0, HEADER_BYTES);
+      if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException(path + " is not an account snapshot");
+      }
+      this.epoch = header.getLong();
+      this.journalOffset = header.getLong();
+
+      ByteBuffer tail = read(channel, size - FOOTER_TAIL_BYTES, FOOTER_TAIL_BYTES);
+      int chunkCount = tail.getInt();
+      this.accountCount = tail.getLong();
+      if (tail.getLong() != MAGIC || chunkCount < 0
+              || size - FOOTER_TAIL_BYTES - HEADER_BYTES < 8L * chunkCount) {
+        throw new IOException(path + " is incomplete");
+      }
+      long footerStart = size - FOOTER_TAIL_BYTES - 8L * chunkCount;
+      ByteBuffer offsets = read(channel, footerStart, 8 * chunkCount);
+      this.chunkStarts = new long[chunkCount + 1];
+      chunkStarts[chunkCount] = footerStart;
+      long previous = HEADER_BYTES;
+      for (int i = 0; i < chunkCount; i++) {
+        chunkStarts[i] = offsets.getLong();
+        if (chunkStarts[i] < previous || chunkStarts[i] > footerStart) {
+          throw new IOException(path + " has a corrupt chunk offset");
+        }
+        previous = chunkStarts[i];
+      }
+    }
+
+    int chunkCount() {
+      return chunkStarts.length - 1;
+    }
+
+    ByteBuffer chunk(FileChannel channel, int chunk) throws IOException {
+      return read(channel, chunkStarts[chunk], (int) (chunkStarts[chunk + 1] - chunkStarts[chunk]));
+    }
+
+    void checkAccountCount(long accounts) throws IOException {
+      if (accounts != accountCount) {
+        throw new IOException(path + " holds " + accounts + " accounts instead of " + accountCount);
+      }
+    }
+  }
+
+  /**
+   * Streams accounts into chunks through one reusable buffer.
+   */
+  private static final class SnapshotWriter {
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+    private final List<Long> chunkStarts = new ArrayList<>();
+
+    private long flushed;
+
+    private long accountCount;
+
+    SnapshotWriter(FileChannel channel, long journalOffset) {
+      this.channel = channel;
+      buffer.putLong(MAGIC);
+      buffer.putInt(VERSION);
+      // the epoch is only known once the cut is taken, see finish
+      buffer.putLong(0L);
+      buffer.putLong(journalOffset);
+    }
+
+    void add(String accountId, long balanceUnits) {
+      try {
+        if (accountCount % CHUNK_ACCOUNTS == 0) {
+          chunkStarts.add(flushed + buffer.position());
+        }
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > 0xFFFF) {
+          throw new IOException("Account id " + accountId.substring(0, 64) + "... is longer than "
+                  + 0xFFFF + " bytes");
+        }
+        ensureRoom(2 + id.length + 8);
+        buffer.putShort((short) id.length);
+        buffer.put(id);
+        buffer.putLong(balanceUnits);
+        accountCount++;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void finish(long epoch) throws IOException {
+      for (long chunkStart : chunkStarts) {
+        ensureRoom(8);
+        buffer.putLong(chunkStart);
+      }
+      ensureRoom(FOOTER_TAIL_BYTES);
+      buffer.putInt(chunkStarts.size());
+      buffer.putLong(accountCount);
+      buffer.putLong(MAGIC);
+      flush();
+
+      ByteBuffer epochBytes = ByteBuffer.allocate(8);
+      epochBytes.putLong(0, epoch);
+      channel.write(epochBytes, 12);
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        flushed += channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.domain.TransactionPage;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.service.AccountExportService;
+import com.db.awmd.challenge.service.AccountImportService;
 import com.db.awmd.challenge.service.AccountsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,32 +13,100 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final int MAX_PAGE = 1000;
+
+  private static final int MAX_ACCOUNTS = 1000;
+
   private final AccountsService accountsService;
 
+  private final AccountImportService accountImportService;
+
+  private final AccountExportService accountExportService;
+
+  private final RequestExecutor requestExecutor;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, AccountImportService accountImportService,
+                            AccountExportService accountExportService, RequestExecutor requestExecutor) {
     this.accountsService = accountsService;
+    this.accountImportService = accountImportService;
+    this.accountExportService = accountExportService;
+    this.requestExecutor = requestExecutor;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public DeferredResult<ResponseEntity<Object>> createAccount(@RequestBody @Valid Account account) {
     log.info("Creating account {}", account);
 
+    return this.requestExecutor.submit(() -> {
+      try {
+        return this.accountsService.createAccountAsync(account)
+                .thenApply(durable -> new ResponseEntity<>(HttpStatus.CREATED));
+      } catch (DuplicateAccountIdException daie) {
+        return CompletableFuture.completedFuture(
+                new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST));
+      } catch (IllegalArgumentException iae) {
+        // an id the repository cannot store, such as one too long for a slot of the mapped file
+        return CompletableFuture.completedFuture(
+                new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST));
+      }
+    });
+  }
+
+  /**
+   * Creates the accounts of a newline delimited JSON stream, one account per line. Duplicate and invalid
+   * lines are counted in the summary instead of failing the import; malformed JSON stops it.
+   */
+  @PostMapping(path = "/bulk", consumes = "application/x-ndjson")
+  public ResponseEntity<ImportSummary> importAccounts(InputStream ndjson) throws IOException, InterruptedException {
+    log.info("Importing accounts");
+    ImportSummary summary = this.accountImportService.importAccounts(ndjson);
+    log.info("Imported {} accounts, {} duplicates, {} invalid", summary.getImported(), summary.getDuplicates(),
+            summary.getInvalid());
+    return new ResponseEntity<>(summary, summary.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+  }
+
+  /**
+   * Streams every account balance as {@code ndjson} (one account object per line) or {@code csv}. With
+   * {@code consistent} all balances are from one point in time.
+   */
+  @GetMapping
+  public ResponseEntity<StreamingResponseBody> exportAccounts(@RequestParam(defaultValue = "ndjson") String format,
+                                                              @RequestParam(defaultValue = "false") boolean consistent) {
+    AccountExportService.Format exportFormat;
     try {
-      this.accountsService.createAccount(account);
-    } catch (DuplicateAccountIdException daie) {
-      return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+      exportFormat = AccountExportService.Format.of(format);
+    } catch (IllegalArgumentException e) {
+      return badRequest("Unknown export format " + format + ", expected ndjson or csv");
+    }
+    if (consistent && !this.accountExportService.supportsConsistentExport()) {
+      return badRequest("Consistent export needs the in-memory repository");
     }
+    log.info("Exporting accounts as {}{}", exportFormat, consistent ? " at a consistent cut" : "");
+    MediaType contentType = exportFormat == AccountExportService.Format.CSV
+            ? new MediaType("text", "csv", StandardCharsets.UTF_8) : new MediaType("application", "x-ndjson");
+    return ResponseEntity.ok().contentType(contentType)
+            .body(out -> this.accountExportService.export(exportFormat, consistent, out));
+  }
 
-    return new ResponseEntity<>(HttpStatus.CREATED);
+  private static ResponseEntity<StreamingResponseBody> badRequest(String message) {
+    return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+            .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
   }
 
   @GetMapping(path = "/{accountId}")
@@ -43,4 +115,48 @@ public class AccountsController {
     return this.accountsService.getAccount(accountId);
   }
 
+  /**
+   * Several accounts at once, {@code ids} separated by commas, with balances from one point in time: a
+   * transfer between two of them is in both balances or in neither.
+   */
+  @GetMapping(params = "ids")
+  public ResponseEntity<Object> getAccounts(@RequestParam List<String> ids) {
+    if (ids.isEmpty() || ids.size() > MAX_ACCOUNTS) {
+      return new ResponseEntity<>("ids must name between 1 and " + MAX_ACCOUNTS + " accounts",
+              HttpStatus.BAD_REQUEST);
+    }
+    if (!this.accountsService.supportsConsistentReads()) {
+      return new ResponseEntity<>("Reading several accounts consistently is not supported by the repository",
+              HttpStatus.BAD_REQUEST);
+    }
+    log.info("Retrieving {} accounts", ids.size());
+    List<Account> accounts = this.accountsService.getAccounts(ids);
+    for (int i = 0; i < accounts.size(); i++) {
+      if (accounts.get(i) == null) {
+        return new ResponseEntity<>("Account with accountId " + ids.get(i) + " does not available in system",
+                HttpStatus.NOT_FOUND);
+      }
+    }
+    return new ResponseEntity<>(accounts, HttpStatus.OK);
+  }
+
+  /**
+   * The account's debits and credits, newest first. {@code cursor} is the {@code nextCursor} of the previous
+   * page.
+   */
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+                                                @RequestParam(required = false) Long cursor,
+                                                @RequestParam(defaultValue = "50") int limit) {
+    if (limit <= 0 || limit > MAX_PAGE) {
+      return new ResponseEntity<>("limit must be between 1 and " + MAX_PAGE, HttpStatus.BAD_REQUEST);
+    }
+    if (this.accountsService.getAccount(accountId) == null) {
+      return new ResponseEntity<>("Account with accountId " + accountId + " does not available in system",
+              HttpStatus.NOT_FOUND);
+    }
+    TransactionPage page = this.accountsService.getTransactions(accountId, cursor, limit);
+    return new ResponseEntity<>(page, HttpStatus.OK);
+  }
+
 }
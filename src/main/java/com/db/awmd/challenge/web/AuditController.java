@@ -0,0 +1,46 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.AuditReport;
+import com.db.awmd.challenge.service.BalanceAuditService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/audit")
+@Slf4j
+public class AuditController {
+
+  private final BalanceAuditService balanceAuditService;
+
+  @Autowired
+  public AuditController(BalanceAuditService balanceAuditService) {
+    this.balanceAuditService = balanceAuditService;
+  }
+
+  /**
+   * Audits all balances now; a failed audit is still answered 200, with {@code passed} false.
+   */
+  @PostMapping
+  public ResponseEntity<Object> audit() {
+    if (!this.balanceAuditService.supportsAudit()) {
+      return new ResponseEntity<>("Audits need the in-memory repository", HttpStatus.BAD_REQUEST);
+    }
+    log.info("Auditing balances");
+    return new ResponseEntity<>(this.balanceAuditService.audit(), HttpStatus.OK);
+  }
+
+  @GetMapping
+  public ResponseEntity<Object> lastAudit() {
+    AuditReport report = this.balanceAuditService.getLastReport();
+    if (report == null) {
+      return new ResponseEntity<>("No audit has run yet", HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(report, HttpStatus.OK);
+  }
+}
@@ -0,0 +1,158 @@
+package com.db.awmd.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the transfers worked on at once to a limit that follows their latency, so that under overload
+ * requests are turned away right away instead of queueing for workers and locks until they time out.
+ *
+ * Completed transfers are sampled in windows of {@link #WINDOW_NANOS}. The fastest transfer of each window
+ * feeds a long-term average that stands for the latency without queueing; it follows faster windows quickly
+ * but slower ones only over about ten seconds. At the end of a window its average latency is compared with
+ * that: while it stays within {@code tolerance} times of it, the limit grows by its square root; beyond, it
+ * shrinks in proportion, by half at most. The limit only grows in windows that used at least half of it, so
+ * a quiet period does not raise it past what was ever tried. Each change is smoothed and kept between
+ * {@code min-limit} and {@code max-limit}; a {@code max-limit} of 0 turns the limiter off.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Weight of a window in the long-term latency when it is slower, so queueing during an overload only
+     * becomes the new normal after about 100 windows.
+     */
+    private static final double LONG_TERM_RISE = 0.01;
+
+    /**
+     * Weight of a window in the long-term latency when it is faster.
+     */
+    private static final double LONG_TERM_FALL = 0.2;
+
+    private final boolean enabled;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+
+    private double longTermNanos;
+
+    private long windowStart;
+
+    private long windowSamples;
+
+    private long windowNanos;
+
+    private long windowMinNanos = Long.MAX_VALUE;
+
+    private int windowMaxInFlight;
+
+    @Autowired
+    public ConcurrencyLimiter(@Value("${admission.concurrency.initial-limit:64}") int initialLimit,
+                              @Value("${admission.concurrency.min-limit:8}") int minLimit,
+                              @Value("${admission.concurrency.max-limit:1024}") int maxLimit,
+                              @Value("${admission.concurrency.tolerance:2.0}") double tolerance) {
+        this.enabled = maxLimit > 0;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1, tolerance);
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Takes a slot unless the limit is reached; every slot taken must be handed back with {@link #release}.
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos) {
+        release(latencyNanos, System.nanoTime());
+    }
+
+    public void release(long latencyNanos, long now) {
+        if (!enabled) {
+            return;
+        }
+        int released = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowSamples++;
+            windowNanos += latencyNanos;
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            windowMaxInFlight = Math.max(windowMaxInFlight, released);
+            if (now - windowStart >= WINDOW_NANOS && windowSamples >= MIN_WINDOW_SAMPLES) {
+                adjust(windowMinNanos, (double) windowNanos / windowSamples);
+                windowStart = now;
+                windowSamples = 0;
+                windowNanos = 0;
+                windowMinNanos = Long.MAX_VALUE;
+                windowMaxInFlight = 0;
+            }
+        }
+    }
+
+    private void adjust(long fastestNanos, double shortTermNanos) {
+        if (longTermNanos == 0) {
+            longTermNanos = fastestNanos;
+        } else {
+            longTermNanos += (fastestNanos - longTermNanos)
+                    * (fastestNanos > longTermNanos ? LONG_TERM_RISE : LONG_TERM_FALL);
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermNanos / shortTermNanos));
+        if (gradient == 1.0 && windowMaxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double target = estimatedLimit * gradient + (gradient == 1.0 ? Math.sqrt(estimatedLimit) : 0);
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit,
+                estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+
+    public int limit() {
+        return enabled ? limit : 0;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+}
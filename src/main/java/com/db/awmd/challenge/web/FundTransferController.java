@@ -1,46 +1,233 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.FundTransfer;
-import com.db.awmd.challenge.exception.AccountNotFoundException;
-import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.service.FundService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/v1/fund")
 @Slf4j
 public class FundTransferController {
 
+    private static final int MAX_LEGS = 10_000;
+
     private final FundService fundService;
 
+    private final IdempotencyCache idempotencyCache;
+
+    private final RequestExecutor requestExecutor;
+
+    private final TransferRateLimiter rateLimiter;
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+
     @Autowired
-    public FundTransferController(FundService fundService) {
+    public FundTransferController(FundService fundService, IdempotencyCache idempotencyCache,
+                                  RequestExecutor requestExecutor, TransferRateLimiter rateLimiter,
+                                  ConcurrencyLimiter concurrencyLimiter) {
         this.fundService = fundService;
+        this.idempotencyCache = idempotencyCache;
+        this.requestExecutor = requestExecutor;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
+    /**
+     * A request carrying an {@code Idempotency-Key} that was seen before gets the first response for that key
+     * back, without moving money or sending notifications again.
+     */
     @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> fundTransfer(@RequestBody @Valid FundTransfer fundTransfer) {
+    public DeferredResult<ResponseEntity<Object>> fundTransfer(@RequestBody @Valid FundTransfer fundTransfer,
+                                                               @RequestHeader(name = "Idempotency-Key",
+                                                                       required = false) String idempotencyKey) {
         log.info("transferring fund {}", fundTransfer);
-        try {
-            if (fundTransfer.getSenderAccountId().equalsIgnoreCase(fundTransfer.getReceiverAccountId())) {
-                return new ResponseEntity<>("Sender and Receiver can't be same", HttpStatus.NOT_ACCEPTABLE);
+        if (idempotencyKey == null) {
+            return submit(fundTransfer.getSenderAccountId(), 1, () -> transfer(fundTransfer));
+        }
+        return submit(fundTransfer.getSenderAccountId(), 1,
+                () -> this.idempotencyCache.execute(idempotencyKey, fundTransfer, () -> transfer(fundTransfer)));
+    }
+
+    private CompletableFuture<ResponseEntity<Object>> transfer(FundTransfer fundTransfer) {
+        if (fundTransfer.getSenderAccountId().equalsIgnoreCase(fundTransfer.getReceiverAccountId())) {
+            return CompletableFuture.completedFuture(
+                    new ResponseEntity<>("Sender and Receiver can't be same", HttpStatus.NOT_ACCEPTABLE));
+        }
+        return this.fundService.fundTransferAsync(fundTransfer).thenApply(outcome -> response(outcome, fundTransfer));
+    }
+
+    /**
+     * Admission control, on the container thread before the request takes a worker: a request beyond the
+     * transfer rate of its sender or of all transfers, or arriving while the {@link ConcurrencyLimiter} is
+     * full, is answered 429 with {@code Retry-After} right away; a request turned away after taking its rate
+     * tokens hands them back. The concurrency limiter times the request from here, so its latency includes
+     * waiting for a worker.
+     */
+    private DeferredResult<ResponseEntity<Object>> submit(String senderAccountId, int transfers,
+                                                          Supplier<CompletableFuture<ResponseEntity<Object>>> work) {
+        long wait = this.rateLimiter.tryAcquire(senderAccountId, transfers);
+        if (wait > 0) {
+            return answered(tooManyRequests(senderAccountId == null ? "Too many transfers, retry later"
+                    : "Too many transfers from account " + senderAccountId + ", retry later", wait));
+        }
+        if (!this.concurrencyLimiter.tryAcquire()) {
+            this.rateLimiter.release(senderAccountId, transfers);
+            return answered(tooManyRequests("Too many transfers in progress, retry later", 0));
+        }
+        long admitted = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        DeferredResult<ResponseEntity<Object>> result = this.requestExecutor.submit(() -> {
+            started.set(true);
+            CompletableFuture<ResponseEntity<Object>> response;
+            try {
+                response = work.get();
+            } catch (RuntimeException e) {
+                this.concurrencyLimiter.release(System.nanoTime() - admitted);
+                throw e;
+            }
+            return response.whenComplete(
+                    (entity, failure) -> this.concurrencyLimiter.release(System.nanoTime() - admitted));
+        });
+        if (!started.get() && result.hasResult()) {
+            // turned away by the request executor, the work never runs
+            this.concurrencyLimiter.release(System.nanoTime() - admitted);
+            this.rateLimiter.release(senderAccountId, transfers);
+        }
+        return result;
+    }
+
+    private static DeferredResult<ResponseEntity<Object>> answered(ResponseEntity<Object> response) {
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    private static ResponseEntity<Object> tooManyRequests(String message, long waitNanos) {
+        HttpHeaders headers = new HttpHeaders();
+        long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        return new ResponseEntity<>(message, headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    private static ResponseEntity<Object> response(TransferOutcome outcome, FundTransfer fundTransfer) {
+        switch (outcome.getStatus()) {
+            case OK:
+                return new ResponseEntity<>(HttpStatus.OK);
+            case NOT_FOUND:
+                return new ResponseEntity<>(outcome.describe(fundTransfer), HttpStatus.NOT_FOUND);
+            case OVERDRAFT:
+                return new ResponseEntity<>(outcome.describe(fundTransfer), HttpStatus.NOT_ACCEPTABLE);
+            default:
+                return new ResponseEntity<>(outcome.describe(fundTransfer), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Applies a settlement batch in one repository call; every item gets its own status instead of
+     * the whole request failing on the first rejected transfer.
+     *
+     * A batch takes one token per item from the global rate limit, none from its senders', and one slot of the
+     * {@link ConcurrencyLimiter}.
+     */
+    @PostMapping(path = "/transfers", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> fundTransfers(@RequestBody List<FundTransfer> fundTransfers) {
+        log.info("transferring batch of {} funds", fundTransfers.size());
+        return submit(null, Math.max(1, fundTransfers.size()), () -> this.fundService.fundTransfersAsync(fundTransfers)
+                .thenApply(statuses -> new ResponseEntity<>(statuses, HttpStatus.OK)));
+    }
+
+    /**
+     * Pays every receiver of the request from its sender, or none of them: a rejected leg or a sender that
+     * cannot afford the total rejects the whole request, answered as a single transfer would be, with the leg
+     * named when its fund is invalid. Takes one token per leg from the rate limits of the sender and of all
+     * transfers, and one slot of the {@link ConcurrencyLimiter}.
+     */
+    @PostMapping(path = "/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> fundMultiLegTransfer(
+            @RequestBody @Valid MultiLegTransfer multiLegTransfer) {
+        log.info("transferring fund from {} to {} receivers", multiLegTransfer.getSenderAccountId(),
+                multiLegTransfer.getLegs().size());
+        if (multiLegTransfer.getLegs().size() > MAX_LEGS) {
+            return answered(new ResponseEntity<>("legs must be between 1 and " + MAX_LEGS, HttpStatus.BAD_REQUEST));
+        }
+        if (!this.fundService.getAccountService().supportsMultiLegTransfers()) {
+            return answered(new ResponseEntity<>("Multi-leg transfers are not supported by the repository",
+                    HttpStatus.BAD_REQUEST));
+        }
+        for (MultiLegTransfer.Leg leg : multiLegTransfer.getLegs()) {
+            if (multiLegTransfer.getSenderAccountId().equalsIgnoreCase(leg.getReceiverAccountId())) {
+                return answered(new ResponseEntity<>("Sender and Receiver can't be same", HttpStatus.NOT_ACCEPTABLE));
+            }
+        }
+        return submit(multiLegTransfer.getSenderAccountId(), multiLegTransfer.getLegs().size(),
+                () -> this.fundService.fundMultiLegTransferAsync(multiLegTransfer)
+                        .thenApply(outcome -> outcome.isOk() ? new ResponseEntity<>(HttpStatus.OK)
+                                : rejection(outcome, multiLegTransfer)));
+    }
+
+    private ResponseEntity<Object> rejection(TransferOutcome outcome, MultiLegTransfer multiLegTransfer) {
+        int index = rejectedLeg(outcome, multiLegTransfer);
+        if (index < 0) {
+            return response(outcome, multiLegTransfer.getTotalTransfer());
+        }
+        FundTransfer leg = multiLegTransfer.getFundTransfers().get(index);
+        if (outcome.getStatus() != TransferStatus.INVALID) {
+            return response(outcome, leg);
+        }
+        // an invalid fund is described without its accounts, so name the leg it is in
+        return new ResponseEntity<>("Leg " + (index + 1) + " to " + leg.getReceiverAccountId() + ": "
+                + outcome.describe(leg), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * The index of the leg a rejection is described with, or -1 when no single leg is to blame and the whole
+     * transfer is described as one from the sender.
+     */
+    private int rejectedLeg(TransferOutcome outcome, MultiLegTransfer multiLegTransfer) {
+        List<FundTransfer> legs = multiLegTransfer.getFundTransfers();
+        for (int index = 0; index < legs.size(); index++) {
+            FundTransfer leg = legs.get(index);
+            switch (outcome) {
+                case RECEIVER_NOT_FOUND:
+                    if (this.fundService.getAccountService().getAccount(leg.getReceiverAccountId()) == null) {
+                        return index;
+                    }
+                    break;
+                case TOO_PRECISE:
+                    if (leg.getFund() != null && !leg.hasFundUnits()) {
+                        return index;
+                    }
+                    break;
+                case NOT_POSITIVE:
+                    if (leg.getFund() == null || leg.hasFundUnits() && leg.getFundUnits() <= 0) {
+                        return index;
+                    }
+                    break;
+                default:
+                    return -1;
             }
-            this.fundService.fundTransfer(fundTransfer);
-        } catch (AccountNotFoundException anfe) {
-            return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
-        } catch (OverDraftNotSuportedException onse) {
-            return new ResponseEntity<>(onse.getMessage(), HttpStatus.NOT_ACCEPTABLE);
         }
-        return new ResponseEntity<>(HttpStatus.OK);
+        return -1;
     }
 }
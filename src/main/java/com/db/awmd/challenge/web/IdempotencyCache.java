@@ -0,0 +1,199 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * First response per {@code Idempotency-Key}, so a client retrying a transfer after a timeout gets the
+ * original outcome back instead of moving the money twice. A retry that arrives while the first request is
+ * still running gets the first request's future, so it completes with it without holding a thread.
+ *
+ * Keys are spread over segments, each an insertion ordered map behind its own monitor: the oldest entry of a
+ * segment is the first to expire, and also the one evicted when the segment is full. A request that fails
+ * with an exception is not remembered, so it can be retried.
+ */
+@Component
+public class IdempotencyCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final long ttlNanos;
+
+    private final boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(@Value("${idempotency.capacity:100000}") int capacity,
+                            @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this.enabled = capacity > 0;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Starts {@code transfer} unless {@code key} has been seen, and returns its response or the remembered one.
+     * A key reused for a different transfer is refused.
+     */
+    public CompletableFuture<ResponseEntity<Object>> execute(
+            String key, FundTransfer fundTransfer, Supplier<CompletableFuture<ResponseEntity<Object>>> transfer) {
+        if (!enabled) {
+            return start(transfer);
+        }
+        int h = key.hashCode();
+        Segment segment = segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+        long now = System.nanoTime();
+        CachedResponse entry;
+        boolean first;
+        synchronized (segment) {
+            segment.expire(now);
+            entry = segment.get(key);
+            first = entry == null;
+            if (first) {
+                entry = new CachedResponse(fundTransfer, now);
+                segment.put(key, entry);
+            }
+        }
+
+        if (!first) {
+            hits.increment();
+            if (!sameTransfer(entry.fundTransfer, fundTransfer)) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(
+                        "Idempotency-Key " + key + " was already used for another transfer",
+                        HttpStatus.UNPROCESSABLE_ENTITY));
+            }
+            return entry.response;
+        }
+
+        misses.increment();
+        CachedResponse started = entry;
+        start(transfer).whenComplete((response, failure) -> {
+            if (failure == null) {
+                started.response.complete(response);
+                return;
+            }
+            synchronized (segment) {
+                segment.remove(key, started);
+            }
+            started.response.completeExceptionally(failure);
+        });
+        return entry.response;
+    }
+
+    /**
+     * Same accounts and the same amount, however the amount is written: {@code 100.00} is a retry of
+     * {@code 100}.
+     */
+    private static boolean sameTransfer(FundTransfer first, FundTransfer second) {
+        if (!Objects.equals(first.getSenderAccountId(), second.getSenderAccountId())
+                || !Objects.equals(first.getReceiverAccountId(), second.getReceiverAccountId())) {
+            return false;
+        }
+        if (first.hasFundUnits() && second.hasFundUnits()) {
+            return first.getFundUnits() == second.getFundUnits();
+        }
+        return first.getFund() == null ? second.getFund() == null
+                : second.getFund() != null && first.getFund().compareTo(second.getFund()) == 0;
+    }
+
+    private static CompletableFuture<ResponseEntity<Object>> start(
+            Supplier<CompletableFuture<ResponseEntity<Object>>> transfer) {
+        try {
+            return transfer.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<ResponseEntity<Object>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Keys dropped because they expired or their segment was full.
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class CachedResponse {
+
+        private final FundTransfer fundTransfer;
+
+        private final long createdNanos;
+
+        private final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+        private CachedResponse(FundTransfer fundTransfer, long createdNanos) {
+            this.fundTransfer = fundTransfer;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, CachedResponse> {
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Drops expired keys; they are the oldest, so only the head needs looking at.
+         */
+        private void expire(long now) {
+            Iterator<CachedResponse> oldest = values().iterator();
+            while (oldest.hasNext() && now - oldest.next().createdNanos > ttlNanos) {
+                oldest.remove();
+                evictions.increment();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictions.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.db.awmd.challenge.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work of a request off the servlet container's threads, so a request waiting for a lock, a shard
+ * or the journal holds no thread at all: the handler returns a {@link DeferredResult}, a worker starts the
+ * work, and whichever thread completes its future writes the response.
+ *
+ * At most {@code requests.max-in-flight} requests are worked on at once; beyond that a request is answered
+ * 503 right away instead of queueing. A request still running after {@code requests.timeout-ms} is answered
+ * 503 as well, but its work is not cancelled, so a transfer may still be applied; clients retry with the same
+ * {@code Idempotency-Key} to learn the outcome.
+ *
+ * With {@code requests.async} off the work runs and is waited for on the container thread, as it was before
+ * the endpoints were asynchronous.
+ */
+@Slf4j
+@Component
+public class RequestExecutor {
+
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    private final boolean async;
+
+    private final long timeoutMillis;
+
+    private final int maxInFlight;
+
+    private final Semaphore inFlight;
+
+    private final ExecutorService workers;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    @Autowired
+    public RequestExecutor(@Value("${requests.async:true}") boolean async,
+                           @Value("${requests.threads:0}") int threads,
+                           @Value("${requests.max-in-flight:10000}") int maxInFlight,
+                           @Value("${requests.timeout-ms:10000}") long timeoutMillis) {
+        this.async = async;
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        int workerThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger created = new AtomicInteger();
+        this.workers = async ? Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "request-worker-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Starts {@code work} and returns the result the handler hands back to Spring MVC. Exceptions of the work,
+     * thrown or completing its future, become the error result of the request.
+     */
+    public DeferredResult<ResponseEntity<Object>> submit(Supplier<CompletableFuture<ResponseEntity<Object>>> work) {
+        if (!async) {
+            DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+            CompletableFuture<ResponseEntity<Object>> response = call(work);
+            // waits on the container thread, like the synchronous endpoints did
+            response.handle((entity, failure) -> null).join();
+            complete(result, response);
+            return result;
+        }
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS));
+            result.setResult(new ResponseEntity<>("Too many requests in flight, retry later", headers,
+                    HttpStatus.SERVICE_UNAVAILABLE));
+            return result;
+        }
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(timeoutMillis,
+                new ResponseEntity<>("Request timed out, its outcome is unknown", HttpStatus.SERVICE_UNAVAILABLE));
+        result.onTimeout(timedOut::increment);
+        workers.execute(() -> {
+            CompletableFuture<ResponseEntity<Object>> response = call(work);
+            response.whenComplete((ignored, failure) -> inFlight.release());
+            complete(result, response);
+        });
+        return result;
+    }
+
+    /**
+     * Requests turned away because {@code requests.max-in-flight} were already running.
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long timedOutCount() {
+        return timedOut.sum();
+    }
+
+    public int inFlight() {
+        return async ? maxInFlight - inFlight.availablePermits() : 0;
+    }
+
+    private static CompletableFuture<ResponseEntity<Object>> call(
+            Supplier<CompletableFuture<ResponseEntity<Object>>> work) {
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<ResponseEntity<Object>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static void complete(DeferredResult<ResponseEntity<Object>> result,
+                                 CompletableFuture<ResponseEntity<Object>> response) {
+        response.whenComplete((entity, failure) -> {
+            if (failure == null) {
+                result.setResult(entity);
+            } else {
+                result.setErrorResult(failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Request workers did not finish within 10 seconds");
+        }
+    }
+}
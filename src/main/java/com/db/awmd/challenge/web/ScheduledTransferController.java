@@ -0,0 +1,100 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.FundService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+@RestController
+@RequestMapping("/v1/fund/scheduled")
+@Slf4j
+public class ScheduledTransferController {
+
+  private final TransferScheduler transferScheduler;
+
+  private final AccountsService accountsService;
+
+  @Autowired
+  public ScheduledTransferController(TransferScheduler transferScheduler, FundService fundService) {
+    this.transferScheduler = transferScheduler;
+    this.accountsService = fundService.getAccountService();
+  }
+
+  /**
+   * Schedules a transfer and answers 201 with its id. Both accounts must exist now; whether the sender can
+   * afford it is only known once it is due, and a rejection then is counted but reported to no one.
+   */
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> schedule(@RequestBody @Valid ScheduledTransfer scheduledTransfer) {
+    log.info("Scheduling transfer {}", scheduledTransfer);
+    FundTransfer fundTransfer = new FundTransfer(scheduledTransfer.getSender(), scheduledTransfer.getReceiver(),
+            scheduledTransfer.getFund());
+    if (fundTransfer.getSenderAccountId().equalsIgnoreCase(fundTransfer.getReceiverAccountId())) {
+      return new ResponseEntity<>("Sender and Receiver can't be same", HttpStatus.NOT_ACCEPTABLE);
+    }
+    if (!fundTransfer.hasFundUnits()) {
+      return new ResponseEntity<>(TransferOutcome.TOO_PRECISE.describe(fundTransfer), HttpStatus.BAD_REQUEST);
+    }
+    if (fundTransfer.getFundUnits() <= 0) {
+      return new ResponseEntity<>(TransferOutcome.NOT_POSITIVE.describe(fundTransfer), HttpStatus.BAD_REQUEST);
+    }
+    Instant executeAt;
+    try {
+      executeAt = Instant.parse(scheduledTransfer.getExecuteAt());
+    } catch (DateTimeParseException e) {
+      return new ResponseEntity<>("executeAt must be an ISO-8601 instant such as 2026-01-31T09:00:00Z",
+              HttpStatus.BAD_REQUEST);
+    }
+    if (this.accountsService.getAccount(fundTransfer.getSenderAccountId()) == null) {
+      return new ResponseEntity<>(TransferOutcome.SENDER_NOT_FOUND.describe(fundTransfer), HttpStatus.NOT_FOUND);
+    }
+    if (this.accountsService.getAccount(fundTransfer.getReceiverAccountId()) == null) {
+      return new ResponseEntity<>(TransferOutcome.RECEIVER_NOT_FOUND.describe(fundTransfer), HttpStatus.NOT_FOUND);
+    }
+    long id = this.transferScheduler.schedule(fundTransfer.getSenderAccountId(),
+            fundTransfer.getReceiverAccountId(), fundTransfer.getFundUnits(), executeAt.toEpochMilli(),
+            scheduledTransfer.getIntervalSeconds());
+    return new ResponseEntity<>(new ScheduledTransfer(id, scheduledTransfer.getSender(),
+            scheduledTransfer.getReceiver(), scheduledTransfer.getFund(), executeAt.toString(),
+            scheduledTransfer.getIntervalSeconds()), HttpStatus.CREATED);
+  }
+
+  /**
+   * A transfer that is still pending, with when it is due next.
+   */
+  @GetMapping(path = "/{id}")
+  public ResponseEntity<Object> getScheduled(@PathVariable long id) {
+    ScheduledTransfer scheduledTransfer = this.transferScheduler.get(id);
+    if (scheduledTransfer == null) {
+      return new ResponseEntity<>("No pending scheduled transfer with id " + id, HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(scheduledTransfer, HttpStatus.OK);
+  }
+
+  @DeleteMapping(path = "/{id}")
+  public ResponseEntity<Object> cancel(@PathVariable long id) {
+    log.info("Cancelling scheduled transfer {}", id);
+    if (!this.transferScheduler.cancel(id)) {
+      return new ResponseEntity<>("No pending scheduled transfer with id " + id, HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
+}
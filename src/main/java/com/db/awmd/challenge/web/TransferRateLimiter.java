@@ -0,0 +1,212 @@
+package com.db.awmd.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets limiting transfers per second, one for all transfers and one per sender account, each
+ * {@code rate} per second with bursts of up to {@code burst}; a rate of 0 turns its limit off.
+ *
+ * A bucket is a single long, the time at which it would be full again (the generic cell rate algorithm):
+ * taking n tokens moves that time n intervals later, which is allowed as long as it stays within
+ * {@code burst} intervals of now, so refilling needs no timer and taking is one compare-and-set.
+ *
+ * Sender buckets live in a fixed table of {@code account.buckets} slots, 8 per set of the hashed account id.
+ * An account without a slot takes the one of its set that is full the longest, which for an idle account
+ * loses nothing, as a full bucket is what a new account starts with; only when all 8 accounts of a set are
+ * busy does the new one inherit a slot that is still refilling. Two requests of a new account racing for
+ * a slot may briefly give it two.
+ */
+@Component
+public class TransferRateLimiter {
+
+    private static final int WAYS = 8;
+
+    private final long globalInterval;
+
+    private final long globalTolerance;
+
+    private final AtomicLong globalFullAt;
+
+    private final long accountInterval;
+
+    private final long accountTolerance;
+
+    private final AtomicReferenceArray<String> accountIds;
+
+    private final AtomicLongArray accountFullAt;
+
+    private final LongAdder globalRejected = new LongAdder();
+
+    private final LongAdder accountRejected = new LongAdder();
+
+    private final LongAdder busyEvictions = new LongAdder();
+
+    @Autowired
+    public TransferRateLimiter(@Value("${admission.global.rate:0}") long globalRate,
+                               @Value("${admission.global.burst:0}") long globalBurst,
+                               @Value("${admission.account.rate:0}") long accountRate,
+                               @Value("${admission.account.burst:0}") long accountBurst,
+                               @Value("${admission.account.buckets:65536}") int buckets) {
+        long now = System.nanoTime();
+        this.globalInterval = interval(globalRate);
+        this.globalTolerance = globalInterval * Math.max(1, globalBurst);
+        this.globalFullAt = new AtomicLong(now);
+        this.accountInterval = interval(accountRate);
+        this.accountTolerance = accountInterval * Math.max(1, accountBurst);
+        int slots = accountRate > 0 ? Math.max(WAYS, Integer.highestOneBit(Math.max(1, buckets - 1)) << 1) : 0;
+        this.accountIds = new AtomicReferenceArray<>(slots);
+        this.accountFullAt = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            accountFullAt.set(i, now);
+        }
+    }
+
+    private static long interval(long rate) {
+        return rate > 0 ? Math.max(1, TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    }
+
+    /**
+     * Takes {@code transfers} tokens from the sender's bucket, unless {@code senderAccountId} is
+     * {@code null}, and from the global one; more than a burst takes a whole burst.
+     *
+     * @return 0 when admitted, otherwise the nanoseconds until the tokens will be there
+     */
+    public long tryAcquire(String senderAccountId, int transfers) {
+        return tryAcquire(senderAccountId, transfers, System.nanoTime());
+    }
+
+    public long tryAcquire(String senderAccountId, int transfers, long now) {
+        int slot = -1;
+        long accountCost = Math.min(accountTolerance, accountInterval * transfers);
+        if (accountInterval > 0 && senderAccountId != null) {
+            slot = slotOf(senderAccountId, now);
+            long wait = take(accountFullAt, slot, accountCost, accountTolerance, now);
+            if (wait > 0) {
+                accountRejected.increment();
+                return wait;
+            }
+        }
+        if (globalInterval > 0) {
+            long globalCost = Math.min(globalTolerance, globalInterval * transfers);
+            long wait = take(globalFullAt, globalCost, globalTolerance, now);
+            if (wait > 0) {
+                // hand the sender's tokens back, the transfer is not going to happen
+                if (slot >= 0) {
+                    accountFullAt.addAndGet(slot, -accountCost);
+                }
+                globalRejected.increment();
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Hands back the tokens {@link #tryAcquire(String, int)} took for transfers that are not going to happen
+     * after all; a sender that has lost its slot meanwhile gets nothing back.
+     */
+    public void release(String senderAccountId, int transfers) {
+        if (accountInterval > 0 && senderAccountId != null) {
+            int slot = ownedSlotOf(senderAccountId);
+            if (slot >= 0) {
+                accountFullAt.addAndGet(slot, -Math.min(accountTolerance, accountInterval * transfers));
+            }
+        }
+        if (globalInterval > 0) {
+            globalFullAt.addAndGet(-Math.min(globalTolerance, globalInterval * transfers));
+        }
+    }
+
+    private static long take(AtomicLong fullAt, long cost, long tolerance, long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + cost;
+            long excess = next - now - tolerance;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private static long take(AtomicLongArray fullAt, int slot, long cost, long tolerance, long now) {
+        while (true) {
+            long current = fullAt.get(slot);
+            long next = (current - now > 0 ? current : now) + cost;
+            long excess = next - now - tolerance;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAt.compareAndSet(slot, current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private int ownedSlotOf(String accountId) {
+        int set = setOf(accountId);
+        for (int slot = set; slot < set + WAYS; slot++) {
+            if (accountId.equals(accountIds.get(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOf(String accountId, long now) {
+        int set = setOf(accountId);
+        while (true) {
+            int idlest = set;
+            long idlestFullIn = Long.MAX_VALUE;
+            for (int slot = set; slot < set + WAYS; slot++) {
+                String owner = accountIds.get(slot);
+                if (accountId.equals(owner)) {
+                    return slot;
+                }
+                long fullIn = owner == null ? Long.MIN_VALUE : accountFullAt.get(slot) - now;
+                if (fullIn < idlestFullIn) {
+                    idlest = slot;
+                    idlestFullIn = fullIn;
+                }
+            }
+            String evicted = accountIds.get(idlest);
+            if (accountIds.compareAndSet(idlest, evicted, accountId)) {
+                if (evicted != null && idlestFullIn > 0) {
+                    busyEvictions.increment();
+                }
+                return idlest;
+            }
+        }
+    }
+
+    private int setOf(String accountId) {
+        int h = accountId.hashCode();
+        return ((h ^ (h >>> 16)) & (accountIds.length() - 1)) & -WAYS;
+    }
+
+    public long globalRejectedCount() {
+        return globalRejected.sum();
+    }
+
+    public long accountRejectedCount() {
+        return accountRejected.sum();
+    }
+
+    /**
+     * Accounts that lost their slot while their bucket was still refilling, a sign that
+     * {@code admission.account.buckets} is too small for the senders active at once.
+     */
+    public long busyEvictionCount() {
+        return busyEvictions.sum();
+    }
+}
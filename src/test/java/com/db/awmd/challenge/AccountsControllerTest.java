@@ -11,14 +11,22 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -45,7 +53,7 @@ public class AccountsControllerTest {
 
   @Test
   public void createAccount() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
 
     Account account = accountsService.getAccount("Id-123");
@@ -55,51 +63,146 @@ public class AccountsControllerTest {
 
   @Test
   public void createDuplicateAccount() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
 
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isBadRequest());
   }
 
   @Test
   public void createAccountNoAccountId() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"balance\":1000}")).andExpect(status().isBadRequest());
   }
 
   @Test
   public void createAccountNoBalance() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"Id-123\"}")).andExpect(status().isBadRequest());
   }
 
   @Test
   public void createAccountNoBody() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON))
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isBadRequest());
   }
 
   @Test
   public void createAccountNegativeBalance() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"Id-123\",\"balance\":-1000}")).andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void createAccountBalanceMorePreciseThanCurrency() throws Exception {
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":10.001}")).andExpect(status().isBadRequest());
+  }
+
   @Test
   public void createAccountEmptyAccountId() throws Exception {
-    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountId\":\"\",\"balance\":1000}")).andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void createAccountTooLongAccountId() throws Exception {
+    char[] id = new char[Account.MAX_ID_LENGTH + 1];
+    Arrays.fill(id, 'x');
+    perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"" + new String(id) + "\",\"balance\":1000}"))
+            .andExpect(status().isBadRequest());
+  }
+
   @Test
   public void getAccount() throws Exception {
     String uniqueAccountId = "Id-" + System.currentTimeMillis();
     Account account = new Account(uniqueAccountId, new BigDecimal("123.45"));
     this.accountsService.createAccount(account);
-    this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
+    perform(get("/v1/accounts/" + uniqueAccountId))
             .andExpect(status().isOk())
             .andExpect(
                     content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  public void getAccounts() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10.5")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal(20)));
+
+    perform(get("/v1/accounts").param("ids", "Id-2,Id-1"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(
+                    "[{\"accountId\":\"Id-2\",\"balance\":20},{\"accountId\":\"Id-1\",\"balance\":10.5}]"));
+    perform(get("/v1/accounts").param("ids", "Id-1,Id-404"))
+            .andExpect(status().isNotFound())
+            .andExpect(content().string("Account with accountId Id-404 does not available in system"));
+  }
+
+  @Test
+  public void importAccounts() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(5)));
+    StringBuilder ndjson = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      ndjson.append("{\"accountId\":\"Id-").append(i).append("\",\"balance\":").append(i).append("}\n");
+    }
+    ndjson.append("{\"accountId\":\"Id-2\",\"balance\":7}\n")
+            .append("{\"accountId\":\"Id-neg\",\"balance\":-1}\n")
+            .append("{\"accountId\":\"Id-text\",\"balance\":\"ten\"}\n")
+            .append("{\"accountId\":\"Id-nobalance\"}\n");
+
+    perform(post("/v1/accounts/bulk").contentType("application/x-ndjson").content(ndjson.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2999))
+            .andExpect(jsonPath("$.duplicates").value(2))
+            .andExpect(jsonPath("$.invalid").value(3))
+            .andExpect(jsonPath("$.duplicateAccountIds", containsInAnyOrder("Id-1", "Id-2")))
+            .andExpect(jsonPath("$.error").doesNotExist());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("5");
+    assertThat(accountsService.getAccount("Id-2999").getBalance()).isEqualByComparingTo("2999");
+    assertThat(accountsService.getAccountsRepository().countAccounts()).isEqualTo(3000);
+  }
+
+  @Test
+  public void importAccountsStopsOnMalformedJson() throws Exception {
+    perform(post("/v1/accounts/bulk").contentType("application/x-ndjson")
+            .content("{\"accountId\":\"Id-1\",\"balance\":1}\n{\"accountId\":\n"))
+            .andExpect(status().isBadRequest());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  public void exportAccounts() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(1000)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("12.50")));
+    accountsService.createAccount(new Account("Id,\"3\"", new BigDecimal("0.01")));
+
+    assertThat(export("/v1/accounts?format=csv&consistent=true")).containsExactlyInAnyOrder(
+            "accountId,balance", "Id-1,1000", "Id-2,12.5", "\"Id,\"\"3\"\"\",0.01");
+    assertThat(export("/v1/accounts")).containsExactlyInAnyOrder(
+            "{\"accountId\":\"Id-1\",\"balance\":1000}",
+            "{\"accountId\":\"Id-2\",\"balance\":12.5}",
+            "{\"accountId\":\"Id,\\\"3\\\"\",\"balance\":0.01}");
+    this.mockMvc.perform(get("/v1/accounts?format=xml")).andExpect(status().isBadRequest());
+  }
+
+  private String[] export(String url) throws Exception {
+    MvcResult result = this.mockMvc.perform(get(url)).andExpect(request().asyncStarted()).andReturn();
+    // the body is written while the async request runs
+    result.getAsyncResult();
+    assertThat(result.getResponse().getStatus()).isEqualTo(200);
+    return result.getResponse().getContentAsString().split("\n");
+  }
+
+  /**
+   * Performs the request and, when its handler went asynchronous, the dispatch that writes the response.
+   */
+  private ResultActions perform(RequestBuilder request) throws Exception {
+    ResultActions actions = this.mockMvc.perform(request);
+    MvcResult result = actions.andReturn();
+    return result.getRequest().isAsyncStarted() ? this.mockMvc.perform(asyncDispatch(result)) : actions;
+  }
 }
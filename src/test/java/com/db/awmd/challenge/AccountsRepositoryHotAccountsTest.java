@@ -0,0 +1,212 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountLockTable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryHotAccountsTest {
+
+  private static final int PAYERS = 32;
+
+  private AccountsRepositoryInMemory repository;
+
+  @Before
+  public void createAccounts() {
+    repository = new AccountsRepositoryInMemory(64, new String[]{"Merchant"}, 4, 0, TransferJournal.disabled());
+    repository.createAccount(new Account("Merchant", new BigDecimal(100)));
+    for (int i = 0; i < PAYERS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @Test
+  public void concurrentCreditsAreSummedOnRead() throws Exception {
+    ExecutorService payers = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < PAYERS; i++) {
+      String payer = "Id-" + i;
+      payers.submit(() -> {
+        for (int n = 0; n < 100; n++) {
+          repository.transferFund(new FundTransfer(payer, "Merchant", BigDecimal.ONE));
+        }
+      });
+    }
+    payers.shutdown();
+    assertThat(payers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(repository.isHot("Merchant")).isTrue();
+    assertThat(repository.getAccount("Merchant").getBalance()).isEqualTo(new BigDecimal(100 + 100 * PAYERS));
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualTo(new BigDecimal(900));
+  }
+
+  @Test
+  public void debitsCheckCreditsNotYetInTheBalance() {
+    repository.transferFund(new FundTransfer("Id-0", "Merchant", new BigDecimal(500)));
+
+    // 550 only covers with the credit, and a payment to a hot account is checked the same way
+    repository.transferFund(new FundTransfer("Merchant", "Id-1", new BigDecimal(550)));
+    try {
+      repository.transferFund(new FundTransfer("Merchant", "Id-1", new BigDecimal(50)));
+      fail("Should have failed when transferring fund than available");
+    } catch (OverDraftNotSuportedException odnse) {
+      assertThat(odnse.getMessage()).isEqualTo("The Debiting Fund 50 from AccountId Merchant is Not allowed, Due to less balance");
+    }
+    assertThat(repository.transferFunds(Arrays.asList(
+            new FundTransfer("Merchant", "Id-1", new BigDecimal(49)),
+            new FundTransfer("Merchant", "Id-1", BigDecimal.ONE))))
+            .containsExactly(TransferStatus.OK, TransferStatus.OVERDRAFT);
+
+    assertThat(repository.getAccount("Merchant").getBalance()).isEqualTo(BigDecimal.ONE);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(1599));
+  }
+
+  @Test
+  public void consistentCutIncludesCredits() {
+    repository.transferFund(new FundTransfer("Id-0", "Merchant", new BigDecimal(250)));
+    Map<String, Long> first = new HashMap<>();
+    repository.forEachAtConsistentCut(first::put);
+    repository.transferFund(new FundTransfer("Id-0", "Merchant", new BigDecimal(250)));
+    Map<String, Long> second = new HashMap<>();
+    repository.forEachAtConsistentCut(second::put);
+
+    assertThat(first.get("Merchant")).isEqualTo(Money.toUnits(new BigDecimal(350)));
+    assertThat(second.get("Merchant")).isEqualTo(Money.toUnits(new BigDecimal(600)));
+    assertThat(repository.getAccount("Merchant").getBalance()).isEqualTo(new BigDecimal(600));
+  }
+
+  @Test
+  public void readsOfSeveralAccountsSeeWholeTransfers() throws Exception {
+    List<String> ids = Arrays.asList("Merchant", "Id-0", "Id-1", "Id-2");
+    long total = Money.toUnits(new BigDecimal(100 + 3 * 1000));
+    ExecutorService payers = Executors.newFixedThreadPool(4);
+    AtomicBoolean running = new AtomicBoolean(true);
+    for (int i = 0; i < 3; i++) {
+      String payer = "Id-" + i;
+      payers.submit(() -> {
+        while (running.get()) {
+          repository.transferFund(new FundTransfer(payer, "Merchant", BigDecimal.ONE));
+          repository.transferFunds(Arrays.asList(new FundTransfer("Merchant", payer, BigDecimal.ONE)));
+        }
+      });
+    }
+    // cuts settle the merchant's credits, which readers must not see half done either
+    payers.submit(() -> {
+      while (running.get()) {
+        repository.forEachAtConsistentCut((accountId, balanceUnits) -> { });
+      }
+    });
+    try {
+      for (int n = 0; n < 20_000; n++) {
+        long sum = 0;
+        for (Account account : repository.readAccounts(ids)) {
+          sum += account.getBalanceUnits();
+        }
+        assertThat(sum).isEqualTo(total);
+      }
+    } finally {
+      running.set(false);
+      payers.shutdown();
+    }
+    assertThat(payers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void readsReturnDetachedCopies() {
+    repository.getAccount("Id-0").setBalance(BigDecimal.ZERO);
+    repository.readAccounts(Arrays.asList("Id-0", "Merchant")).get(0).setBalance(BigDecimal.ZERO);
+
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(repository.readAccounts(Arrays.asList("Id-0", "Id-404"))).containsExactly(
+            new Account("Id-0", new BigDecimal(1000)), null);
+  }
+
+  @Test
+  public void accountWithWaitingCreditsBecomesHot() throws Exception {
+    // one stripe for all accounts, so concurrent credits keep waiting for the merchant's lock
+    repository = new AccountsRepositoryInMemory(1, new String[0], 4, 1, TransferJournal.disabled());
+    repository.createAccount(new Account("Merchant", new BigDecimal(100)));
+    for (int i = 0; i < PAYERS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(100_000)));
+    }
+    assertThat(repository.isHot("Merchant")).isFalse();
+
+    ExecutorService payers = Executors.newFixedThreadPool(8);
+    long deadline = System.currentTimeMillis() + 10_000;
+    AtomicLong paid = new AtomicLong();
+    for (int i = 0; i < 8; i++) {
+      String payer = "Id-" + i;
+      payers.submit(() -> {
+        for (int n = 0; n < 50_000 && !repository.isHot("Merchant") && System.currentTimeMillis() < deadline; n++) {
+          repository.transferFund(new FundTransfer(payer, "Merchant", BigDecimal.ONE));
+          paid.incrementAndGet();
+        }
+        // a few more, now past the lock
+        for (int n = 0; n < 10; n++) {
+          repository.transferFund(new FundTransfer(payer, "Merchant", BigDecimal.ONE));
+          paid.incrementAndGet();
+        }
+      });
+    }
+    payers.shutdown();
+    assertThat(payers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(repository.isHot("Merchant")).isTrue();
+    assertThat(repository.getAccount("Merchant").getBalance()).isEqualTo(new BigDecimal(100 + paid.get()));
+  }
+
+  @Test
+  public void waitsForTheSendersStripeAreNotBlamedOnTheReceiver() throws Exception {
+    AccountLockTable locks = new AccountLockTable(4);
+    // a busy sender makes the transfer wait, but says nothing about its receiver
+    assertThat(lockWhileHeld(locks, 1, 2, 1)).isFalse();
+    assertThat(lockWhileHeld(locks, 2, 1, 2)).isFalse();
+    assertThat(lockWhileHeld(locks, 1, 2, 2)).isTrue();
+    assertThat(lockWhileHeld(locks, 2, 1, 1)).isTrue();
+  }
+
+  /**
+   * Locks the sender's and the receiver's stripe while another thread holds {@code held} for a moment.
+   */
+  private static boolean lockWhileHeld(AccountLockTable locks, int senderStripe, int receiverStripe, int held)
+          throws InterruptedException {
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      locks.lock(held);
+      locked.countDown();
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        locks.unlock(held);
+      }
+    });
+    holder.start();
+    locked.await();
+    boolean receiverWaited = locks.lock(senderStripe, receiverStripe);
+    locks.unlock(senderStripe, receiverStripe);
+    holder.join();
+    return receiverWaited;
+  }
+}
@@ -0,0 +1,136 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryInMemoryTest {
+
+  // several segments of the account table, and several rebuilds of its id index
+  private static final int ACCOUNTS = 50_000;
+
+  private AccountsRepositoryInMemory repository;
+
+  @Before
+  public void createAccounts() {
+    repository = new AccountsRepositoryInMemory(64, TransferJournal.disabled());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+  }
+
+  @Test
+  public void findsEveryAccountAfterGrowing() {
+    assertThat(repository.countAccounts()).isEqualTo(ACCOUNTS);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualTo(new BigDecimal(i));
+    }
+    assertThat(repository.getAccount("Id-" + ACCOUNTS)).isNull();
+    assertThat(repository.getAccount("Id-1234x")).isNull();
+
+    Map<String, Long> visited = new HashMap<>();
+    repository.forEachAccount(visited::put);
+    assertThat(visited).hasSize(ACCOUNTS);
+    assertThat(Money.toDecimal(visited.get("Id-" + (ACCOUNTS - 1)))).isEqualTo(new BigDecimal(ACCOUNTS - 1));
+  }
+
+  @Test
+  public void rejectsDuplicatesAfterGrowing() {
+    try {
+      repository.createAccount(new Account("Id-17", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-17 already exists!");
+    }
+    assertThat(repository.getAccount("Id-17").getBalance()).isEqualTo(new BigDecimal(17));
+  }
+
+  @Test
+  public void idsOutsideAscii() {
+    repository.createAccount(new Account("Kont\u014d-1", new BigDecimal(100)));
+    repository.createAccount(new Account("Konto-1", new BigDecimal(200)));
+    repository.createAccount(new Account("Kont\u014d-12", new BigDecimal(300)));
+
+    assertThat(repository.getAccount("Kont\u014d-1").getBalance()).isEqualTo(new BigDecimal(100));
+    assertThat(repository.getAccount("Konto-1").getBalance()).isEqualTo(new BigDecimal(200));
+    assertThat(repository.getAccount("Kont\u014d-12").getBalance()).isEqualTo(new BigDecimal(300));
+    assertThat(repository.getAccount("Kont\u00f6-1")).isNull();
+
+    assertThat(repository.tryTransferFund(new FundTransfer("Kont\u014d-12", "Kont\u014d-1", new BigDecimal(50))))
+            .isEqualTo(TransferOutcome.OK);
+    assertThat(repository.getAccount("Kont\u014d-1").getBalance()).isEqualTo(new BigDecimal(150));
+
+    Map<String, Long> visited = new HashMap<>();
+    repository.forEachAccount(visited::put);
+    assertThat(visited).containsKeys("Kont\u014d-1", "Konto-1", "Kont\u014d-12");
+  }
+
+  @Test
+  public void multiLegTransferCreditsEveryReceiverOnce() {
+    // enough receivers to be credited in parallel, each paid by two legs
+    List<MultiLegTransfer.Leg> legs = new ArrayList<>();
+    for (int i = 1; i <= 10_000; i++) {
+      legs.add(new MultiLegTransfer.Leg("Id-" + i, BigDecimal.ONE));
+      legs.add(new MultiLegTransfer.Leg("Id-" + i, new BigDecimal("0.50")));
+    }
+    String sender = "Id-" + (ACCOUNTS - 1);
+
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer(sender, legs))).isEqualTo(TransferOutcome.OK);
+    assertThat(repository.getAccount(sender).getBalance()).isEqualByComparingTo(new BigDecimal(ACCOUNTS - 1 - 15_000));
+    for (int i = 1; i <= 10_000; i++) {
+      assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(new BigDecimal(i + 1.5));
+    }
+    assertThat(repository.getAccount("Id-10001").getBalance()).isEqualTo(new BigDecimal(10_001));
+  }
+
+  @Test
+  public void multiLegTransferIsRejectedAsAWhole() {
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer("Id-100", Arrays.asList(
+            new MultiLegTransfer.Leg("Id-1", new BigDecimal(60)),
+            new MultiLegTransfer.Leg("Id-2", new BigDecimal(40))))))
+            .isEqualTo(TransferOutcome.OVERDRAFT);
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer("Id-100", Arrays.asList(
+            new MultiLegTransfer.Leg("Id-1", new BigDecimal(10)),
+            new MultiLegTransfer.Leg("Id-" + ACCOUNTS, new BigDecimal(10))))))
+            .isEqualTo(TransferOutcome.RECEIVER_NOT_FOUND);
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer("Id-100", Arrays.asList(
+            new MultiLegTransfer.Leg("Id-1", new BigDecimal(10)),
+            new MultiLegTransfer.Leg("Id-2", new BigDecimal("0.001"))))))
+            .isEqualTo(TransferOutcome.TOO_PRECISE);
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer("Id-" + ACCOUNTS, Arrays.asList(
+            new MultiLegTransfer.Leg("Id-1", new BigDecimal(10))))))
+            .isEqualTo(TransferOutcome.SENDER_NOT_FOUND);
+
+    // a credit that overflows its receiver's balance leaves every account as it was
+    repository.createAccount(new Account("Id-full", Money.toDecimal(Long.MAX_VALUE - 100)));
+    try {
+      repository.tryTransferMultiLeg(new MultiLegTransfer("Id-100", Arrays.asList(
+              new MultiLegTransfer.Leg("Id-1", new BigDecimal(10)),
+              new MultiLegTransfer.Leg("Id-full", new BigDecimal(10)))));
+      fail("Overflowing credit applied");
+    } catch (ArithmeticException ex) {
+      assertThat(ex.getMessage()).isEqualTo("long overflow");
+    }
+
+    assertThat(repository.getAccount("Id-100").getBalance()).isEqualTo(new BigDecimal(100));
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(1));
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(2));
+  }
+}
@@ -0,0 +1,138 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.repository.AccountsRepositoryJdbc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryJdbcTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String url;
+
+  private AccountsRepositoryJdbc repository;
+
+  @Before
+  public void openRepository() throws Exception {
+    url = "jdbc:h2:" + folder.getRoot().getPath() + "/accounts";
+    repository = open(100);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+  }
+
+  private AccountsRepositoryJdbc open(int cacheSize) throws Exception {
+    return new AccountsRepositoryJdbc(url, 4, 2, 64, 1024, cacheSize);
+  }
+
+  @After
+  public void closeRepository() throws Exception {
+    repository.close();
+  }
+
+  @Test
+  public void transferFund() {
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal("400.50")));
+
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("99.5"));
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal("500.5"));
+  }
+
+  @Test
+  public void transferFund_OverDraftNotSupported() {
+    try {
+      repository.transferFund(new FundTransfer("Id-234", "Id-123", new BigDecimal(100)));
+      fail("Should have failed when transferring fund than available");
+    } catch (OverDraftNotSuportedException odnse) {
+      assertThat(odnse.getMessage()).isEqualTo("The Debiting Fund 100 from AccountId Id-234 is Not allowed, Due to less balance");
+    }
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(100));
+  }
+
+  @Test
+  public void tryTransferFund_unknownAccounts() {
+    assertThat(repository.tryTransferFund(new FundTransfer("Id-456", "Id-123", BigDecimal.ONE)))
+            .isEqualTo(TransferOutcome.SENDER_NOT_FOUND);
+    assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-456", BigDecimal.ONE)))
+            .isEqualTo(TransferOutcome.RECEIVER_NOT_FOUND);
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(500));
+  }
+
+  @Test
+  public void transferFunds() {
+    assertThat(repository.transferFunds(Arrays.asList(
+            new FundTransfer("Id-123", "Id-234", new BigDecimal(100)),
+            new FundTransfer("Id-234", "Id-456", new BigDecimal(100)),
+            new FundTransfer("Id-234", "Id-123", new BigDecimal(150)),
+            new FundTransfer("Id-234", "Id-123", new BigDecimal(100)))))
+            .containsExactly(TransferStatus.OK, TransferStatus.NOT_FOUND, TransferStatus.OK, TransferStatus.OVERDRAFT);
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(550));
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(50));
+  }
+
+  @Test
+  public void createAccount_failsOnDuplicateId() {
+    try {
+      repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-123 already exists!");
+    }
+  }
+
+  @Test
+  public void concurrentTransfersKeepTheTotal() {
+    int accounts = 20;
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Acc-" + i, new BigDecimal(1000)));
+    }
+    List<CompletableFuture<TransferOutcome>> outcomes = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      outcomes.add(repository.tryTransferFundAsync(
+              new FundTransfer("Acc-" + (i % accounts), "Acc-" + (i * 7 % accounts + 1) % accounts, new BigDecimal(3))));
+    }
+    outcomes.forEach(CompletableFuture::join);
+
+    AtomicLong total = new AtomicLong();
+    repository.forEachAccount((accountId, balanceUnits) -> {
+      if (accountId.startsWith("Acc-")) {
+        total.addAndGet(balanceUnits);
+        // the cache has to agree with the table
+        assertThat(repository.getAccount(accountId).getBalanceUnits()).isEqualTo(balanceUnits);
+      }
+    });
+    assertThat(total.get()).isEqualTo(new Account("x", new BigDecimal(1000 * accounts)).getBalanceUnits());
+  }
+
+  @Test
+  public void balancesSurviveReopen() throws Exception {
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(150)));
+    repository.close();
+
+    repository = open(0);
+
+    assertThat(repository.countAccounts()).isEqualTo(2);
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(350));
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(250));
+    assertThat(repository.getAccount("Id-456")).isNull();
+  }
+}
@@ -0,0 +1,121 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.service.AccountImportService;
+import com.db.awmd.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryMappedTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File accountFile;
+
+  private AccountsRepositoryMapped repository;
+
+  @Before
+  public void openRepository() throws Exception {
+    accountFile = new File(folder.getRoot(), "accounts.dat");
+    repository = new AccountsRepositoryMapped(accountFile.getPath(), 1000, 64);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+  }
+
+  @After
+  public void closeRepository() throws Exception {
+    repository.close();
+  }
+
+  @Test
+  public void transferFund() {
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal("400.50")));
+
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("99.5"));
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal("500.5"));
+  }
+
+  @Test
+  public void transferFund_OverDraftNotSupported() {
+    try {
+      repository.transferFund(new FundTransfer("Id-234", "Id-123", new BigDecimal(100)));
+      fail("Should have failed when transferring fund than available");
+    } catch (OverDraftNotSuportedException odnse) {
+      assertThat(odnse.getMessage()).isEqualTo("The Debiting Fund 100 from AccountId Id-234 is Not allowed, Due to less balance");
+    }
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(100));
+  }
+
+  @Test
+  public void transferFunds() {
+    assertThat(repository.transferFunds(Arrays.asList(
+            new FundTransfer("Id-123", "Id-234", new BigDecimal(100)),
+            new FundTransfer("Id-234", "Id-456", new BigDecimal(100)))))
+            .containsExactly(TransferStatus.OK, TransferStatus.NOT_FOUND);
+  }
+
+  @Test
+  public void createAccount_failsOnDuplicateId() {
+    try {
+      repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-123 already exists!");
+    }
+  }
+
+  @Test
+  public void importCountsIdsTooLongForASlotAsInvalid() throws Exception {
+    AccountsService accountsService = new AccountsService(repository, TransferJournal.disabled(),
+            new TransferMetrics(), TransactionHistory.disabled());
+    AccountImportService importService = new AccountImportService(accountsService, new ObjectMapper(), 1, 16);
+    String ndjson = "{\"accountId\":\"Id-345\",\"balance\":10}\n"
+            + "{\"accountId\":\"Id-0123456789012345678901234567890123456789012345678901234567890\",\"balance\":10}\n"
+            + "{\"accountId\":\"Id-456\",\"balance\":10}\n";
+    try {
+      ImportSummary summary = importService.importAccounts(
+              new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+      assertThat(summary.getImported()).isEqualTo(2);
+      assertThat(summary.getInvalid()).isEqualTo(1);
+      assertThat(summary.getError()).isNull();
+    } finally {
+      importService.close();
+    }
+  }
+
+  @Test
+  public void balancesSurviveReopen() throws Exception {
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(150)));
+    repository.close();
+
+    repository = new AccountsRepositoryMapped(accountFile.getPath(), 1000, 64);
+
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(350));
+    assertThat(repository.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(250));
+    assertThat(repository.getAccount("Id-456")).isNull();
+  }
+}
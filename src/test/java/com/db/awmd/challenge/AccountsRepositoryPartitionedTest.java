@@ -0,0 +1,155 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.repository.AccountsRepositoryPartitioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryPartitionedTest {
+
+  private static final int ACCOUNTS = 64;
+
+  private AccountsRepositoryPartitioned repository;
+
+  @Before
+  public void createAccounts() {
+    // a small inbox, so shards also run into full inboxes of each other
+    repository = new AccountsRepositoryPartitioned(4, 16);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @After
+  public void closeRepository() throws Exception {
+    repository.close();
+  }
+
+  @Test
+  public void transferFund() {
+    for (int i = 1; i < ACCOUNTS; i++) {
+      repository.transferFund(new FundTransfer("Id-0", "Id-" + i, new BigDecimal("10.5")));
+    }
+
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualTo(new BigDecimal("338.5"));
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal("1010.5"));
+    assertThat(repository.getAccount("Id-63").getBalance()).isEqualTo(new BigDecimal("1010.5"));
+  }
+
+  @Test
+  public void transferFund_OverDraftNotSupported() {
+    try {
+      repository.transferFund(new FundTransfer("Id-1", "Id-2", new BigDecimal(1000)));
+      fail("Should have failed when transferring fund than available");
+    } catch (OverDraftNotSuportedException odnse) {
+      assertThat(odnse.getMessage()).isEqualTo("The Debiting Fund 1000 from AccountId Id-1 is Not allowed, Due to less balance");
+    }
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal(1000));
+  }
+
+  @Test
+  public void creditThatWouldOverflowIsRefundedToTheSender() {
+    // receivers on every shard, so some credits cross shards and some do not
+    for (int i = 0; i < 8; i++) {
+      repository.createAccount(new Account("Full-" + i, Money.toDecimal(Long.MAX_VALUE - 100)));
+    }
+    for (int i = 0; i < 8; i++) {
+      try {
+        repository.transferFundAsync(new FundTransfer("Id-0", "Full-" + i, BigDecimal.TEN)).join();
+        fail("Should have failed when the credit overflows");
+      } catch (CompletionException e) {
+        assertThat(e.getCause()).isInstanceOf(ArithmeticException.class);
+      }
+      assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo(new BigDecimal(1000));
+      assertThat(repository.getAccount("Full-" + i).getBalanceUnits()).isEqualTo(Long.MAX_VALUE - 100);
+    }
+  }
+
+  @Test
+  public void getAccountReturnsACopy() {
+    Account account = repository.getAccount("Id-1");
+    account.setBalance(BigDecimal.ZERO);
+    repository.transferFund(new FundTransfer("Id-0", "Id-1", BigDecimal.ONE));
+
+    assertThat(account.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo(new BigDecimal(1001));
+  }
+
+  @Test
+  public void transferFundAsync_ReceiverNotFound() {
+    CompletableFuture<Boolean> result = repository.transferFundAsync(
+            new FundTransfer("Id-1", "Id-999", BigDecimal.ONE));
+    try {
+      result.join();
+      fail("Should have failed when un-available Account id");
+    } catch (CompletionException e) {
+      assertThat(e.getCause()).isInstanceOf(AccountNotFoundException.class)
+              .hasMessage("Crediting Account with accountId Id-999 does not available in system");
+    }
+  }
+
+  @Test
+  public void transferFunds_SeesEarlierCreditsOfTheBatch() {
+    // Id-1 can only pay Id-2 after receiving from Id-0
+    List<TransferStatus> statuses = repository.transferFunds(Arrays.asList(
+            new FundTransfer("Id-0", "Id-1", new BigDecimal(500)),
+            new FundTransfer("Id-1", "Id-2", new BigDecimal(1400)),
+            new FundTransfer("Id-1", "Id-2", new BigDecimal(200)),
+            new FundTransfer("Id-1", "Id-404", BigDecimal.ONE)));
+
+    assertThat(statuses).containsExactly(
+            TransferStatus.OK, TransferStatus.OK, TransferStatus.OVERDRAFT, TransferStatus.NOT_FOUND);
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(2400));
+  }
+
+  @Test
+  public void concurrentTransfersKeepTotal() throws Exception {
+    ExecutorService requests = Executors.newFixedThreadPool(8);
+    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      requests.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 2000; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = random.nextInt(ACCOUNTS);
+          CompletableFuture<Boolean> result = repository.transferFundAsync(
+                  new FundTransfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 100))));
+          synchronized (results) {
+            results.add(result);
+          }
+        }
+      });
+    }
+    requests.shutdown();
+    assertThat(requests.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    for (CompletableFuture<Boolean> result : results) {
+      result.handle((ok, overdraft) -> ok).get(10, TimeUnit.SECONDS);
+    }
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      total = total.add(repository.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * ACCOUNTS));
+  }
+}
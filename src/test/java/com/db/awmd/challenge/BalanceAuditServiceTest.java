@@ -0,0 +1,94 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AuditReport;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceAuditService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BalanceAuditServiceTest {
+
+  private static final int ACCOUNTS = 20_000;
+
+  private AccountsRepositoryInMemory repository;
+
+  private BalanceAuditService auditService;
+
+  @Before
+  public void createAccounts() {
+    repository = new AccountsRepositoryInMemory(64, new String[]{"Merchant"}, 4, 0, TransferJournal.disabled());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+    repository.createAccount(new Account("Merchant", BigDecimal.ONE));
+    auditService = new BalanceAuditService(new AccountsService(repository, TransferJournal.disabled(),
+            new TransferMetrics(), TransactionHistory.disabled()), 4, 0);
+  }
+
+  @After
+  public void stopAudits() {
+    auditService.stop();
+  }
+
+  @Test
+  public void auditsPassWhileTransfersRun() throws Exception {
+    ExecutorService payers = Executors.newFixedThreadPool(4);
+    AtomicBoolean running = new AtomicBoolean(true);
+    for (int i = 0; i < 4; i++) {
+      payers.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          String sender = "Id-" + random.nextInt(ACCOUNTS);
+          String receiver = random.nextBoolean() ? "Merchant" : "Id-" + random.nextInt(ACCOUNTS);
+          repository.tryTransferFund(new FundTransfer(sender, receiver, new BigDecimal("0.01")));
+        }
+      });
+    }
+    try {
+      for (int n = 0; n < 20; n++) {
+        // accounts created during the audit are in its cut with their opening balance, or not at all
+        repository.createAccount(new Account("New-" + n, new BigDecimal(n)));
+        AuditReport report = auditService.audit();
+        assertThat(report.isPassed()).as(report.toString()).isTrue();
+        assertThat(report.getAccounts()).isEqualTo(ACCOUNTS + 2 + n);
+        assertThat(report.getTotalBalance()).isEqualByComparingTo(new BigDecimal(100L * ACCOUNTS + 1 + n * (n + 1) / 2));
+      }
+    } finally {
+      running.set(false);
+      payers.shutdown();
+    }
+    assertThat(payers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    assertThat(auditService.runCount()).isEqualTo(20);
+    assertThat(auditService.failureCount()).isZero();
+  }
+
+  @Test
+  public void negativeBalancesFailTheAudit() {
+    // only the repository is asked, request validation would turn it away
+    repository.createAccount(new Account("Broken", new BigDecimal(-5)));
+
+    AuditReport report = auditService.audit();
+
+    assertThat(report.isPassed()).isFalse();
+    assertThat(report.getNegativeAccounts()).isEqualTo(1);
+    assertThat(report.getNegativeAccountIds()).containsExactly("Broken");
+    assertThat(auditService.getLastReport()).isSameAs(report);
+    assertThat(auditService.failureCount()).isEqualTo(1);
+  }
+}
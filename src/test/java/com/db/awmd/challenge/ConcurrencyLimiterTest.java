@@ -0,0 +1,92 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.web.ConcurrencyLimiter;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private long now = System.nanoTime();
+
+    @Test
+    public void transfersBeyondTheLimitAreTurnedAway() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 2.0);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.rejectedCount()).isEqualTo(1);
+
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void limitGrowsWhileLatencyHolds() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 4, 1000, 2.0);
+        for (int window = 0; window < 20; window++) {
+            runWindow(limiter, limiter.limit(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(limiter.limit()).isGreaterThan(32);
+    }
+
+    @Test
+    public void limitDoesNotGrowWhenItIsNotUsed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 4, 1000, 2.0);
+        for (int window = 0; window < 20; window++) {
+            runWindow(limiter, 2, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(limiter.limit()).isEqualTo(16);
+    }
+
+    @Test
+    public void limitShrinksWhenLatencyGrows() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(100, 4, 1000, 2.0);
+        for (int window = 0; window < 5; window++) {
+            runWindow(limiter, 100, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        int before = limiter.limit();
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, limiter.limit(), TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        assertThat(limiter.limit()).isLessThan(before * 2 / 3).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    public void maxLimitZeroAdmitsEverything() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 0, 2.0);
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.limit()).isZero();
+    }
+
+    /**
+     * Takes up to {@code concurrency} slots at a time and hands them back with {@code latencyNanos}, until the
+     * window has enough samples; the last ones are handed back a window later, which closes it.
+     */
+    private void runWindow(ConcurrencyLimiter limiter, int concurrency, long latencyNanos) {
+        int samples = 0;
+        while (true) {
+            int taken = 0;
+            while (taken < concurrency && limiter.tryAcquire()) {
+                taken++;
+            }
+            samples += taken;
+            if (samples >= 10) {
+                now += WINDOW;
+            }
+            for (int i = 0; i < taken; i++) {
+                limiter.release(latencyNanos, now);
+            }
+            if (samples >= 10) {
+                return;
+            }
+        }
+    }
+}
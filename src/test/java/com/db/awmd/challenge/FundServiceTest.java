@@ -2,9 +2,11 @@ package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.InvalidTransactionException;
 import com.db.awmd.challenge.exception.OverDraftNotSuportedException;
+import com.db.awmd.challenge.repository.AccountsRepository;
 import com.db.awmd.challenge.service.FundService;
 import com.db.awmd.challenge.service.NotificationService;
 import org.junit.Before;
@@ -18,6 +20,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -67,6 +72,37 @@ public class FundServiceTest {
         assertThat(fundService.getAccountService().getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(500));
     }
 
+    @Test
+    public void tryTransferFundReportsRejectionsWithoutThrowing() {
+        AccountsRepository repository = fundService.getAccountService().getAccountsRepository();
+
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-456", "Id-234", BigDecimal.TEN)))
+                .isEqualTo(TransferOutcome.SENDER_NOT_FOUND);
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-456", BigDecimal.TEN)))
+                .isEqualTo(TransferOutcome.RECEIVER_NOT_FOUND);
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-234", BigDecimal.ZERO)))
+                .isEqualTo(TransferOutcome.NOT_POSITIVE);
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal("0.001"))))
+                .isEqualTo(TransferOutcome.TOO_PRECISE);
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(600))))
+                .isEqualTo(TransferOutcome.OVERDRAFT);
+        assertThat(repository.tryTransferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(400))))
+                .isEqualTo(TransferOutcome.OK);
+
+        assertThat(fundService.getAccountService().getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(100));
+        assertThat(fundService.getAccountService().getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(500));
+    }
+
+    @Test
+    public void fundTransfer_FractionalFund() throws RuntimeException {
+        FundTransfer fundTransfer = new FundTransfer("Id-123", "Id-234");
+        fundTransfer.setFund(new BigDecimal("100.25"));
+        this.fundService.fundTransfer(fundTransfer);
+
+        assertThat(fundService.getAccountService().getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("399.75"));
+        assertThat(fundService.getAccountService().getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal("200.25"));
+    }
+
     @Test
     public void fundTransfer_ZeroFundNotSupported() throws RuntimeException {
         FundTransfer fundTransfer = new FundTransfer("Id-123", "Id-234");
@@ -136,4 +172,21 @@ public class FundServiceTest {
         }
     }
 
+    @Test
+    public void fundTransfer_ConcurrentOppositeTransfersKeepTotal() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            FundTransfer forward = new FundTransfer("Id-123", "Id-234", BigDecimal.ONE);
+            FundTransfer backward = new FundTransfer("Id-234", "Id-123", BigDecimal.ONE);
+            executor.execute(() -> this.fundService.fundTransfer(forward));
+            executor.execute(() -> this.fundService.fundTransfer(backward));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // an individual transfer may be rejected as an overdraft, but money is never created or lost
+        BigDecimal total = fundService.getAccountService().getAccount("Id-123").getBalance()
+                .add(fundService.getAccountService().getAccount("Id-234").getBalance());
+        assertThat(total).isEqualByComparingTo("600");
+    }
 }
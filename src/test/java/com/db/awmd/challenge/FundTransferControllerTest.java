@@ -1,7 +1,10 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.service.FundService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,13 +14,20 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -54,72 +64,80 @@ public class FundTransferControllerTest {
        */
     @Test
     public void fundTransferNoBody() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON))
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferBlankBody() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferEmptySenderAccountId() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"senderAccountId\":\"\",\"receiverAccountId\":\"Id-234\",\"fund\":1000}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferEmptyReceiverAccountId() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"\",\"fund\":1000}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferNoSenderAccountId() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"receiverAccountId\":\"Id-234\",\"fund\":1000}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferNoReceiverAccountId() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"senderAccountId\":\"Id-123\",\"fund\":1000}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferNoFund() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\"}"))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void fundTransferNegativefund() throws Exception {
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":-1000}"))
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void fundTransferZeroFund() throws Exception {
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":0}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Only positive fund transfer supported in system"));
+    }
+
     @Test
     public void fundTransfer_valid() throws Exception {
         String validJson = "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":400}";
 
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content(validJson))
                 .andExpect(status().isOk());
 
-        this.mockMvc.perform(get("/v1/accounts/Id-123"))
+        perform(get("/v1/accounts/Id-123"))
                 .andExpect(status().isOk())
                 .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":100}"));
 
-        this.mockMvc.perform(get("/v1/accounts/Id-234"))
+        perform(get("/v1/accounts/Id-234"))
                 .andExpect(status().isOk())
                 .andExpect(content().string("{\"accountId\":\"Id-234\",\"balance\":500}"));
     }
@@ -130,16 +148,16 @@ public class FundTransferControllerTest {
 
         String validJson = "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":600}";
 
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content(validJson))
                 .andExpect(status().isNotAcceptable());
 
         //verifying the fund is not transferred
-        this.mockMvc.perform(get("/v1/accounts/Id-123"))
+        perform(get("/v1/accounts/Id-123"))
                 .andExpect(status().isOk())
                 .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":500}"));
 
-        this.mockMvc.perform(get("/v1/accounts/Id-234"))
+        perform(get("/v1/accounts/Id-234"))
                 .andExpect(status().isOk())
                 .andExpect(content().string("{\"accountId\":\"Id-234\",\"balance\":100}"));
     }
@@ -148,7 +166,7 @@ public class FundTransferControllerTest {
     public void fundTransferWhenSenderAcNotExist() throws Exception {
         String validJson = "{\"senderAccountId\":\"Id-456\",\"receiverAccountId\":\"Id-234\",\"fund\":300}";
 
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content(validJson))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("Debiting Account with accountId Id-456 does not available in system"));
@@ -158,7 +176,7 @@ public class FundTransferControllerTest {
     public void fundTransferWhenReceiverAcNotExist() throws Exception {
         String validJson = "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-456\",\"fund\":300}";
 
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content(validJson))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("Crediting Account with accountId Id-456 does not available in system"));
@@ -168,10 +186,210 @@ public class FundTransferControllerTest {
     public void fundTransferInSameAccount() throws Exception {
         String validJson = "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-123\",\"fund\":300}";
 
-        this.mockMvc.perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content(validJson))
                 .andExpect(status().isNotAcceptable())
                 .andExpect(content().string("Sender and Receiver can't be same"));
     }
 
+    @Test
+    public void fundTransfers_reportsStatusPerItem() throws Exception {
+        String batchJson = "["
+                + "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":400},"
+                + "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":200},"
+                + "{\"senderAccountId\":\"Id-456\",\"receiverAccountId\":\"Id-234\",\"fund\":10},"
+                + "{\"senderAccountId\":\"Id-234\",\"receiverAccountId\":\"Id-234\",\"fund\":10},"
+                + "{\"senderAccountId\":\"Id-234\",\"receiverAccountId\":\"Id-123\",\"fund\":0},"
+                + "{\"senderAccountId\":\"Id-234\",\"receiverAccountId\":\"Id-123\",\"fund\":100}"
+                + "]";
+
+        perform(post("/v1/fund/transfers").contentType(MediaType.APPLICATION_JSON)
+                .content(batchJson))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"OK\",\"OVERDRAFT\",\"NOT_FOUND\",\"INVALID\",\"INVALID\",\"OK\"]"));
+
+        perform(get("/v1/accounts/Id-123"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":200}"));
+
+        perform(get("/v1/accounts/Id-234"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"accountId\":\"Id-234\",\"balance\":400}"));
+    }
+
+    @Test
+    public void fundTransfersNoBody() throws Exception {
+        perform(post("/v1/fund/transfers").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void metricsCountTransferOutcomes() throws Exception {
+        TransferMetrics metrics = fundService.getAccountService().getMetrics();
+        long ok = metrics.outcomeCount(TransferStatus.OK);
+        long overdraft = metrics.outcomeCount(TransferStatus.OVERDRAFT);
+
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":100}"))
+                .andExpect(status().isOk());
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"senderAccountId\":\"Id-234\",\"receiverAccountId\":\"Id-123\",\"fund\":1000}"))
+                .andExpect(status().isNotAcceptable());
+
+        assertThat(metrics.outcomeCount(TransferStatus.OK)).isEqualTo(ok + 1);
+        assertThat(metrics.outcomeCount(TransferStatus.OVERDRAFT)).isEqualTo(overdraft + 1);
+        perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['transfers.ok']").isNumber())
+                .andExpect(jsonPath("$['transfers.latency.p99']").isNumber())
+                .andExpect(jsonPath("$['accounts.lock.wait.count']").isNumber())
+                .andExpect(jsonPath("$['accounts.count']").value(2))
+                .andExpect(jsonPath("$['notifications.latency.p50']").isNumber());
+    }
+
+    @Test
+    public void fundTransferRetryWithIdempotencyKeyIsNotRepeated() throws Exception {
+        String key = "retry-" + System.nanoTime();
+        String validJson = "{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":300}";
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                    .header("Idempotency-Key", key).content(validJson))
+                    .andExpect(status().isOk());
+        }
+
+        perform(get("/v1/accounts/Id-123"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":200}"));
+        perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['idempotency.hits']").isNumber());
+    }
+
+    @Test
+    public void fundTransferIdempotencyKeyReusedForAnotherTransfer() throws Exception {
+        String key = "reused-" + System.nanoTime();
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", key)
+                .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":600}"))
+                .andExpect(status().isNotAcceptable());
+
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", key)
+                .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":60}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        perform(get("/v1/accounts/Id-234"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"accountId\":\"Id-234\",\"balance\":100}"));
+    }
+
+    @Test
+    public void transactionsListNewestFirst() throws Exception {
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"senderAccountId\":\"Id-123\",\"receiverAccountId\":\"Id-234\",\"fund\":40}"))
+                .andExpect(status().isOk());
+        perform(post("/v1/fund/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"senderAccountId\":\"Id-234\",\"receiverAccountId\":\"Id-123\",\"fund\":15}"))
+                .andExpect(status().isOk());
+
+        perform(get("/v1/accounts/Id-123/transactions?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions[0].amount").value(15))
+                .andExpect(jsonPath("$.transactions[0].counterpartyAccountId").value("Id-234"))
+                .andExpect(jsonPath("$.transactions[1].amount").value(-40));
+
+        perform(get("/v1/accounts/Id-456/transactions"))
+                .andExpect(status().isNotFound());
+        perform(get("/v1/accounts/Id-123/transactions?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void scheduledTransferCanBeReadAndCancelled() throws Exception {
+        MvcResult created = perform(post("/v1/fund/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"receiver\":\"Id-234\",\"fund\":25,"
+                        + "\"executeAt\":\"2100-01-01T09:00:00Z\",\"intervalSeconds\":86400}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.executeAt").value("2100-01-01T09:00:00Z"))
+                .andReturn();
+        String id = JsonPath.read(created.getResponse().getContentAsString(), "$.id").toString();
+
+        perform(get("/v1/fund/scheduled/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fund").value(25))
+                .andExpect(jsonPath("$.intervalSeconds").value(86400));
+        perform(delete("/v1/fund/scheduled/" + id))
+                .andExpect(status().isNoContent());
+        perform(delete("/v1/fund/scheduled/" + id))
+                .andExpect(status().isNotFound());
+        perform(get("/v1/fund/scheduled/" + id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void scheduledTransferIsValidatedWhenScheduled() throws Exception {
+        perform(post("/v1/fund/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"receiver\":\"Id-123\",\"fund\":25,"
+                        + "\"executeAt\":\"2100-01-01T09:00:00Z\"}"))
+                .andExpect(status().isNotAcceptable());
+        perform(post("/v1/fund/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"receiver\":\"Id-456\",\"fund\":25,"
+                        + "\"executeAt\":\"2100-01-01T09:00:00Z\"}"))
+                .andExpect(status().isNotFound());
+        perform(post("/v1/fund/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"receiver\":\"Id-234\",\"fund\":0.001,"
+                        + "\"executeAt\":\"2100-01-01T09:00:00Z\"}"))
+                .andExpect(status().isBadRequest());
+        perform(post("/v1/fund/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"receiver\":\"Id-234\",\"fund\":25,"
+                        + "\"executeAt\":\"tomorrow\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void multiLegTransferPaysEveryReceiverOrNone() throws Exception {
+        fundService.getAccountService().createAccount(new Account("Id-345", BigDecimal.ZERO));
+
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[{\"receiver\":\"Id-234\",\"fund\":300},"
+                        + "{\"receiver\":\"Id-345\",\"fund\":250}]}"))
+                .andExpect(status().isNotAcceptable());
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[{\"receiver\":\"Id-234\",\"fund\":10},"
+                        + "{\"receiver\":\"Id-456\",\"fund\":10}]}"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Crediting Account with accountId Id-456 does not available in system"));
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[{\"receiver\":\"Id-234\",\"fund\":10},"
+                        + "{\"receiver\":\"Id-345\",\"fund\":0}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Leg 2 to Id-345: Only positive fund transfer supported in system"));
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[{\"receiver\":\"Id-123\",\"fund\":10}]}"))
+                .andExpect(status().isNotAcceptable());
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[]}"))
+                .andExpect(status().isBadRequest());
+
+        perform(post("/v1/fund/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sender\":\"Id-123\",\"legs\":[{\"receiver\":\"Id-234\",\"fund\":100},"
+                        + "{\"receiver\":\"Id-345\",\"fund\":150},{\"receiver\":\"Id-234\",\"fund\":50}]}"))
+                .andExpect(status().isOk());
+        perform(get("/v1/accounts/Id-123"))
+                .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":200}"));
+        perform(get("/v1/accounts/Id-234"))
+                .andExpect(content().string("{\"accountId\":\"Id-234\",\"balance\":250}"));
+        perform(get("/v1/accounts/Id-345"))
+                .andExpect(content().string("{\"accountId\":\"Id-345\",\"balance\":150}"));
+    }
+
+    /**
+     * Performs the request and, when its handler went asynchronous, the dispatch that writes the response.
+     */
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = this.mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? this.mockMvc.perform(asyncDispatch(result)) : actions;
+    }
 }
@@ -0,0 +1,87 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.web.IdempotencyCache;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdempotencyCacheTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    public void oldestKeysAreEvictedBeyondCapacity() {
+        // 16 segments of one key each
+        IdempotencyCache cache = new IdempotencyCache(16, 3600);
+        for (int i = 0; i < 1000; i++) {
+            execute(cache, "key-" + i);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+        assertThat(cache.evictionCount()).isEqualTo(1000 - cache.size());
+
+        execute(cache, "key-999");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(1000);
+    }
+
+    @Test
+    public void expiredKeysRunAgain() {
+        IdempotencyCache cache = new IdempotencyCache(100, 0);
+        execute(cache, "key");
+        execute(cache, "key");
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void failedRequestIsNotRemembered() {
+        IdempotencyCache cache = new IdempotencyCache(100, 3600);
+        FundTransfer fundTransfer = new FundTransfer("Id-123", "Id-234", BigDecimal.TEN);
+        CompletableFuture<ResponseEntity<Object>> failed = cache.execute("key", fundTransfer, () -> {
+            throw new IllegalStateException("journal unavailable");
+        });
+        assertThat(failed.isCompletedExceptionally()).isTrue();
+        execute(cache, "key");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void retryWithTheFundWrittenDifferentlyIsTheSameTransfer() {
+        IdempotencyCache cache = new IdempotencyCache(100, 3600);
+        execute(cache, "key");
+        ResponseEntity<Object> retry = cache.execute("key",
+                new FundTransfer("Id-123", "Id-234", new BigDecimal("10.00")), () -> {
+                    executions.incrementAndGet();
+                    return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+                }).join();
+        ResponseEntity<Object> other = cache.execute("key",
+                new FundTransfer("Id-123", "Id-234", new BigDecimal("10.01")), () -> {
+                    executions.incrementAndGet();
+                    return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+                }).join();
+
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private void execute(IdempotencyCache cache, String key) {
+        ResponseEntity<Object> response = cache.execute(key, new FundTransfer("Id-123", "Id-234", BigDecimal.TEN),
+                () -> {
+                    executions.incrementAndGet();
+                    return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+                }).join();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,162 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch firstSending = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private AccountsService accountsService;
+
+    private NotificationDispatcher dispatcher;
+
+    /**
+     * Records each notification and holds the dispatcher in the first one until released.
+     */
+    private final NotificationService notificationService = (account, transferDescription) -> {
+        firstSending.countDown();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sent.add(account.getAccountId() + transferDescription);
+    };
+
+    @Before
+    public void createAccounts() {
+        TransferJournal journal = TransferJournal.disabled();
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(64, journal), journal,
+                new TransferMetrics(), TransactionHistory.disabled());
+        accountsService.createAccount(new Account("Id-123", new BigDecimal(500)));
+        accountsService.createAccount(new Account("Id-234", new BigDecimal(100)));
+    }
+
+    @After
+    public void closeDispatcher() throws InterruptedException {
+        release.countDown();
+        dispatcher.close();
+    }
+
+    @Test
+    public void deliversDebitAndCreditNotifications() throws Exception {
+        dispatcher = dispatcher(16, "block");
+        release.countDown();
+        dispatcher.submit(transfer(150));
+
+        awaitDelivered(1);
+        assertThat(sent).containsExactly("Id-123 Account debited with 150", "Id-234 Account Credited with 150");
+        assertThat(dispatcher.queueDepth()).isZero();
+    }
+
+    @Test
+    public void dropOldestKeepsNewestNotifications() throws Exception {
+        dispatcher = dispatcher(2, "drop-oldest");
+        dispatcher.submit(transfer(1));
+        firstSending.await(10, TimeUnit.SECONDS);
+        for (int fund = 2; fund <= 5; fund++) {
+            dispatcher.submit(transfer(fund));
+        }
+        assertThat(dispatcher.droppedCount()).isEqualTo(2);
+        assertThat(dispatcher.queueDepth()).isEqualTo(2);
+
+        release.countDown();
+        awaitDelivered(3);
+        assertThat(sent).containsExactly(
+                "Id-123 Account debited with 1", "Id-234 Account Credited with 1",
+                "Id-123 Account debited with 4", "Id-234 Account Credited with 4",
+                "Id-123 Account debited with 5", "Id-234 Account Credited with 5");
+    }
+
+    @Test
+    public void spillDeliversOnceQueueHasRoom() throws Exception {
+        dispatcher = dispatcher(2, "spill");
+        dispatcher.submit(transfer(1));
+        firstSending.await(10, TimeUnit.SECONDS);
+        for (int fund = 2; fund <= 5; fund++) {
+            dispatcher.submit(transfer(fund));
+        }
+        assertThat(dispatcher.spilledCount()).isEqualTo(2);
+
+        release.countDown();
+        awaitDelivered(5);
+        assertThat(sent).hasSize(10);
+        assertThat(dispatcher.droppedCount()).isZero();
+        assertThat(new File(folder.getRoot(), "notifications.spill")).doesNotExist();
+    }
+
+    @Test
+    public void leftoverSpillIsTakenInBatchesAndSkipsUnreadableLines() throws Exception {
+        File spill = new File(folder.getRoot(), "notifications.spill");
+        StringBuilder lines = new StringBuilder();
+        long submitted = System.currentTimeMillis();
+        for (int fund = 1; fund <= 5; fund++) {
+            lines.append("Id-123\tId-234\t").append(fund).append('\t').append(submitted).append('\n');
+            if (fund == 2) {
+                lines.append("Id-123\tId-234\tmuch\t").append(submitted).append('\n');
+            }
+        }
+        lines.append("Id-123\tId-2");
+        Files.write(spill.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+        release.countDown();
+
+        dispatcher = new NotificationDispatcher(4, 1, 2, "spill", spill.getPath(), accountsService,
+                notificationService);
+        awaitDelivered(5);
+        assertThat(sent).hasSize(10).contains("Id-234 Account Credited with 5");
+        assertThat(spill).doesNotExist();
+
+        // the dispatcher survived the unreadable line
+        dispatcher.submit(transfer(6));
+        awaitDelivered(6);
+        assertThat(sent).contains("Id-234 Account Credited with 6");
+    }
+
+    private NotificationDispatcher dispatcher(int capacity, String overflow) {
+        return new NotificationDispatcher(capacity, 1, 256, overflow,
+                new File(folder.getRoot(), "notifications.spill").getPath(), accountsService, notificationService);
+    }
+
+    private static FundTransfer transfer(int fund) {
+        return new FundTransfer("Id-123", "Id-234", new BigDecimal(fund));
+    }
+
+    private void awaitDelivered(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dispatcher.deliveredCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(dispatcher.deliveredCount()).isEqualTo(count);
+    }
+}
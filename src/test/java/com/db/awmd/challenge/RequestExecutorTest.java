@@ -0,0 +1,48 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.web.RequestExecutor;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestExecutorTest {
+
+    @Test
+    public void requestsBeyondTheLimitAreTurnedAway() throws Exception {
+        RequestExecutor executor = new RequestExecutor(true, 1, 2, 10000);
+        CompletableFuture<ResponseEntity<Object>> pending = new CompletableFuture<>();
+        executor.submit(() -> pending);
+        executor.submit(() -> pending);
+
+        DeferredResult<ResponseEntity<Object>> rejected = executor.submit(
+                () -> CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK)));
+        ResponseEntity<?> response = (ResponseEntity<?>) rejected.getResult();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("1");
+        assertThat(executor.rejectedCount()).isEqualTo(1);
+
+        pending.complete(new ResponseEntity<>(HttpStatus.OK));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(executor.inFlight()).isZero();
+        executor.close();
+    }
+
+    @Test
+    public void blockingModeAnswersBeforeReturning() {
+        RequestExecutor executor = new RequestExecutor(false, 1, 1, 10000);
+        DeferredResult<ResponseEntity<Object>> result = executor.submit(() -> CompletableFuture.supplyAsync(
+                () -> new ResponseEntity<>("done", HttpStatus.OK)));
+
+        assertThat(result.hasResult()).isTrue();
+        assertThat(((ResponseEntity<?>) result.getResult()).getBody()).isEqualTo("done");
+    }
+}
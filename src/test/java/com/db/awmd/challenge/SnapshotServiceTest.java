@@ -0,0 +1,148 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.journal.JournalRecovery;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.snapshot.SnapshotInfo;
+import com.db.awmd.challenge.snapshot.SnapshotService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotServiceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recoveryLoadsSnapshotAndReplaysJournalTail() throws Exception {
+    TransferJournal journal = journal();
+    SnapshotService snapshots = snapshots(journal);
+    AccountsRepositoryInMemory repository = recover(journal, snapshots);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(100)));
+    journal.awaitDurable();
+
+    SnapshotInfo snapshot = snapshots.takeSnapshot(repository);
+    assertThat(snapshot.getAccountCount()).isEqualTo(2);
+
+    repository.createAccount(new Account("Id-345", new BigDecimal(10)));
+    repository.transferFund(new FundTransfer("Id-234", "Id-345", new BigDecimal("0.5")));
+    journal.awaitDurable();
+    journal.close();
+
+    TransferJournal reopened = journal();
+    AccountsRepositoryInMemory recovered = recover(reopened, snapshots(reopened));
+    reopened.close();
+
+    assertThat(recovered.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(400));
+    assertThat(recovered.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal("199.5"));
+    assertThat(recovered.getAccount("Id-345").getBalance()).isEqualTo(new BigDecimal("10.5"));
+    assertThat(recovered.getEpochs().current()).isGreaterThan(snapshot.getEpoch());
+  }
+
+  @Test
+  public void snapshotTakenDuringTransfersKeepsTotal() throws Exception {
+    TransferJournal journal = journal();
+    SnapshotService snapshots = snapshots(journal);
+    AccountsRepositoryInMemory repository = recover(journal, snapshots);
+    int accounts = 100;
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (running.get()) {
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        try {
+          repository.transferFund(new FundTransfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 50))));
+        } catch (RuntimeException overdraft) {
+          // expected now and then
+        }
+      }
+    });
+    transfers.start();
+    for (int i = 0; i < 5; i++) {
+      snapshots.takeSnapshot(repository);
+    }
+    running.set(false);
+    transfers.join();
+    journal.close();
+
+    // load only the snapshot, without the journal written after it
+    TransferJournal empty = new TransferJournal(false, "unused", 0, 1);
+    AccountsRepositoryInMemory loaded = new AccountsRepositoryInMemory(64, empty);
+    snapshots(empty).loadLatest(loaded);
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      total = total.add(loaded.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * accounts));
+  }
+
+  @Test
+  public void snapshotKeepsIdsBeyondASignedShortLength() throws Exception {
+    char[] id = new char[40_000];
+    Arrays.fill(id, 'x');
+    String longId = new String(id);
+    TransferJournal journal = journal();
+    SnapshotService snapshots = snapshots(journal);
+    AccountsRepositoryInMemory repository = recover(journal, snapshots);
+    repository.createAccount(new Account(longId, new BigDecimal(500)));
+    journal.awaitDurable();
+    snapshots.takeSnapshot(repository);
+    journal.close();
+
+    TransferJournal empty = new TransferJournal(false, "unused", 0, 1);
+    AccountsRepositoryInMemory loaded = new AccountsRepositoryInMemory(64, empty);
+    assertThat(snapshots(empty).loadLatest(loaded).getAccountCount()).isEqualTo(1);
+    assertThat(loaded.getAccount(longId).getBalance()).isEqualTo(new BigDecimal(500));
+  }
+
+  @Test
+  public void unreadableNewestSnapshotFallsBackToTheOlderOne() throws Exception {
+    TransferJournal journal = journal();
+    SnapshotService snapshots = snapshots(journal);
+    AccountsRepositoryInMemory repository = recover(journal, snapshots);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    journal.awaitDurable();
+    SnapshotInfo older = snapshots.takeSnapshot(repository);
+    journal.close();
+    Files.write(older.getPath().resolveSibling("snapshot-9999999999999999999.bin"), new byte[100]);
+
+    TransferJournal empty = new TransferJournal(false, "unused", 0, 1);
+    AccountsRepositoryInMemory loaded = new AccountsRepositoryInMemory(64, empty);
+    assertThat(snapshots(empty).loadLatest(loaded).getPath()).isEqualTo(older.getPath());
+    assertThat(loaded.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(500));
+  }
+
+  private TransferJournal journal() {
+    return new TransferJournal(true, new File(folder.getRoot(), "transfers.journal").getPath(), 0, 512);
+  }
+
+  private SnapshotService snapshots(TransferJournal journal) {
+    return new SnapshotService(true, new File(folder.getRoot(), "snapshots").getPath(), 300, 2, journal);
+  }
+
+  private static AccountsRepositoryInMemory recover(TransferJournal journal, SnapshotService snapshots)
+          throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(64, journal);
+    new JournalRecovery(repository, journal, snapshots).recover();
+    return repository;
+  }
+}
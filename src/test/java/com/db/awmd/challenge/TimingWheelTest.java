@@ -0,0 +1,94 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.schedule.TimingWheel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+
+  private static final long START = 1_700_000_000_000L;
+
+  @Test
+  public void handlesExpireAtTheirTickAndNotBefore() {
+    TimingWheel wheel = new TimingWheel(100, START, 16);
+    wheel.add(0, START + 250);
+    wheel.add(1, START + 100);
+    wheel.add(2, START - 5000);
+
+    // overdue when added
+    assertThat(wheel.pollExpired()).isEqualTo(2);
+    wheel.advance(START + 199);
+    assertThat(wheel.pollExpired()).isEqualTo(1);
+    assertThat(wheel.pollExpired()).isEqualTo(-1);
+    wheel.advance(START + 299);
+    assertThat(wheel.pollExpired()).isEqualTo(-1);
+    wheel.advance(START + 300);
+    assertThat(wheel.pollExpired()).isEqualTo(0);
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  public void cascadingKeepsEveryHandleOnTime() {
+    TimingWheel wheel = new TimingWheel(1, START, 16);
+    Random random = new Random(42);
+    long[] due = new long[20_000];
+    for (int handle = 0; handle < due.length; handle++) {
+      // up to several turns of the two lowest levels
+      due[handle] = START + 1 + random.nextInt(300_000);
+      wheel.add(handle, due[handle]);
+    }
+    int expired = 0;
+    for (long now = START; expired < due.length; now += 97) {
+      wheel.advance(now);
+      int handle;
+      while ((handle = wheel.pollExpired()) >= 0) {
+        assertThat(due[handle]).isLessThanOrEqualTo(now).isGreaterThan(now - 97);
+        expired++;
+      }
+    }
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  public void removedHandlesNeverExpireAndCanBeAddedAgain() {
+    TimingWheel wheel = new TimingWheel(10, START, 4);
+    for (int handle = 0; handle < 100; handle++) {
+      wheel.add(handle, START + 1000 + handle);
+    }
+    for (int handle = 0; handle < 100; handle += 2) {
+      assertThat(wheel.remove(handle)).isTrue();
+    }
+    assertThat(wheel.remove(0)).isFalse();
+    wheel.add(0, START + 5000);
+    assertThat(wheel.size()).isEqualTo(51);
+
+    wheel.advance(START + 2000);
+    List<Integer> expired = new ArrayList<>();
+    int handle;
+    while ((handle = wheel.pollExpired()) >= 0) {
+      expired.add(handle);
+    }
+    assertThat(expired).hasSize(50);
+    assertThat(expired.stream().filter(h -> h % 2 == 0).count()).isZero();
+    assertThat(wheel.contains(0)).isTrue();
+  }
+
+  @Test
+  public void farFutureHandlesWaitInTheOverflowList() {
+    TimingWheel wheel = new TimingWheel(1, START, 4);
+    // beyond 2^32 ticks, what the four levels reach
+    long far = START + (1L << 33);
+    wheel.add(0, far);
+    wheel.add(1, START + (1L << 25));
+    wheel.advance(START + (1L << 25));
+    assertThat(wheel.pollExpired()).isEqualTo(1);
+    assertThat(wheel.pollExpired()).isEqualTo(-1);
+    assertThat(wheel.contains(0)).isTrue();
+    assertThat(wheel.dueMillis(0)).isEqualTo(far);
+  }
+}
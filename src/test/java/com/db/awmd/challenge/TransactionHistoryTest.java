@@ -0,0 +1,71 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.AccountTransaction;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.history.TransactionHistory;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionHistoryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TransactionHistory history;
+
+  @After
+  public void closeHistory() throws IOException {
+    history.close();
+  }
+
+  @Test
+  public void pagesThroughEntriesEvictedToTheSegment() {
+    history = new TransactionHistory(8, new File(folder.getRoot(), "history.segment").getPath());
+    for (int fund = 1; fund <= 30; fund++) {
+      history.record(new FundTransfer("Id-123", "Id-234", new BigDecimal(fund)));
+    }
+
+    List<AccountTransaction> all = new ArrayList<>();
+    Long cursor = null;
+    do {
+      TransactionPage page = history.page("Id-123", cursor, 7);
+      all.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(all).hasSize(30);
+    assertThat(all.get(0).getSequence()).isEqualTo(29);
+    assertThat(all.get(0).getAmount()).isEqualTo(new BigDecimal(-30));
+    assertThat(all.get(0).getCounterpartyAccountId()).isEqualTo("Id-234");
+    assertThat(all.get(29).getSequence()).isEqualTo(0);
+    assertThat(all.get(29).getAmount()).isEqualTo(new BigDecimal(-1));
+    assertThat(history.page("Id-234", null, 1).getTransactions().get(0).getAmount()).isEqualTo(new BigDecimal(30));
+  }
+
+  @Test
+  public void withoutSegmentOnlyTheLatestEntriesAreKept() {
+    history = new TransactionHistory(8, "");
+    for (int fund = 1; fund <= 30; fund++) {
+      history.record(new FundTransfer("Id-123", "Id-234", new BigDecimal(fund)));
+    }
+
+    TransactionPage page = history.page("Id-123", null, 100);
+    // the ring holds between half and all of its capacity
+    assertThat(page.getTransactions()).hasSize(6);
+    assertThat(page.getTransactions().get(5).getSequence()).isEqualTo(24);
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(history.page("Id-123", 26L, 100).getTransactions()).extracting("sequence").containsExactly(25L, 24L);
+    assertThat(history.page("Id-999", null, 10).getTransactions()).isEmpty();
+  }
+}
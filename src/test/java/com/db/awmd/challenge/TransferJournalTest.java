@@ -0,0 +1,169 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FundTransfer;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.journal.JournalRecovery;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.snapshot.SnapshotService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TransferJournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replayRebuildsBalances() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal("150.25")));
+    journal.awaitDurable();
+    journal.close();
+
+    TransferJournal reopened = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory recovered = recover(reopened);
+    reopened.close();
+
+    assertThat(recovered.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("349.75"));
+    assertThat(recovered.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal("250.25"));
+  }
+
+  @Test
+  public void replayIgnoresTornTail() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 0, 1);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(100)));
+    journal.awaitDurable();
+    journal.close();
+
+    // cut the last record in half, as a crash in the middle of a write would
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.setLength(raw.length() - 5);
+    }
+
+    TransferJournal reopened = new TransferJournal(true, file.getPath(), 0, 1);
+    AccountsRepositoryInMemory recovered = recover(reopened);
+    recovered.transferFund(new FundTransfer("Id-234", "Id-123", new BigDecimal(50)));
+    reopened.awaitDurable();
+    reopened.close();
+
+    TransferJournal last = new TransferJournal(true, file.getPath(), 0, 1);
+    AccountsRepositoryInMemory again = recover(last);
+    last.close();
+    assertThat(again.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(550));
+    assertThat(again.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(50));
+  }
+
+  @Test
+  public void replayAppliesEveryLegOfAMultiLegTransfer() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    repository.createAccount(new Account("Id-345", new BigDecimal(0)));
+    assertThat(repository.tryTransferMultiLeg(new MultiLegTransfer("Id-123", Arrays.asList(
+            new MultiLegTransfer.Leg("Id-234", new BigDecimal("100.50")),
+            new MultiLegTransfer.Leg("Id-345", new BigDecimal(70)),
+            new MultiLegTransfer.Leg("Id-234", new BigDecimal(30))))))
+            .isEqualTo(TransferOutcome.OK);
+    journal.awaitDurable();
+    journal.close();
+
+    TransferJournal reopened = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory recovered = recover(reopened);
+    reopened.close();
+
+    assertThat(recovered.getAccount("Id-123").getBalance()).isEqualByComparingTo("299.50");
+    assertThat(recovered.getAccount("Id-234").getBalance()).isEqualByComparingTo("230.50");
+    assertThat(recovered.getAccount("Id-345").getBalance()).isEqualTo(new BigDecimal(70));
+  }
+
+  @Test
+  public void replayReadsIdsBeyondASignedShortLength() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    char[] id = new char[40_000];
+    Arrays.fill(id, 'x');
+    String longId = new String(id);
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account(longId, new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    repository.transferFund(new FundTransfer(longId, "Id-234", new BigDecimal(100)));
+    journal.awaitDurable();
+    journal.close();
+
+    TransferJournal reopened = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory recovered = recover(reopened);
+    reopened.close();
+
+    assertThat(recovered.getAccount(longId).getBalance()).isEqualTo(new BigDecimal(400));
+    assertThat(recovered.getAccount("Id-234").getBalance()).isEqualTo(new BigDecimal(200));
+  }
+
+  @Test
+  public void whenDurableCompletesAfterTheSync() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    // the writer waits up to 200 ms for a batch to fill
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 200, 512);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    CompletableFuture<Void> durable = journal.whenDurable();
+
+    assertThat(durable.isDone()).isFalse();
+    durable.get(5, TimeUnit.SECONDS);
+    assertThat(journal.writtenBytes()).isGreaterThan(0);
+    assertThat(journal.whenDurable().isDone()).isTrue();
+    journal.close();
+  }
+
+  @Test
+  public void transfersAfterCloseAreNotAcknowledged() throws Exception {
+    File file = new File(folder.getRoot(), "transfers.journal");
+    TransferJournal journal = new TransferJournal(true, file.getPath(), 0, 512);
+    AccountsRepositoryInMemory repository = recover(journal);
+    repository.createAccount(new Account("Id-123", new BigDecimal(500)));
+    repository.createAccount(new Account("Id-234", new BigDecimal(100)));
+    journal.awaitDurable();
+    journal.close();
+
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(100)));
+    try {
+      journal.awaitDurable();
+      fail("Transfer acknowledged without being journaled");
+    } catch (UncheckedIOException e) {
+      assertThat(e.getMessage()).isEqualTo("Transfer journal is not writable");
+    }
+    repository.transferFund(new FundTransfer("Id-123", "Id-234", new BigDecimal(100)));
+    assertThat(journal.whenDurable().isCompletedExceptionally()).isTrue();
+  }
+
+  private static AccountsRepositoryInMemory recover(TransferJournal journal) throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(64, journal);
+    SnapshotService snapshots = new SnapshotService(false, "snapshots", 300, 1, journal);
+    new JournalRecovery(repository, journal, snapshots).recover();
+    return repository;
+  }
+}
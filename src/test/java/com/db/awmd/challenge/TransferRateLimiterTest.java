@@ -0,0 +1,94 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.web.TransferRateLimiter;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferRateLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void senderIsLimitedToItsBurstThenRefills() {
+        // 100 per second, 10 ms apart, bursts of 5
+        TransferRateLimiter limiter = new TransferRateLimiter(0, 0, 100, 5, 1024);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("Id-123", 1, now)).isZero();
+        }
+        assertThat(limiter.tryAcquire("Id-123", 1, now)).isEqualTo(10 * MILLI);
+        assertThat(limiter.tryAcquire("Id-234", 1, now)).isZero();
+
+        assertThat(limiter.tryAcquire("Id-123", 1, now + 10 * MILLI)).isZero();
+        assertThat(limiter.tryAcquire("Id-123", 1, now + 10 * MILLI)).isPositive();
+        assertThat(limiter.accountRejectedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void globalLimitCoversAllSendersAndBatches() {
+        TransferRateLimiter limiter = new TransferRateLimiter(1000, 10, 0, 0, 1024);
+        long now = System.nanoTime();
+        assertThat(limiter.tryAcquire(null, 8, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-123", 1, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-234", 1, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-456", 1, now)).isEqualTo(MILLI);
+
+        // a batch larger than the burst waits for the whole burst rather than forever
+        assertThat(limiter.tryAcquire(null, 50, now + 10 * MILLI)).isZero();
+        assertThat(limiter.globalRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void senderTokensAreReturnedWhenTheGlobalLimitRejects() {
+        TransferRateLimiter limiter = new TransferRateLimiter(1000, 1, 1, 1, 1024);
+        long now = System.nanoTime();
+        assertThat(limiter.tryAcquire("Id-123", 1, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-234", 1, now)).isPositive();
+
+        assertThat(limiter.tryAcquire("Id-234", 1, now + MILLI)).isZero();
+        assertThat(limiter.globalRejectedCount()).isEqualTo(1);
+        assertThat(limiter.accountRejectedCount()).isZero();
+    }
+
+    @Test
+    public void releasedTokensCanBeTakenAgain() {
+        TransferRateLimiter limiter = new TransferRateLimiter(1, 2, 1, 2, 1024);
+        long now = System.nanoTime();
+        assertThat(limiter.tryAcquire("Id-123", 2, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-123", 1, now)).isPositive();
+
+        limiter.release("Id-123", 2);
+        assertThat(limiter.tryAcquire("Id-123", 2, now)).isZero();
+        assertThat(limiter.tryAcquire("Id-234", 1, now)).isPositive();
+    }
+
+    @Test
+    public void idleSendersMakeRoomWithoutLosingLimits() {
+        // one set of 8 slots
+        TransferRateLimiter limiter = new TransferRateLimiter(0, 0, 1, 1, 8);
+        long now = System.nanoTime();
+        for (int i = 0; i < 8; i++) {
+            assertThat(limiter.tryAcquire("Id-" + i, 1, now)).isZero();
+        }
+        assertThat(limiter.tryAcquire("Id-0", 1, now)).isPositive();
+
+        // a second later every bucket is full again, so the newcomer costs no one their limit
+        long later = now + TimeUnit.SECONDS.toNanos(1);
+        for (int i = 8; i < 1000; i++) {
+            assertThat(limiter.tryAcquire("Id-" + i, 1, later + i * TimeUnit.SECONDS.toNanos(1))).isZero();
+        }
+        assertThat(limiter.busyEvictionCount()).isZero();
+
+        // with every slot busy, a new sender takes over the slot closest to full
+        long busy = later + TimeUnit.SECONDS.toNanos(2000);
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire("Busy-" + i, 1, busy);
+        }
+        assertThat(limiter.busyEvictionCount()).isZero();
+        limiter.tryAcquire("Busy-8", 1, busy);
+        assertThat(limiter.busyEvictionCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,198 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.schedule.ScheduleLog;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.FundService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class TransferSchedulerTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Autowired
+  private FundService fundService;
+
+  /**
+   * On a tick, as transfers are released at the first tick at or after their due time.
+   */
+  private final long now = System.currentTimeMillis() / SECOND * SECOND;
+
+  @Before
+  public void createAccounts() {
+    fundService.getAccountService().getAccountsRepository().clearAccounts();
+    fundService.getAccountService().createAccount(new Account("Id-123", new BigDecimal(500)));
+    fundService.getAccountService().createAccount(new Account("Id-234", new BigDecimal(100)));
+  }
+
+  @After
+  public void clearAccounts() {
+    fundService.getAccountService().getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void dueTransfersAreReleasedInBatches() {
+    TransferScheduler scheduler = new TransferScheduler(fundService, "", false, 100, 2, 0);
+    for (int i = 0; i < 5; i++) {
+      scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+    }
+    long later = scheduler.schedule("Id-123", "Id-234", 1000, now + 60 * SECOND, 0);
+
+    assertThat(scheduler.releaseDue(now, Integer.MAX_VALUE)).isZero();
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(2);
+    assertThat(scheduler.releaseDue(now + SECOND, 1)).isEqualTo(1);
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(2);
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isZero();
+
+    assertThat(balance("Id-123")).isEqualByComparingTo("450");
+    assertThat(balance("Id-234")).isEqualByComparingTo("150");
+    assertThat(scheduler.releasedCount()).isEqualTo(5);
+    assertThat(scheduler.pendingCount()).isEqualTo(1);
+    assertThat(scheduler.get(later).getFund()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void cancelledTransfersAreNotReleasedAndTheirIdsAreNotReused() {
+    TransferScheduler scheduler = new TransferScheduler(fundService, "", false, 100, 1024, 0);
+    long id = scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+    assertThat(scheduler.cancel(id)).isTrue();
+    assertThat(scheduler.cancel(id)).isFalse();
+
+    long next = scheduler.schedule("Id-123", "Id-234", 2000, now + SECOND, 0);
+    assertThat(next).isNotEqualTo(id);
+    assertThat(scheduler.get(id)).isNull();
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(1);
+    assertThat(balance("Id-123")).isEqualByComparingTo("480");
+    assertThat(scheduler.get(next)).isNull();
+  }
+
+  @Test
+  public void repeatingTransfersSkipMissedOccurrences() {
+    TransferScheduler scheduler = new TransferScheduler(fundService, "", false, 100, 1024, 0);
+    long id = scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 60);
+
+    // down for three and a half intervals: one transfer, then on the original beat
+    assertThat(scheduler.releaseDue(now + SECOND + 210 * SECOND, Integer.MAX_VALUE)).isEqualTo(1);
+    ScheduledTransfer pending = scheduler.get(id);
+    assertThat(pending.getExecuteAt()).isEqualTo(Instant.ofEpochMilli(now + SECOND + 240 * SECOND)
+            .toString());
+    assertThat(balance("Id-123")).isEqualByComparingTo("490");
+  }
+
+  @Test
+  public void pendingTransfersSurviveARestart() throws Exception {
+    String path = new File(folder.getRoot(), "schedule.log").getPath();
+    TransferScheduler scheduler = new TransferScheduler(fundService, path, true, 100, 1024, 0);
+    scheduler.recover();
+    long released = scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+    long cancelled = scheduler.schedule("Id-123", "Id-234", 2000, now + 2 * SECOND, 0);
+    long repeating = scheduler.schedule("Id-234", "Id-123", 500, now + SECOND, 3600);
+    long pending = scheduler.schedule("Id-123", "Id-234", 4000, now + 3 * SECOND, 0);
+    scheduler.cancel(cancelled);
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(2);
+    scheduler.stop();
+
+    TransferScheduler restarted = new TransferScheduler(fundService, path, true, 100, 1024, 0);
+    restarted.recover();
+    assertThat(restarted.pendingCount()).isEqualTo(2);
+    assertThat(restarted.get(released)).isNull();
+    assertThat(restarted.get(cancelled)).isNull();
+    assertThat(restarted.get(repeating).getExecuteAt())
+            .isEqualTo(Instant.ofEpochMilli(now + SECOND + 3600 * SECOND).toString());
+    assertThat(restarted.get(pending).getFund()).isEqualByComparingTo("40");
+
+    // handles freed before the restart come back with new ids
+    long next = restarted.schedule("Id-123", "Id-234", 100, now + 3 * SECOND, 0);
+    assertThat(next).isNotIn(released, cancelled, repeating, pending);
+    assertThat(restarted.releaseDue(now + 3 * SECOND, Integer.MAX_VALUE)).isEqualTo(2);
+    assertThat(balance("Id-123")).isEqualByComparingTo("454");
+    restarted.stop();
+  }
+
+  @Test
+  public void releasesLoggedBeforeALogFailureAreStillApplied() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("schedule.log");
+    // five schedule records and two releases, then the disk is full
+    AtomicInteger writes = new AtomicInteger(7);
+    ScheduleLog failing = new ScheduleLog(path, true) {
+      @Override
+      protected long write(ByteBuffer payload) throws IOException {
+        if (writes.getAndDecrement() <= 0) {
+          throw new IOException("No space left on device");
+        }
+        return super.write(payload);
+      }
+    };
+    TransferScheduler scheduler = new TransferScheduler(fundService, failing, 100, 1024, 0);
+    scheduler.recover();
+    for (int i = 0; i < 5; i++) {
+      scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+    }
+
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(2);
+    assertThat(balance("Id-123")).isEqualByComparingTo("480");
+    assertThat(scheduler.pendingCount()).isEqualTo(3);
+    assertThat(scheduler.releaseDue(now + SECOND, Integer.MAX_VALUE)).isZero();
+    try {
+      scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+      fail("Should have failed once the schedule log is not writable");
+    } catch (UncheckedIOException expected) {
+      // the failure is kept
+    }
+    scheduler.stop();
+
+    // the log has the two releases, so a restart releases the other three and no more
+    TransferScheduler restarted = new TransferScheduler(fundService, path.toString(), true, 100, 1024, 0);
+    restarted.recover();
+    assertThat(restarted.pendingCount()).isEqualTo(3);
+    assertThat(restarted.releaseDue(now + SECOND, Integer.MAX_VALUE)).isEqualTo(3);
+    assertThat(balance("Id-123")).isEqualByComparingTo("450");
+    restarted.stop();
+  }
+
+  @Test
+  public void sharedAccountIdsGoWithTheLastPendingTransfer() {
+    TransferScheduler scheduler = new TransferScheduler(fundService, "", false, 100, 1024, 0);
+    long first = scheduler.schedule("Id-123", "Id-234", 1000, now + SECOND, 0);
+    long second = scheduler.schedule("Id-234", "Id-123", 1000, now + 60 * SECOND, 0);
+    scheduler.schedule("Id-123", "Id-234", 1000, now + 2 * SECOND, 0);
+    assertThat(scheduler.accountCount()).isEqualTo(2);
+
+    assertThat(scheduler.cancel(first)).isTrue();
+    assertThat(scheduler.cancel(second)).isTrue();
+    assertThat(scheduler.accountCount()).isEqualTo(2);
+    assertThat(scheduler.releaseDue(now + 2 * SECOND, Integer.MAX_VALUE)).isEqualTo(1);
+    assertThat(scheduler.accountCount()).isZero();
+  }
+
+  private BigDecimal balance(String accountId) {
+    return fundService.getAccountService().getAccount(accountId).getBalance();
+  }
+}